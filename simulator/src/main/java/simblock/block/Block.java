@@ -20,6 +20,13 @@ import simblock.node.Node;
 
 /**
  * The representation of a block.
+ *
+ * <p>Whether a node knows a block as an orphan is kept in the block, in a set of the nodes that
+ * do, instead of in a set of orphans per node, and a node only keeps the count of its orphans.
+ * The set is only allocated while some node knows the block as an orphan and is released when
+ * the block is pruned. It grows with the number of these nodes, up to one bit per node. The
+ * orphans cannot be derived from the parents of the blocks and the current block of the node,
+ * since a node only knows the forks it received.
  */
 public class Block {
   /**
@@ -28,9 +35,15 @@ public class Block {
   private final int height;
 
   /**
-   * The parent {@link Block}.
+   * The parent {@link Block}, null for the genesis block and for blocks pruned by the block store.
+   */
+  private Block parent;
+
+  /**
+   * The ancestor at {@link #getSkipHeight(int)}, used to find ancestors in O(log height) like the
+   * <em>pskip</em> pointer of Bitcoin Core.
    */
-  private final Block parent;
+  private Block skip;
 
   /**
    * The {@link Node} that minted the block.
@@ -43,14 +56,16 @@ public class Block {
   private final long time;
 
   /**
-   * Block unique id.
+   * Block unique id, allocated by the block table of the simulation of the minter.
    */
   private final int id;
 
   /**
-   * Latest known block id.
+   * The indices (node id - 1) of the nodes that know the block as an orphan, null if no node
+   * does. Logical processes running in parallel update the set for their own nodes, so it is
+   * guarded by the block.
    */
-  private static int latestId = 0;
+  private volatile NodeIndexSet orphanOf = null;
 
   /**
    * Instantiates a new Block.
@@ -60,12 +75,24 @@ public class Block {
    * @param time   the time
    */
   public Block(Block parent, Node minter, long time) {
+    this(parent, minter, time, 0);
+  }
+
+  /**
+   * Instantiates a new Block and adds it to the block table of the simulation of the minter.
+   *
+   * @param parent     the parent
+   * @param minter     the minter
+   * @param time       the time
+   * @param difficulty the difficulty kept by the block table
+   */
+  protected Block(Block parent, Node minter, long time, double difficulty) {
     this.height = parent == null ? 0 : parent.getHeight() + 1;
     this.parent = parent;
+    this.skip = parent == null ? null : parent.getBlockWithHeight(getSkipHeight(this.height));
     this.minter = minter;
     this.time = time;
-    this.id = latestId;
-    latestId++;
+    this.id = minter.getContext().getBlockTable().add(this, difficulty);
   }
 
   /**
@@ -80,7 +107,7 @@ public class Block {
   /**
    * Get parent block.
    *
-   * @return the block
+   * @return the block, null for the genesis block and if the block was pruned
    */
   public Block getParent() {
     return this.parent;
@@ -91,7 +118,6 @@ public class Block {
    *
    * @return the node
    */
-  @SuppressWarnings("unused")
   public Node getMinter() {
     return this.minter;
   }
@@ -128,17 +154,125 @@ public class Block {
   }
 
   /**
-   * Recursively searches for the block at the provided height.
+   * Searches for the ancestor at the provided height, following the skip pointers where they do
+   * not overshoot the height.
    *
    * @param height the height
-   * @return the block with the provided height
+   * @return the block with the provided height, null if the height is above the block or negative
+   *     or if the ancestor was pruned
    */
   public Block getBlockWithHeight(int height) {
-    if (this.height == height) {
-      return this;
-    } else {
-      return this.parent.getBlockWithHeight(height);
+    if (height > this.height || height < 0) {
+      return null;
+    }
+    Block walk = this;
+    int heightWalk = this.height;
+    while (heightWalk > height) {
+      int heightSkip = getSkipHeight(heightWalk);
+      int heightSkipPrev = getSkipHeight(heightWalk - 1);
+      // Only follow the skip pointer if the skip pointer of the parent is not a better choice
+      if (walk.skip != null && (heightSkip == height || (heightSkip > height && !(
+          heightSkipPrev < heightSkip - 2 && heightSkipPrev >= height)))) {
+        walk = walk.skip;
+        heightWalk = heightSkip;
+      } else {
+        walk = walk.parent;
+        heightWalk--;
+      }
+      if (walk == null) {
+        return null;
+      }
+    }
+    return walk;
+  }
+
+  /**
+   * Gets the height the skip pointer of a block at the provided height points to. Any ancestor
+   * can be reached by O(log height) skip and parent pointers.
+   *
+   * @param height the height of the block
+   * @return the height of the skip pointer
+   */
+  private static int getSkipHeight(int height) {
+    if (height < 2) {
+      return 0;
+    }
+    // Clear the lowest set bit, twice for odd heights so that the pointers of odd and even
+    // heights do not line up
+    return (height & 1) != 0 ? invertLowestOne(invertLowestOne(height - 1)) + 1
+        : invertLowestOne(height);
+  }
+
+  /**
+   * Clears the lowest set bit.
+   *
+   * @param n the number
+   * @return the number without its lowest set bit
+   */
+  private static int invertLowestOne(int n) {
+    return n & (n - 1);
+  }
+
+  /**
+   * Drops the references to the ancestors of the block and releases it from the block table, so
+   * that they can be garbage collected once they are archived by the {@link
+   * simblock.simulator.BlockStore}. Ancestors of a pruned block are not found anymore, and neither
+   * is the block by its id.
+   */
+  public synchronized void prune() {
+    this.parent = null;
+    this.skip = null;
+    this.orphanOf = null;
+    this.minter.getContext().getBlockTable().release(this.id);
+  }
+
+  /**
+   * Checks if the node knows the block as an orphan.
+   *
+   * @param node the node
+   * @return true if the block is an orphan known to the node
+   */
+  public boolean isOrphanOf(Node node) {
+    if (this.orphanOf == null) {
+      return false;
     }
+    synchronized (this) {
+      NodeIndexSet nodes = this.orphanOf;
+      return nodes != null && nodes.contains(node.getNodeID() - 1);
+    }
+  }
+
+  /**
+   * Sets whether the node knows the block as an orphan.
+   *
+   * @param node   the node
+   * @param orphan true if the block is an orphan known to the node
+   * @return true if this changed the orphans known to the node
+   */
+  public synchronized boolean setOrphanOf(Node node, boolean orphan) {
+    int index = node.getNodeID() - 1;
+    if (orphan) {
+      if (this.orphanOf == null) {
+        this.orphanOf = new NodeIndexSet(node.getContext().getSimulatedNodes().size());
+      }
+      return this.orphanOf.add(index);
+    }
+    if (this.orphanOf == null || !this.orphanOf.remove(index)) {
+      return false;
+    }
+    if (this.orphanOf.isEmpty()) {
+      this.orphanOf = null;
+    }
+    return true;
+  }
+
+  /**
+   * Checks if the block was pruned.
+   *
+   * @return true if the block lost its ancestors
+   */
+  public boolean isPruned() {
+    return this.parent == null && this.height > 0;
   }
 
   /**
@@ -153,7 +287,7 @@ public class Block {
     } else if (this.height <= block.height) {
       return this.equals(block.getBlockWithHeight(this.height));
     } else {
-      return this.getBlockWithHeight(block.height).equals(block);
+      return block.equals(this.getBlockWithHeight(block.height));
     }
   }
 }
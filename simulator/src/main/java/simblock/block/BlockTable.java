@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.block;
+
+import java.util.Arrays;
+
+/**
+ * The type Block table allocates the dense ids of the blocks of a simulation and keeps the height,
+ * the id of the parent, the id of the minter, the minting time and the difficulty of every block
+ * in parallel arrays indexed by block id, so they are read without reaching the block. Nodes and
+ * messages refer to blocks by id and get the block itself from the table until it is pruned.
+ *
+ * <p>Blocks are only minted while no logical process runs in parallel, and pruned by actions run
+ * in task order, so the table is only changed by one thread at a time.
+ */
+public class BlockTable {
+  /**
+   * The id of the parent of a block without parent.
+   */
+  public static final int NO_PARENT = -1;
+
+  /**
+   * The heights, indexed by block id.
+   */
+  private int[] heights = new int[64];
+
+  /**
+   * The ids of the parents, indexed by block id.
+   */
+  private int[] parents = new int[64];
+
+  /**
+   * The ids of the minters, indexed by block id.
+   */
+  private int[] minters = new int[64];
+
+  /**
+   * The minting times, indexed by block id.
+   */
+  private long[] times = new long[64];
+
+  /**
+   * The difficulties as the nearest double, indexed by block id.
+   */
+  private double[] difficulties = new double[64];
+
+  /**
+   * The blocks not pruned yet, indexed by block id.
+   */
+  private Block[] blocks = new Block[64];
+
+  /**
+   * The number of blocks, which is the id of the next block.
+   */
+  private int size = 0;
+
+  /**
+   * Adds a new block and allocates its id.
+   *
+   * @param block      the block, whose height, parent, minter and time are set
+   * @param difficulty the difficulty of the block
+   * @return the block id
+   */
+  int add(Block block, double difficulty) {
+    int id = this.size;
+    if (id == this.blocks.length) {
+      int length = id * 2;
+      this.heights = Arrays.copyOf(this.heights, length);
+      this.parents = Arrays.copyOf(this.parents, length);
+      this.minters = Arrays.copyOf(this.minters, length);
+      this.times = Arrays.copyOf(this.times, length);
+      this.difficulties = Arrays.copyOf(this.difficulties, length);
+      this.blocks = Arrays.copyOf(this.blocks, length);
+    }
+    Block parent = block.getParent();
+    this.heights[id] = block.getHeight();
+    this.parents[id] = parent == null ? NO_PARENT : parent.getId();
+    this.minters[id] = block.getMinter().getNodeID();
+    this.times[id] = block.getTime();
+    this.difficulties[id] = difficulty;
+    this.blocks[id] = block;
+    this.size++;
+    return id;
+  }
+
+  /**
+   * Releases a pruned block, whose columns are kept.
+   *
+   * @param id the block id
+   */
+  void release(int id) {
+    this.blocks[id] = null;
+  }
+
+  /**
+   * Gets the number of blocks.
+   *
+   * @return the block count
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets a block.
+   *
+   * @param id the block id
+   * @return the block, null if it was pruned
+   */
+  public Block getBlock(int id) {
+    return this.blocks[id];
+  }
+
+  /**
+   * Gets the height of a block.
+   *
+   * @param id the block id
+   * @return the height
+   */
+  public int getHeight(int id) {
+    return this.heights[id];
+  }
+
+  /**
+   * Gets the id of the parent of a block.
+   *
+   * @param id the block id
+   * @return the id of the parent, {@link #NO_PARENT} for the genesis block
+   */
+  public int getParentId(int id) {
+    return this.parents[id];
+  }
+
+  /**
+   * Gets the id of the node that minted a block.
+   *
+   * @param id the block id
+   * @return the node id of the minter
+   */
+  public int getMinterId(int id) {
+    return this.minters[id];
+  }
+
+  /**
+   * Gets the minting time of a block.
+   *
+   * @param id the block id
+   * @return the time
+   */
+  public long getTime(int id) {
+    return this.times[id];
+  }
+
+  /**
+   * Gets the difficulty of a block.
+   *
+   * @param id the block id
+   * @return the difficulty as the nearest double, 0 for blocks without difficulty
+   */
+  public double getDifficulty(int id) {
+    return this.difficulties[id];
+  }
+}
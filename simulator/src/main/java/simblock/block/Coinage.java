@@ -20,10 +20,20 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 
 /**
- * The type Coinage tracks the age of coins.
+ * The type Coinage tracks the age of coins. The coins are held in a long and the arithmetic is
+ * checked for overflow, only coins that do not fit in a long are held in a {@link BigInteger}.
  */
 public class Coinage implements Cloneable {
-  private BigInteger coins;
+  /**
+   * The coins, unless they overflowed.
+   */
+  private long coins;
+
+  /**
+   * The coins if they do not fit in a long, null otherwise.
+   */
+  private BigInteger bigCoins;
+
   private long age;
 
   /**
@@ -33,7 +43,19 @@ public class Coinage implements Cloneable {
    * @param age   the age
    */
   public Coinage(BigInteger coins, long age) {
+    this.setCoins(coins);
+    this.age = age;
+  }
+
+  /**
+   * Instantiates a new Coinage.
+   *
+   * @param coins the coins
+   * @param age   the age
+   */
+  public Coinage(long coins, long age) {
     this.coins = coins;
+    this.bigCoins = null;
     this.age = age;
   }
 
@@ -43,7 +65,7 @@ public class Coinage implements Cloneable {
    * @return the coins
    */
   public BigInteger getCoins() {
-    return this.coins;
+    return this.bigCoins != null ? this.bigCoins : BigInteger.valueOf(this.coins);
   }
 
   /**
@@ -70,14 +92,41 @@ public class Coinage implements Cloneable {
   }
 
   /**
-   * Reward gained for consensus maintenance.
+   * Gets a coinage with the same coins and the provided age.
+   *
+   * @param age the age
+   * @return the coinage
+   */
+  public Coinage withAge(long age) {
+    Coinage ret = this.clone();
+    ret.age = age;
+    return ret;
+  }
+
+  /**
+   * Reward gained for consensus maintenance, the coinage multiplied by the reward rounded towards
+   * zero.
    *
    * @param reward the reward
    */
   public void reward(double reward) {
-    this.coins = this.coins.add(
+    if (this.bigCoins == null && reward >= 0 && reward < 1) {
+      long coinage = this.getCoinageExact(this.age);
+      if (coinage >= 0) {
+        long gain = multiplyFloor(coinage, reward);
+        if (gain >= 0) {
+          long sum = this.coins + gain;
+          // The sum of two non negative longs overflows to a negative one
+          if (sum >= 0) {
+            this.coins = sum;
+            return;
+          }
+        }
+      }
+    }
+    this.setCoins(this.getCoins().add(
         new BigDecimal(this.getCoinage()).multiply(new BigDecimal(reward)).toBigInteger()
-    );
+    ));
   }
 
   /**
@@ -87,7 +136,31 @@ public class Coinage implements Cloneable {
    */
   //TODO what is coin age
   public BigInteger getCoinage() {
-    return this.getCoins().multiply(BigInteger.valueOf(this.getAge()));
+    long coinage = this.getCoinageExact(this.age);
+    return coinage >= 0 ? BigInteger.valueOf(coinage)
+        : this.getCoins().multiply(BigInteger.valueOf(this.getAge()));
+  }
+
+  /**
+   * Gets coin age as the nearest double, without allocating unless the coinage overflows.
+   *
+   * @return the coinage
+   */
+  public double getCoinageAsDouble() {
+    return this.getCoinageAsDouble(this.age);
+  }
+
+  /**
+   * Gets the coin age the coins have at the provided age as the nearest double, without
+   * allocating unless the coinage overflows.
+   *
+   * @param age the age
+   * @return the coinage
+   */
+  public double getCoinageAsDouble(long age) {
+    long coinage = this.getCoinageExact(age);
+    return coinage >= 0 ? (double) coinage
+        : this.getCoins().multiply(BigInteger.valueOf(age)).doubleValue();
   }
 
   @Override
@@ -100,4 +173,68 @@ public class Coinage implements Cloneable {
     }
     return ret;
   }
+
+  /**
+   * Sets the coins, in a long if they fit.
+   *
+   * @param coins the coins
+   */
+  private void setCoins(BigInteger coins) {
+    if (coins.bitLength() < Long.SIZE) {
+      this.coins = coins.longValue();
+      this.bigCoins = null;
+    } else {
+      this.bigCoins = coins;
+    }
+  }
+
+  /**
+   * Gets the coinage at the provided age if it is not negative and fits in a long.
+   *
+   * @param age the age
+   * @return the coinage, -1 otherwise
+   */
+  private long getCoinageExact(long age) {
+    if (this.bigCoins != null || this.coins < 0 || age < 0) {
+      return -1;
+    }
+    long high = Math.multiplyHigh(this.coins, age);
+    long low = this.coins * age;
+    return high == 0 && low >= 0 ? low : -1;
+  }
+
+  /**
+   * Multiplies a value by a factor and rounds the exact product down, like {@link BigDecimal}
+   * does with the exact binary value of the factor.
+   *
+   * @param value  the value, not negative
+   * @param factor the factor, at least 0 and below 1
+   * @return the product, -1 if it does not fit in a long
+   */
+  private static long multiplyFloor(long value, double factor) {
+    if (factor == 0) {
+      return 0;
+    }
+    // The factor is mantissa * 2^-shift
+    long bits = Double.doubleToRawLongBits(factor);
+    int exponent = (int) (bits >>> 52) & 0x7ff;
+    long mantissa = bits & ((1L << 52) - 1);
+    int shift;
+    if (exponent == 0) {
+      shift = 1074;
+    } else {
+      mantissa |= 1L << 52;
+      shift = 1075 - exponent;
+    }
+    // The 117 bit product of value and mantissa
+    long high = Math.multiplyHigh(value, mantissa);
+    long low = value * mantissa;
+    if (shift >= 128) {
+      return 0;
+    } else if (shift >= 64) {
+      return high >>> (shift - 64);
+    }
+    long product = (low >>> shift) | (high << (64 - shift));
+    return high >>> shift == 0 && product >= 0 ? product : -1;
+  }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.block;
+
+import java.math.BigInteger;
+
+/**
+ * The type Coinage ledger holds the coins of all nodes as seen by a {@link SamplePoSBlock}. The
+ * ledger of a block shares everything but the entry of the minter with the ledger of the parent:
+ * the entries are the leaves of a persistent 32-ary trie indexed by node id - 1, so minting a
+ * block copies O(log n) trie nodes. The age of the coins is not stored, but derived from the
+ * height of the block and the height at which the age of the node was last reset. The total
+ * coinage is maintained incrementally as
+ *
+ * <p><em>height</em> × <em>total coins</em> - Σ <em>coins</em> × <em>reset height</em>
+ */
+class CoinageLedger {
+  /**
+   * The number of bits of the node index used per trie level.
+   */
+  private static final int BITS = 5;
+
+  /**
+   * The number of children of a trie node.
+   */
+  private static final int WIDTH = 1 << BITS;
+
+  /**
+   * The mask of the index of a child.
+   */
+  private static final int MASK = WIDTH - 1;
+
+  /**
+   * The root of the trie.
+   */
+  private final Object[] root;
+
+  /**
+   * The shift of the node index at the root.
+   */
+  private final int shift;
+
+  /**
+   * The number of nodes in the ledger.
+   */
+  private final int size;
+
+  /**
+   * The coins of all nodes.
+   */
+  private final BigInteger totalCoins;
+
+  /**
+   * The sum of the coins of every node multiplied by the height at which its age was reset.
+   */
+  private final BigInteger weightedResetHeight;
+
+  /**
+   * The type Entry holds the coins of a node and the height at which their age was reset.
+   */
+  private static final class Entry {
+    /**
+     * The coins, whose age is not used.
+     */
+    private final Coinage coins;
+
+    /**
+     * The height at which the age was 0.
+     */
+    private final int resetHeight;
+
+    /**
+     * Instantiates a new Entry.
+     *
+     * @param coins       the coins
+     * @param resetHeight the height at which the age was 0
+     */
+    private Entry(Coinage coins, int resetHeight) {
+      this.coins = coins;
+      this.resetHeight = resetHeight;
+    }
+  }
+
+  /**
+   * Instantiates a new Coinage ledger.
+   *
+   * @param root                the root of the trie
+   * @param shift               the shift of the node index at the root
+   * @param size                the number of nodes
+   * @param totalCoins          the coins of all nodes
+   * @param weightedResetHeight the sum of the coins multiplied by the reset heights
+   */
+  private CoinageLedger(
+      Object[] root, int shift, int size, BigInteger totalCoins, BigInteger weightedResetHeight) {
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+    this.totalCoins = totalCoins;
+    this.weightedResetHeight = weightedResetHeight;
+  }
+
+  /**
+   * Creates the ledger of the genesis block, in which the coins of every node have age 1.
+   *
+   * @param coins the coins of the nodes, indexed by node id - 1
+   * @return the ledger
+   */
+  static CoinageLedger genesis(long[] coins) {
+    BigInteger totalCoins = BigInteger.ZERO;
+    Object[] level = new Object[Math.max(coins.length, 1)];
+    for (int i = 0; i < coins.length; i++) {
+      level[i] = new Entry(new Coinage(coins[i], 0), -1);
+      totalCoins = totalCoins.add(BigInteger.valueOf(coins[i]));
+    }
+    // Group the entries into leaves, and the trie nodes of every level into their parents
+    int shift = 0;
+    Object[] nodes = level;
+    do {
+      Object[] parents = new Object[(nodes.length + WIDTH - 1) / WIDTH];
+      for (int i = 0; i < parents.length; i++) {
+        Object[] node = new Object[WIDTH];
+        System.arraycopy(nodes, i * WIDTH, node, 0, Math.min(WIDTH, nodes.length - i * WIDTH));
+        parents[i] = node;
+      }
+      nodes = parents;
+      shift += BITS;
+    } while (nodes.length > 1);
+    return new CoinageLedger(
+        (Object[]) nodes[0], shift - BITS, coins.length, totalCoins, totalCoins.negate());
+  }
+
+  /**
+   * Gets the coinage of a node in the block at the height.
+   *
+   * @param index  the node id - 1
+   * @param height the height of the block
+   * @return the coinage, with no coins if the node is not in the ledger
+   */
+  Coinage getCoinage(int index, int height) {
+    Entry entry = this.getEntry(index);
+    return entry == null ? new Coinage(0, height + 1)
+        : entry.coins.withAge(height - entry.resetHeight);
+  }
+
+  /**
+   * Gets the coinage of a node in the block at the height as the nearest double, without
+   * allocating.
+   *
+   * @param index  the node id - 1
+   * @param height the height of the block
+   * @return the coinage, 0 if the node is not in the ledger
+   */
+  double getCoinageAsDouble(int index, int height) {
+    Entry entry = this.getEntry(index);
+    return entry == null ? 0 : entry.coins.getCoinageAsDouble(height - entry.resetHeight);
+  }
+
+  /**
+   * Gets the total coinage of all nodes in the block at the height.
+   *
+   * @param height the height of the block
+   * @return the total coinage
+   */
+  BigInteger getTotalCoinage(int height) {
+    return this.totalCoins.multiply(BigInteger.valueOf(height)).subtract(
+        this.weightedResetHeight);
+  }
+
+  /**
+   * Creates the ledger of a block minted at the height: the minter gains the reward on its
+   * coinage, and the age of its coins is reset.
+   *
+   * @param index  the node id - 1 of the minter
+   * @param height the height of the minted block
+   * @param reward the staking reward
+   * @return the ledger of the minted block
+   */
+  CoinageLedger mint(int index, int height, double reward) {
+    Entry entry = this.getEntry(index);
+    if (entry == null) {
+      return this;
+    }
+    Coinage coinage = entry.coins.withAge(height - entry.resetHeight);
+    coinage.reward(reward);
+    Entry minted = new Entry(coinage, height);
+    BigInteger coins = entry.coins.getCoins();
+    BigInteger mintedCoins = coinage.getCoins();
+    return new CoinageLedger(
+        this.set(this.root, this.shift, index, minted), this.shift, this.size,
+        this.totalCoins.subtract(coins).add(mintedCoins),
+        this.weightedResetHeight
+            .subtract(coins.multiply(BigInteger.valueOf(entry.resetHeight)))
+            .add(mintedCoins.multiply(BigInteger.valueOf(height))));
+  }
+
+  /**
+   * Gets the entry of a node.
+   *
+   * @param index the node id - 1
+   * @return the entry, null if the node is not in the ledger
+   */
+  private Entry getEntry(int index) {
+    if (index < 0 || index >= this.size) {
+      return null;
+    }
+    Object[] node = this.root;
+    for (int level = this.shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return (Entry) node[index & MASK];
+  }
+
+  /**
+   * Copies the path of trie nodes to the entry of a node and replaces the entry.
+   *
+   * @param node  the trie node
+   * @param level the shift of the node index at the trie node
+   * @param index the node id - 1
+   * @param entry the new entry
+   * @return the copy of the trie node
+   */
+  private Object[] set(Object[] node, int level, int index, Entry entry) {
+    Object[] copy = node.clone();
+    if (level == 0) {
+      copy[index & MASK] = entry;
+    } else {
+      int child = (index >>> level) & MASK;
+      copy[child] = this.set((Object[]) node[child], level - BITS, index, entry);
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.block;
+
+import java.util.Arrays;
+
+/**
+ * The type Node index set is a set of node indices (node id - 1) whose memory grows with the
+ * number of indices, but never beyond one bit per node: the indices are kept in a sorted array
+ * until the array would be larger than a bitmap of all nodes, and in the bitmap afterwards.
+ */
+final class NodeIndexSet {
+  /**
+   * The number of nodes, the size of the bitmap in bits.
+   */
+  private final int nodeCount;
+
+  /**
+   * The sorted indices, null once they are kept in the bitmap.
+   */
+  private int[] indices = new int[2];
+
+  /**
+   * The bitmap of the indices, null while they are kept in the sorted array.
+   */
+  private long[] bits = null;
+
+  /**
+   * The number of indices.
+   */
+  private int size = 0;
+
+  /**
+   * Instantiates a new empty Node index set.
+   *
+   * @param nodeCount the number of nodes
+   */
+  NodeIndexSet(int nodeCount) {
+    this.nodeCount = nodeCount;
+  }
+
+  /**
+   * Checks if the set contains the index.
+   *
+   * @param index the node index
+   * @return true if the index is in the set
+   */
+  boolean contains(int index) {
+    if (this.bits != null) {
+      return (index >>> 6) < this.bits.length && (this.bits[index >>> 6] & (1L << index)) != 0;
+    }
+    return Arrays.binarySearch(this.indices, 0, this.size, index) >= 0;
+  }
+
+  /**
+   * Adds the index.
+   *
+   * @param index the node index
+   * @return true if the index was not in the set
+   */
+  boolean add(int index) {
+    if (this.bits == null) {
+      int position = Arrays.binarySearch(this.indices, 0, this.size, index);
+      if (position >= 0) {
+        return false;
+      }
+      if ((long) (this.size + 1) * Integer.SIZE <= this.nodeCount) {
+        position = -position - 1;
+        if (this.size == this.indices.length) {
+          this.indices = Arrays.copyOf(this.indices, this.size * 2);
+        }
+        System.arraycopy(
+            this.indices, position, this.indices, position + 1, this.size - position);
+        this.indices[position] = index;
+        this.size++;
+        return true;
+      }
+      // The sorted array would get larger than the bitmap
+      this.bits = new long[(Math.max(this.nodeCount, index + 1) + 63) >>> 6];
+      for (int i = 0; i < this.size; i++) {
+        this.setBit(this.indices[i]);
+      }
+      this.indices = null;
+    } else if (this.contains(index)) {
+      return false;
+    }
+    this.setBit(index);
+    this.size++;
+    return true;
+  }
+
+  /**
+   * Removes the index.
+   *
+   * @param index the node index
+   * @return true if the index was in the set
+   */
+  boolean remove(int index) {
+    if (this.bits != null) {
+      if (!this.contains(index)) {
+        return false;
+      }
+      this.bits[index >>> 6] &= ~(1L << index);
+    } else {
+      int position = Arrays.binarySearch(this.indices, 0, this.size, index);
+      if (position < 0) {
+        return false;
+      }
+      System.arraycopy(
+          this.indices, position + 1, this.indices, position, this.size - position - 1);
+    }
+    this.size--;
+    return true;
+  }
+
+  /**
+   * Checks if the set is empty.
+   *
+   * @return true if the set contains no index
+   */
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Sets the bit of the index, growing the bitmap for nodes added after it was created.
+   *
+   * @param index the node index
+   */
+  private void setBit(int index) {
+    if ((index >>> 6) >= this.bits.length) {
+      this.bits = Arrays.copyOf(this.bits, (index >>> 6) + 1);
+    }
+    this.bits[index >>> 6] |= 1L << index;
+  }
+}
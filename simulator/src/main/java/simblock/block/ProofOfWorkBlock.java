@@ -16,21 +16,39 @@
 
 package simblock.block;
 
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.getTargetInterval;
+import static simblock.settings.SimulationConfiguration.DIFFICULTY_ADJUSTMENT_INTERVAL;
 
 import java.math.BigInteger;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
 
 
 /**
- * The type Proof of work block.
+ * The type Proof of work block. The difficulty is the expected number of hash calculations to
+ * mint the block, and the total difficulty of the chain is kept as an unsigned 128 bit number in
+ * two longs.
+ *
+ * <p>Like in Bitcoin, the difficulty is retargeted every {@link
+ * simblock.settings.SimulationConfiguration#DIFFICULTY_ADJUSTMENT_INTERVAL} blocks so that the
+ * blocks of the last period would have been minted at the target interval, changing by at most
+ * a factor of 4. Every block keeps the minting time of the first block of its period, so the time
+ * the period took is known without walking back the chain.
  */
 public class ProofOfWorkBlock extends Block {
-  private final BigInteger difficulty;
-  private final BigInteger totalDifficulty;
-  private final BigInteger nextDifficulty;
-  private static BigInteger genesisNextDifficulty;
+  /**
+   * The maximum factor by which the difficulty changes at a retarget.
+   */
+  private static final long MAX_ADJUSTMENT_FACTOR = 4;
+
+  private final long difficulty;
+  private final long totalDifficultyHigh;
+  private final long totalDifficultyLow;
+  private final long nextDifficulty;
+
+  /**
+   * The minting time of the last block whose height is a multiple of the adjustment interval.
+   */
+  private final long periodStartTime;
 
   /**
    * Instantiates a new Proof of work block.
@@ -40,19 +58,47 @@ public class ProofOfWorkBlock extends Block {
    * @param time       the time
    * @param difficulty the difficulty
    */
-  public ProofOfWorkBlock(ProofOfWorkBlock parent, Node minter, long time, BigInteger difficulty) {
-    super(parent, minter, time);
+  public ProofOfWorkBlock(ProofOfWorkBlock parent, Node minter, long time, long difficulty) {
+    this(parent, minter, time, difficulty, parent == null ? 0 : parent.getNextDifficulty());
+  }
+
+  /**
+   * Instantiates a new Proof of work block with the provided difficulty of the next block, which
+   * is retargeted if the block ends an adjustment period.
+   *
+   * @param parent         the parent
+   * @param minter         the minter
+   * @param time           the time
+   * @param difficulty     the difficulty
+   * @param nextDifficulty the difficulty of the next block
+   */
+  private ProofOfWorkBlock(ProofOfWorkBlock parent, Node minter, long time, long difficulty,
+                           long nextDifficulty) {
+    super(parent, minter, time, difficulty);
     this.difficulty = difficulty;
 
     if (parent == null) {
-      this.totalDifficulty = BigInteger.ZERO.add(difficulty);
-      this.nextDifficulty = ProofOfWorkBlock.genesisNextDifficulty;
+      this.totalDifficultyHigh = 0;
+      this.totalDifficultyLow = difficulty;
     } else {
-      this.totalDifficulty = parent.getTotalDifficulty().add(difficulty);
-      // TODO: difficulty adjustment
-      this.nextDifficulty = parent.getNextDifficulty();
+      long low = parent.totalDifficultyLow + difficulty;
+      // Carry if the unsigned addition wrapped around
+      this.totalDifficultyHigh = parent.totalDifficultyHigh + (
+          Long.compareUnsigned(low, parent.totalDifficultyLow) < 0 ? 1 : 0);
+      this.totalDifficultyLow = low;
     }
 
+    if (parent == null || DIFFICULTY_ADJUSTMENT_INTERVAL <= 0
+        || this.getHeight() % DIFFICULTY_ADJUSTMENT_INTERVAL != 0) {
+      this.periodStartTime = parent == null ? time : parent.periodStartTime;
+      this.nextDifficulty = nextDifficulty;
+    } else {
+      long targetTimespan = DIFFICULTY_ADJUSTMENT_INTERVAL * minter.getContext()
+          .getTargetInterval();
+      this.periodStartTime = time;
+      this.nextDifficulty = retarget(
+          nextDifficulty, targetTimespan, time - parent.periodStartTime);
+    }
   }
 
   /**
@@ -60,7 +106,7 @@ public class ProofOfWorkBlock extends Block {
    *
    * @return the difficulty
    */
-  public BigInteger getDifficulty() {
+  public long getDifficulty() {
     return this.difficulty;
   }
 
@@ -70,7 +116,21 @@ public class ProofOfWorkBlock extends Block {
    * @return the total difficulty
    */
   public BigInteger getTotalDifficulty() {
-    return this.totalDifficulty;
+    return BigInteger.valueOf(this.totalDifficultyHigh).shiftLeft(Long.SIZE).add(
+        new BigInteger(Long.toUnsignedString(this.totalDifficultyLow)));
+  }
+
+  /**
+   * Compares the total difficulty of the chain of this block with the one of another block.
+   *
+   * @param other the other block
+   * @return a negative number, zero or a positive number if the total difficulty is less, equal
+   *     or greater
+   */
+  public int compareTotalDifficulty(ProofOfWorkBlock other) {
+    int order = Long.compare(this.totalDifficultyHigh, other.totalDifficultyHigh);
+    return order != 0 ? order
+        : Long.compareUnsigned(this.totalDifficultyLow, other.totalDifficultyLow);
   }
 
   /**
@@ -78,10 +138,37 @@ public class ProofOfWorkBlock extends Block {
    *
    * @return the next difficulty
    */
-  public BigInteger getNextDifficulty() {
+  public long getNextDifficulty() {
     return this.nextDifficulty;
   }
 
+  /**
+   * Scales the difficulty by the ratio of the target timespan of a period to the actual one,
+   * which is bounded to a factor of 4 in either direction.
+   *
+   * @param difficulty     the difficulty of the period
+   * @param targetTimespan the target timespan of the period in milliseconds
+   * @param actualTimespan the time the period took in milliseconds
+   * @return the retargeted difficulty, at least 1
+   */
+  private static long retarget(long difficulty, long targetTimespan, long actualTimespan) {
+    long timespan = Math.min(Math.max(actualTimespan, targetTimespan / MAX_ADJUSTMENT_FACTOR),
+        targetTimespan * MAX_ADJUSTMENT_FACTOR);
+    timespan = Math.max(timespan, 1);
+    long retargeted;
+    try {
+      retargeted = Math.addExact(
+          Math.multiplyExact(difficulty / timespan, targetTimespan),
+          Math.multiplyExact(difficulty % timespan, targetTimespan) / timespan);
+    } catch (ArithmeticException e) {
+      // The product only overflows if the difficulty is close to the range of a long
+      retargeted = BigInteger.valueOf(difficulty).multiply(BigInteger.valueOf(targetTimespan))
+          .divide(BigInteger.valueOf(timespan)).min(BigInteger.valueOf(Long.MAX_VALUE))
+          .longValue();
+    }
+    return Math.max(retargeted, 1);
+  }
+
   /**
    * Generates the genesis block, gets the total mining power and adjusts the difficulty of the
    * next block accordingly.
@@ -90,11 +177,12 @@ public class ProofOfWorkBlock extends Block {
    * @return the genesis block
    */
   public static ProofOfWorkBlock genesisBlock(Node minter) {
+    SimulationContext context = minter.getContext();
     long totalMiningPower = 0;
-    for (Node node : getSimulatedNodes()) {
+    for (Node node : context.getSimulatedNodes()) {
       totalMiningPower += node.getMiningPower();
     }
-    genesisNextDifficulty = BigInteger.valueOf(totalMiningPower * getTargetInterval());
-    return new ProofOfWorkBlock(null, minter, 0, BigInteger.ZERO);
+    long nextDifficulty = totalMiningPower * context.getTargetInterval();
+    return new ProofOfWorkBlock(null, minter, 0, 0, nextDifficulty);
   }
 }
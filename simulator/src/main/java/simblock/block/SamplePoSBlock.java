@@ -19,25 +19,28 @@ package simblock.block;
 import static simblock.settings.SimulationConfiguration.AVERAGE_COINS;
 import static simblock.settings.SimulationConfiguration.STAKING_REWARD;
 import static simblock.settings.SimulationConfiguration.STDEV_OF_COINS;
-import static simblock.simulator.Main.random;
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.getTargetInterval;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Random;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
 
 /**
- * The type Sample proof of stake block.
+ * The type Sample proof of stake block. The coinages of the nodes are kept in a {@link
+ * CoinageLedger}, which shares all but the coinage of the minter with the parent block.
  */
 public class SamplePoSBlock extends Block {
-  private final Map<Node, Coinage> coinages;
-  private static Map<Node, Coinage> genesisCoinages;
+  private final CoinageLedger ledger;
   private final BigInteger difficulty;
   private final BigInteger totalDifficulty;
   private final BigInteger nextDifficulty;
 
+  /**
+   * The next difficulty as the nearest double, shared by the staking rates of all nodes.
+   */
+  private final double nextDifficultyAsDouble;
+
   /**
    * Instantiates a new Sample proof of stake block.
    *
@@ -49,26 +52,32 @@ public class SamplePoSBlock extends Block {
   public SamplePoSBlock(
       SamplePoSBlock parent, Node minter, long time, BigInteger difficulty
   ) {
-    super(parent, minter, time);
+    this(parent, minter, time, difficulty, null);
+  }
+
+  /**
+   * Instantiates a new Sample proof of stake block with the provided ledger of the genesis
+   * block.
+   *
+   * @param parent        the parent
+   * @param minter        the minter
+   * @param time          the time
+   * @param difficulty    the difficulty
+   * @param genesisLedger the coinages of all nodes if the block is the genesis block
+   */
+  private SamplePoSBlock(
+      SamplePoSBlock parent, Node minter, long time, BigInteger difficulty,
+      CoinageLedger genesisLedger
+  ) {
+    super(parent, minter, time, difficulty.doubleValue());
+    SimulationContext context = minter.getContext();
 
-    this.coinages = new HashMap<>();
     if (parent == null) {
-      for (Node node : getSimulatedNodes()) {
-        this.coinages.put(node, genesisCoinages.get(node).clone());
-      }
+      this.ledger = genesisLedger;
     } else {
-      for (Node node : getSimulatedNodes()) {
-        this.coinages.put(node, parent.getCoinage(node).clone());
-        this.coinages.get(node).increaseAge();
-      }
-      this.coinages.get(minter).reward(STAKING_REWARD);
-      this.coinages.get(minter).resetAge();
-    }
-
-    BigInteger totalCoinage = BigInteger.ZERO;
-    for (Node node : getSimulatedNodes()) {
-      totalCoinage = totalCoinage.add(this.coinages.get(node).getCoinage());
+      this.ledger = parent.ledger.mint(minter.getNodeID() - 1, this.getHeight(), STAKING_REWARD);
     }
+    BigInteger totalCoinage = this.ledger.getTotalCoinage(this.getHeight());
 
     this.difficulty = difficulty;
     if (parent == null) {
@@ -77,8 +86,9 @@ public class SamplePoSBlock extends Block {
       this.totalDifficulty = parent.getTotalDifficulty().add(difficulty);
     }
     this.nextDifficulty = totalCoinage.multiply(
-            BigInteger.valueOf(getTargetInterval())).divide(BigInteger.valueOf(1000)
+            BigInteger.valueOf(context.getTargetInterval())).divide(BigInteger.valueOf(1000)
     );
+    this.nextDifficultyAsDouble = this.nextDifficulty.doubleValue();
   }
 
   /**
@@ -89,7 +99,19 @@ public class SamplePoSBlock extends Block {
    */
   //TODO Coinage is related to proof of stake obviously
   public Coinage getCoinage(Node node) {
-    return this.coinages.get(node);
+    return this.ledger.getCoinage(node.getNodeID() - 1, this.getHeight());
+  }
+
+  /**
+   * Gets the probability that the node mints the next block in a second, i.e. its coinage divided
+   * by the next difficulty.
+   *
+   * @param node the node
+   * @return the probability
+   */
+  public double getStakingProbability(Node node) {
+    return this.ledger.getCoinageAsDouble(node.getNodeID() - 1, this.getHeight())
+        / this.nextDifficultyAsDouble;
   }
 
   /**
@@ -119,10 +141,9 @@ public class SamplePoSBlock extends Block {
     return this.nextDifficulty;
   }
 
-  private static Coinage genCoinage() {
+  private static long genCoins(Random random) {
     double r = random.nextGaussian();
-    BigInteger coins = BigInteger.valueOf(Math.max((int) (r * STDEV_OF_COINS + AVERAGE_COINS), 0));
-    return new Coinage(coins, 1);
+    return Math.max((int) (r * STDEV_OF_COINS + AVERAGE_COINS), 0);
   }
 
   /**
@@ -132,10 +153,14 @@ public class SamplePoSBlock extends Block {
    * @return the sample proof of stake block
    */
   public static SamplePoSBlock genesisBlock(Node minter) {
-    genesisCoinages = new HashMap<>();
-    for (Node node : getSimulatedNodes()) {
-      genesisCoinages.put(node, genCoinage());
+    SimulationContext context = minter.getContext();
+    List<Node> simulatedNodes = context.getSimulatedNodes();
+    // The ledger is indexed by node id - 1, the order in which the nodes were added
+    long[] genesisCoins = new long[simulatedNodes.size()];
+    for (int i = 0; i < genesisCoins.length; i++) {
+      genesisCoins[i] = genCoins(context.getRandom());
     }
-    return new SamplePoSBlock(null, minter, 0, BigInteger.ZERO);
+    return new SamplePoSBlock(
+        null, minter, 0, BigInteger.ZERO, CoinageLedger.genesis(genesisCoins));
   }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.node;
+
+import java.util.Arrays;
+
+/**
+ * The type Block id set is a set of block ids with open addressing, which keeps the ids in a
+ * primitive array instead of the entries and the boxed keys of a {@link java.util.HashSet}.
+ */
+class BlockIdSet {
+  /**
+   * The key of a free entry.
+   */
+  private static final int FREE = -1;
+
+  /**
+   * The block ids, {@link #FREE} for free entries.
+   */
+  private int[] keys = new int[4];
+
+  /**
+   * The number of block ids.
+   */
+  private int size = 0;
+
+  /**
+   * Instantiates a new empty Block id set.
+   */
+  BlockIdSet() {
+    Arrays.fill(this.keys, FREE);
+  }
+
+  /**
+   * Checks if the set contains the block id.
+   *
+   * @param blockID the block id
+   * @return true if the block id is in the set
+   */
+  boolean contains(int blockID) {
+    int mask = this.keys.length - 1;
+    for (int i = hash(blockID) & mask; this.keys[i] != FREE; i = (i + 1) & mask) {
+      if (this.keys[i] == blockID) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the block id.
+   *
+   * @param blockID the block id
+   * @return true if the block id was not in the set
+   */
+  boolean add(int blockID) {
+    if (this.contains(blockID)) {
+      return false;
+    }
+    if ((this.size + 1) * 2 > this.keys.length) {
+      this.grow();
+    }
+    this.insert(blockID);
+    this.size++;
+    return true;
+  }
+
+  /**
+   * Removes the block id, moving back the entries of its probe sequence.
+   *
+   * @param blockID the block id
+   * @return true if the block id was in the set
+   */
+  boolean remove(int blockID) {
+    int mask = this.keys.length - 1;
+    int i = hash(blockID) & mask;
+    while (this.keys[i] != blockID) {
+      if (this.keys[i] == FREE) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    for (int j = (i + 1) & mask; this.keys[j] != FREE; j = (j + 1) & mask) {
+      int home = hash(this.keys[j]) & mask;
+      // Move the entry back unless its home lies cyclically in (i, j]
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+        this.keys[i] = this.keys[j];
+        i = j;
+      }
+    }
+    this.keys[i] = FREE;
+    this.size--;
+    return true;
+  }
+
+  /**
+   * Doubles the capacity and inserts the block ids again.
+   */
+  private void grow() {
+    int[] old = this.keys;
+    this.keys = new int[old.length * 2];
+    Arrays.fill(this.keys, FREE);
+    for (int key : old) {
+      if (key != FREE) {
+        this.insert(key);
+      }
+    }
+  }
+
+  /**
+   * Inserts a block id that is not in the set into the first free entry of its probe sequence.
+   *
+   * @param blockID the block id
+   */
+  private void insert(int blockID) {
+    int mask = this.keys.length - 1;
+    int i = hash(blockID) & mask;
+    while (this.keys[i] != FREE) {
+      i = (i + 1) & mask;
+    }
+    this.keys[i] = blockID;
+  }
+
+  /**
+   * Spreads the bits of the block id.
+   *
+   * @param blockID the block id
+   * @return the hash
+   */
+  private static int hash(int blockID) {
+    int h = blockID * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -16,30 +16,26 @@
 
 package simblock.node;
 
-import static simblock.settings.SimulationConfiguration.BLOCK_SIZE;
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE;
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CONTROL_NODE;
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_RATE_FOR_CHURN_NODE;
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_RATE_FOR_CONTROL_NODE;
 import static simblock.settings.SimulationConfiguration.COMPACT_BLOCK_SIZE;
-import static simblock.simulator.Main.OUT_JSON_FILE;
 import static simblock.simulator.Network.getBandwidth;
-import static simblock.simulator.Simulator.arriveBlock;
-import static simblock.simulator.Timer.getCurrentTime;
-import static simblock.simulator.Timer.putTask;
-import static simblock.simulator.Timer.removeTask;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
 
 import simblock.block.Block;
 import simblock.node.consensus.AbstractConsensusAlgo;
 import simblock.node.routing.AbstractRoutingTable;
+import simblock.simulator.SimulationContext;
+import simblock.simulator.TraceWriter;
+import simblock.simulator.UndoLog;
 import simblock.task.AbstractMessageTask;
 import simblock.task.AbstractMintingTask;
 import simblock.task.BlockMessageTask;
+import simblock.task.BlockSentTask;
 import simblock.task.CmpctBlockMessageTask;
 import simblock.task.GetBlockTxnMessageTask;
 import simblock.task.InvMessageTask;
@@ -49,6 +45,11 @@ import simblock.task.RecMessageTask;
  * A class representing a node in the network.
  */
 public class Node {
+  /**
+   * The number of low bits of a task order holding the ID of the node that scheduled the task.
+   */
+  public static final int ORDER_NODE_ID_BITS = 20;
+
   /**
    * Unique node ID.
    */
@@ -79,6 +80,11 @@ public class Node {
    */
   private boolean useCBR;
 
+  /**
+   * Whether the block transmissions of the node are traced.
+   */
+  private final boolean traceSampled;
+
   /**
    * The node causes churn.
    */
@@ -90,9 +96,9 @@ public class Node {
   private Block block;
 
   /**
-   * Orphaned blocks known to node.
+   * The number of orphaned blocks known to node, which are marked in the blocks.
    */
-  private final Set<Block> orphans = new HashSet<>();
+  private int orphanCount = 0;
 
   /**
    * The current minting task
@@ -108,16 +114,37 @@ public class Node {
   //TODO
   private final ArrayList<AbstractMessageTask> messageQue = new ArrayList<>();
   // TODO
-  private final Set<Block> downloadingBlocks = new HashSet<>();
+  private final BlockIdSet downloadingBlocks = new BlockIdSet();
 
   /**
    * Processing time of tasks expressed in milliseconds.
    */
   private final long processingTime = 2;
 
+  /**
+   * The simulation the node belongs to.
+   */
+  private final SimulationContext context;
+
+  /**
+   * The random number generator of the node, seeded from the simulation seed.
+   */
+  private final RestorableRandom random;
+
+  /**
+   * The logical clock of the node, used to order the tasks it schedules for the same time.
+   */
+  private long taskClock = 0;
+
+  /**
+   * The log recording how to undo changes of the node state, null if changes are not recorded.
+   */
+  private UndoLog undoLog = null;
+
   /**
    * Instantiates a new Node.
    *
+   * @param context           the simulation the node belongs to
    * @param nodeID            the node id
    * @param numConnection     the number of connections a node can have
    * @param region            the region
@@ -128,14 +155,17 @@ public class Node {
    * @param isChurnNode       whether the node causes churn
    */
   public Node(
-      int nodeID, int numConnection, int region, long miningPower, String routingTableName,
-      String consensusAlgoName, boolean useCBR, boolean isChurnNode
+      SimulationContext context, int nodeID, int numConnection, int region, long miningPower,
+      String routingTableName, String consensusAlgoName, boolean useCBR, boolean isChurnNode
   ) {
+    this.context = context;
+    this.random = new RestorableRandom(context.getRandom().nextLong());
     this.nodeID = nodeID;
     this.region = region;
     this.miningPower = miningPower;
     this.useCBR = useCBR;
     this.isChurnNode = isChurnNode;
+    this.traceSampled = this.context.getTrace().isSampled(nodeID, region);
 
     try {
       this.routingTable = (AbstractRoutingTable) Class.forName(routingTableName).getConstructor(
@@ -157,6 +187,15 @@ public class Node {
     return this.nodeID;
   }
 
+  /**
+   * Checks whether the block transmissions of the node are traced.
+   *
+   * @return true if the node is sampled by the trace
+   */
+  public boolean isTraceSampled() {
+    return this.traceSampled;
+  }
+
   /**
    * Gets the region ID assigned to a node.
    *
@@ -166,6 +205,120 @@ public class Node {
     return this.region;
   }
 
+  /**
+   * Gets the simulation the node belongs to.
+   *
+   * @return the simulation context
+   */
+  public SimulationContext getContext() {
+    return this.context;
+  }
+
+  /**
+   * Gets the random number generator of the node. Random decisions of a node during the
+   * simulation only draw from it, so they do not depend on the order in which nodes are simulated.
+   *
+   * @return the random number generator
+   */
+  public Random getRandom() {
+    return this.random;
+  }
+
+  /**
+   * Gets the order of the next task scheduled by the node, which is larger than the orders of all
+   * tasks the node has scheduled or run before. The low {@link #ORDER_NODE_ID_BITS} bits hold the
+   * node ID, so orders of different nodes never collide.
+   *
+   * @return the task order
+   */
+  public long nextTaskOrder() {
+    return ++this.taskClock << ORDER_NODE_ID_BITS | this.nodeID;
+  }
+
+  /**
+   * Advances the logical clock of the node past the order of a task it runs.
+   *
+   * @param order the order of the task
+   */
+  public void observeTaskOrder(long order) {
+    if (this.undoLog != null) {
+      // The node only changes its clock and draws random numbers while it runs its own tasks
+      long clock = this.taskClock;
+      long randomState = this.random.getState();
+      this.undoLog.record(() -> {
+        this.taskClock = clock;
+        this.random.setState(randomState);
+      });
+    }
+    this.taskClock = Math.max(this.taskClock, order >>> ORDER_NODE_ID_BITS);
+  }
+
+  /**
+   * Sets the log recording how to undo changes of the node state.
+   *
+   * @param undoLog the undo log, null to stop recording changes
+   */
+  public void setUndoLog(UndoLog undoLog) {
+    this.undoLog = undoLog;
+  }
+
+  /**
+   * Records how to undo a change of the node state, if changes are recorded.
+   *
+   * @param undo the action undoing the change
+   */
+  private void recordUndo(Runnable undo) {
+    if (this.undoLog != null) {
+      this.undoLog.record(undo);
+    }
+  }
+
+  // The state changes below are undone when the task making them is rolled back
+  private void setMintingTask(AbstractMintingTask mintingTask) {
+    AbstractMintingTask previous = this.mintingTask;
+    this.recordUndo(() -> this.mintingTask = previous);
+    this.mintingTask = mintingTask;
+  }
+
+  private void setSendingBlock(boolean sendingBlock) {
+    boolean previous = this.sendingBlock;
+    this.recordUndo(() -> this.sendingBlock = previous);
+    this.sendingBlock = sendingBlock;
+  }
+
+  private void addToSet(BlockIdSet blocks, int blockID) {
+    if (blocks.add(blockID)) {
+      this.recordUndo(() -> blocks.remove(blockID));
+    }
+  }
+
+  private void removeFromSet(BlockIdSet blocks, int blockID) {
+    if (blocks.remove(blockID)) {
+      this.recordUndo(() -> blocks.add(blockID));
+    }
+  }
+
+  private void setOrphan(Block block, boolean orphan) {
+    if (block.setOrphanOf(this, orphan)) {
+      int change = orphan ? 1 : -1;
+      this.orphanCount += change;
+      this.recordUndo(() -> {
+        block.setOrphanOf(this, !orphan);
+        this.orphanCount -= change;
+      });
+    }
+  }
+
+  private void enqueueMessage(AbstractMessageTask message) {
+    this.messageQue.add(message);
+    this.recordUndo(() -> this.messageQue.remove(this.messageQue.size() - 1));
+  }
+
+  private void dequeueMessage() {
+    AbstractMessageTask message = this.messageQue.remove(0);
+    this.recordUndo(() -> this.messageQue.add(0, message));
+  }
+
   /**
    * Gets mining power.
    *
@@ -204,12 +357,12 @@ public class Node {
   }
 
   /**
-   * Gets all orphans known to node.
+   * Gets the number of orphans known to node.
    *
-   * @return the orphans
+   * @return the orphan count
    */
-  public Set<Block> getOrphans() {
-    return this.orphans;
+  public int getOrphanCount() {
+    return this.orphanCount;
   }
 
   /**
@@ -286,14 +439,17 @@ public class Node {
   public void addToChain(Block newBlock) {
     // If the node has been minting
     if (this.mintingTask != null) {
-      removeTask(this.mintingTask);
-      this.mintingTask = null;
+      this.context.removeTask(this.mintingTask);
+      this.setMintingTask(null);
     }
     // Update the current block
+    Block previous = this.block;
+    this.recordUndo(() -> this.block = previous);
     this.block = newBlock;
+    this.context.adoptBlock(newBlock, previous);
     printAddBlock(newBlock);
     // Observe and handle new block arrival
-    arriveBlock(newBlock, this);
+    this.context.arriveBlock(newBlock, this);
   }
 
   /**
@@ -302,34 +458,36 @@ public class Node {
    * @param newBlock the block to be logged
    */
   private void printAddBlock(Block newBlock) {
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"add-block\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"node-id\":" + this.getNodeID() + ",");
-    OUT_JSON_FILE.print("\"block-id\":" + newBlock.getId());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    TraceWriter trace = this.context.getTrace();
+    if (trace.tracesBlocks()) {
+      trace.addBlock(this.context.getCurrentTime(), this.getNodeID(), newBlock.getId());
+    }
   }
 
   /**
-   * Add orphans.
+   * Add orphans. The blocks of the branch of the orphan block become orphans and the blocks of
+   * the branch of the valid block stop being orphans, down to the last common ancestor of the two
+   * blocks, so the cost is the depth of the fork.
    *
    * @param orphanBlock the orphan block
    * @param validBlock  the valid block
    */
-  //TODO check this out later
   public void addOrphans(Block orphanBlock, Block validBlock) {
-    if (orphanBlock != validBlock) {
-      this.orphans.add(orphanBlock);
-      this.orphans.remove(validBlock);
-      if (validBlock == null || orphanBlock.getHeight() > validBlock.getHeight()) {
-        this.addOrphans(orphanBlock.getParent(), validBlock);
-      } else if (orphanBlock.getHeight() == validBlock.getHeight()) {
-        this.addOrphans(orphanBlock.getParent(), validBlock.getParent());
-      } else {
-        this.addOrphans(orphanBlock, validBlock.getParent());
+    // The walk also ends at a pruned block
+    while (orphanBlock != validBlock && orphanBlock != null) {
+      this.setOrphan(orphanBlock, true);
+      if (validBlock == null) {
+        orphanBlock = orphanBlock.getParent();
+        continue;
+      }
+      this.setOrphan(validBlock, false);
+      int orphanHeight = orphanBlock.getHeight();
+      int validHeight = validBlock.getHeight();
+      if (orphanHeight >= validHeight) {
+        orphanBlock = orphanBlock.getParent();
+      }
+      if (orphanHeight <= validHeight) {
+        validBlock = validBlock.getParent();
       }
     }
   }
@@ -339,9 +497,9 @@ public class Node {
    */
   public void minting() {
     AbstractMintingTask task = this.consensusAlgo.minting();
-    this.mintingTask = task;
+    this.setMintingTask(task);
     if (task != null) {
-      putTask(task);
+      this.context.putTask(task);
     }
   }
 
@@ -352,8 +510,8 @@ public class Node {
    */
   public void sendInv(Block block) {
     for (Node to : this.routingTable.getNeighbors()) {
-      AbstractMessageTask task = new InvMessageTask(this, to, block);
-      putTask(task);
+      AbstractMessageTask task = new InvMessageTask(this, to, block.getId());
+      this.context.putTask(task);
     }
   }
 
@@ -363,6 +521,10 @@ public class Node {
    * @param block the block
    */
   public void receiveBlock(Block block) {
+    if (block.isPruned()) {
+      // Blocks archived by the block store are final
+      return;
+    }
     if (this.consensusAlgo.isReceivedBlockValid(block, this.block)) {
       if (this.block != null && !this.block.isOnSameChainAs(block)) {
         // If orphan mark orphan
@@ -374,12 +536,25 @@ public class Node {
       this.minting();
       // Advertise received block
       this.sendInv(block);
-    } else if (!this.orphans.contains(block) && !block.isOnSameChainAs(this.block)) {
+    } else if (!block.isOrphanOf(this) && !block.isOnSameChainAs(this.block)) {
       // TODO better understand - what if orphan is not valid?
       // If the block was not valid but was an unknown orphan and is not on the same chain as the
       // current block
       this.addOrphans(block, this.block);
-      arriveBlock(block, this);
+      this.context.arriveBlock(block, this);
+    }
+  }
+
+  /**
+   * Receives the block with the provided id unless it was pruned.
+   *
+   * @param blockID the block id
+   */
+  private void receiveBlock(int blockID) {
+    Block block = this.context.getBlockTable().getBlock(blockID);
+    // Blocks archived by the block store are final and no longer in the block table
+    if (block != null) {
+      this.receiveBlock(block);
     }
   }
 
@@ -392,53 +567,55 @@ public class Node {
     Node from = message.getFrom();
 
     if (message instanceof InvMessageTask) {
-      Block block = ((InvMessageTask) message).getBlock();
-      if (!this.orphans.contains(block) && !this.downloadingBlocks.contains(block)) {
+      int blockID = ((InvMessageTask) message).getBlockID();
+      // Pruned blocks are no longer in the block table
+      Block block = this.context.getBlockTable().getBlock(blockID);
+      if (block != null && !block.isOrphanOf(this)
+          && !this.downloadingBlocks.contains(blockID)) {
         if (this.consensusAlgo.isReceivedBlockValid(block, this.block)) {
-          AbstractMessageTask task = new RecMessageTask(this, from, block);
-          putTask(task);
-          downloadingBlocks.add(block);
+          AbstractMessageTask task = new RecMessageTask(this, from, blockID);
+          this.context.putTask(task);
+          this.addToSet(this.downloadingBlocks, blockID);
         } else if (!block.isOnSameChainAs(this.block)) {
           // get new orphan block
-          AbstractMessageTask task = new RecMessageTask(this, from, block);
-          putTask(task);
-          downloadingBlocks.add(block);
+          AbstractMessageTask task = new RecMessageTask(this, from, blockID);
+          this.context.putTask(task);
+          this.addToSet(this.downloadingBlocks, blockID);
         }
       }
     }
 
     if (message instanceof RecMessageTask) {
-      this.messageQue.add((RecMessageTask) message);
+      this.enqueueMessage(message);
       if (!sendingBlock) {
         this.sendNextBlockMessage();
       }
     }
 
     if(message instanceof GetBlockTxnMessageTask){
-			this.messageQue.add((GetBlockTxnMessageTask) message);
+			this.enqueueMessage(message);
 			if(!sendingBlock){
 				this.sendNextBlockMessage();
 			}
 		}
 
     if(message instanceof CmpctBlockMessageTask){
-			Block block = ((CmpctBlockMessageTask) message).getBlock();
-      Random random = new Random();
+			int blockID = ((CmpctBlockMessageTask) message).getBlockID();
       float CBRfailureRate = this.isChurnNode ? CBR_FAILURE_RATE_FOR_CHURN_NODE : CBR_FAILURE_RATE_FOR_CONTROL_NODE;
 			boolean success = random.nextDouble() > CBRfailureRate ? true : false;
 			if(success){
-				downloadingBlocks.remove(block);
-				this.receiveBlock(block);
+				this.removeFromSet(this.downloadingBlocks, blockID);
+				this.receiveBlock(blockID);
 			}else{
-				AbstractMessageTask task = new GetBlockTxnMessageTask(this, from, block);
-				putTask(task);
+				AbstractMessageTask task = new GetBlockTxnMessageTask(this, from, blockID);
+				this.context.putTask(task);
 			}
 		}
 
     if (message instanceof BlockMessageTask) {
-      Block block = ((BlockMessageTask) message).getBlock();
-      downloadingBlocks.remove(block);
-      this.receiveBlock(block);
+      int blockID = ((BlockMessageTask) message).getBlockID();
+      this.removeFromSet(this.downloadingBlocks, blockID);
+      this.receiveBlock(blockID);
     }
   }
 
@@ -446,16 +623,16 @@ public class Node {
   /**
    * Gets block size when the node fails compact block relay.
    */
-  private long getFailedBlockSize(){
-		Random random = new Random();
-			if(this.isChurnNode){
-				int index = random.nextInt(CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE.length);
-				return (long)(BLOCK_SIZE * CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE[index]);
-			}else{
-				int index = random.nextInt(CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CONTROL_NODE.length);
-				return (long)(BLOCK_SIZE * CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CONTROL_NODE[index]);
-			}
-	}
+  private long getFailedBlockSize() {
+    long blockSize = this.context.getParameters().getBlockSize();
+    if (this.isChurnNode) {
+      int index = random.nextInt(CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE.length);
+      return (long) (blockSize * CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE[index]);
+    } else {
+      int index = random.nextInt(CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CONTROL_NODE.length);
+      return (long) (blockSize * CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CONTROL_NODE[index]);
+    }
+  }
 
   /**
    * Send next block message.
@@ -469,7 +646,7 @@ public class Node {
       AbstractMessageTask messageTask;
 
       if(this.messageQue.get(0) instanceof RecMessageTask){
-        Block block = ((RecMessageTask) this.messageQue.get(0)).getBlock();
+        int blockID = ((RecMessageTask) this.messageQue.get(0)).getBlockID();
         // If use compact block relay.
         if(this.messageQue.get(0).getFrom().useCBR && this.useCBR) {
           // Convert bytes to bits and divide by the bandwidth expressed as bit per millisecond, add
@@ -477,26 +654,29 @@ public class Node {
           long delay = COMPACT_BLOCK_SIZE * 8 / (bandwidth / 1000) + processingTime;
 
           // Send compact block message.
-          messageTask = new CmpctBlockMessageTask(this, to, block, delay);
+          messageTask = new CmpctBlockMessageTask(this, to, blockID, delay);
         } else {
           // Else use lagacy protocol.
-          long delay = BLOCK_SIZE * 8 / (bandwidth / 1000) + processingTime;
-          messageTask = new BlockMessageTask(this, to, block, delay);
+          long delay = this.context.getParameters().getBlockSize() * 8 / (bandwidth / 1000)
+              + processingTime;
+          messageTask = new BlockMessageTask(this, to, blockID, delay);
         }
       } else if(this.messageQue.get(0) instanceof GetBlockTxnMessageTask) {
         // Else from requests missing transactions.
-        Block block = ((GetBlockTxnMessageTask) this.messageQue.get(0)).getBlock();
+        int blockID = ((GetBlockTxnMessageTask) this.messageQue.get(0)).getBlockID();
         long delay = getFailedBlockSize() * 8 / (bandwidth / 1000) + processingTime;
-        messageTask = new BlockMessageTask(this, to, block, delay);
+        messageTask = new BlockMessageTask(this, to, blockID, delay);
       } else {
         throw new UnsupportedOperationException();
       }
       
-      sendingBlock = true;
-      this.messageQue.remove(0);
-      putTask(messageTask);
+      this.setSendingBlock(true);
+      this.dequeueMessage();
+      this.context.putTask(messageTask);
+      // The transmission ends when the message arrives
+      this.context.putTask(new BlockSentTask(this, messageTask.getInterval()));
     } else {
-      sendingBlock = false;
+      this.setSendingBlock(false);
     }
   }
 }
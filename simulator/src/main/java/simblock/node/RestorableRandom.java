@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node;
+
+import java.util.Random;
+
+/**
+ * The type Restorable random generates the same numbers as {@link Random} with the same seed, but
+ * exposes its state, so that it can be saved and restored when an optimistic simulation rolls
+ * back. The cached second value of {@link Random#nextGaussian()} is not part of the state.
+ */
+public class RestorableRandom extends Random {
+  private static final long serialVersionUID = 1L;
+  private static final long MULTIPLIER = 0x5DEECE66DL;
+  private static final long ADDEND = 0xBL;
+  private static final long MASK = (1L << 48) - 1;
+
+  /**
+   * The state of the linear congruential generator.
+   */
+  private long state;
+
+  /**
+   * Instantiates a new Restorable random.
+   *
+   * @param seed the seed
+   */
+  public RestorableRandom(long seed) {
+    super(seed);
+    this.setSeed(seed);
+  }
+
+  @Override
+  public synchronized void setSeed(long seed) {
+    super.setSeed(seed);
+    this.state = (seed ^ MULTIPLIER) & MASK;
+  }
+
+  @Override
+  protected int next(int bits) {
+    this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+    return (int) (this.state >>> (48 - bits));
+  }
+
+  /**
+   * Gets the state of the generator.
+   *
+   * @return the state
+   */
+  public long getState() {
+    return this.state;
+  }
+
+  /**
+   * Restores a state of the generator.
+   *
+   * @param state the state
+   */
+  public void setState(long state) {
+    this.state = state;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node.consensus;
+
+import java.util.Random;
+
+/**
+ * The type Alias table samples indices proportionally to fixed weights in O(1) using Vose's
+ * variant of Walker's alias method. Building the table takes O(n).
+ */
+public class AliasTable {
+  /**
+   * The probability of keeping the drawn column instead of switching to its alias.
+   */
+  private final double[] probabilities;
+
+  /**
+   * The alias of each column.
+   */
+  private final int[] aliases;
+
+  /**
+   * Instantiates a new Alias table.
+   *
+   * @param weights the non-negative weights, at least one of them positive
+   */
+  public AliasTable(double[] weights) {
+    int n = weights.length;
+    this.probabilities = new double[n];
+    this.aliases = new int[n];
+
+    double total = 0;
+    for (double weight : weights) {
+      total += weight;
+    }
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / total;
+      if (scaled[i] < 1.0) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      this.probabilities[less] = scaled[less];
+      this.aliases[less] = more;
+      scaled[more] = scaled[more] + scaled[less] - 1.0;
+      if (scaled[more] < 1.0) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // Remaining columns are full up to rounding errors
+    while (largeCount > 0) {
+      int more = large[--largeCount];
+      this.probabilities[more] = 1.0;
+      this.aliases[more] = more;
+    }
+    while (smallCount > 0) {
+      int less = small[--smallCount];
+      this.probabilities[less] = 1.0;
+      this.aliases[less] = less;
+    }
+  }
+
+  /**
+   * Draws an index with probability proportional to its weight.
+   *
+   * @param random the random number generator
+   * @return the index
+   */
+  public int sample(Random random) {
+    int column = random.nextInt(this.probabilities.length);
+    return random.nextDouble() < this.probabilities[column] ? column : this.aliases[column];
+  }
+
+  /**
+   * Gets the number of weights.
+   *
+   * @return the size
+   */
+  public int size() {
+    return this.probabilities.length;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node.consensus;
+
+import java.util.List;
+import java.util.Random;
+import simblock.block.ProofOfWorkBlock;
+import simblock.node.Node;
+import simblock.simulator.SimulationContext;
+import simblock.task.SampledMiningTask;
+
+/**
+ * The type Block winner sampler replaces the per node {@link simblock.task.MiningTask} instances
+ * of {@link ProofOfWork} with a single pending mining event for the whole network.
+ *
+ * <p>In the per node model every node mining on a block with next difficulty <em>D</em> finds a
+ * block after an exponentially distributed time with rate <em>r(D) * miningPower</em>, where
+ * <em>r(D) = -log(1 - 1 / D)</em>, and draws a new time whenever it switches to another block.
+ * The superposition of these independent processes is sampled by uniformization: mining events
+ * of the whole network occur at the rate <em>rMax * totalMiningPower</em>, the node is drawn
+ * from an {@link AliasTable} weighted by {@link Node#getMiningPower()} and the event is kept with
+ * probability <em>r(D) / rMax</em> for the block the node is mining on at that time. This yields
+ * the same distribution of block intervals and winners, while switching blocks no longer
+ * schedules or cancels any task.
+ */
+public class BlockWinnerSampler {
+  /**
+   * The alias table over the mining power of all simulated nodes.
+   */
+  private AliasTable miningPowerTable = null;
+
+  /**
+   * The total mining power of all simulated nodes.
+   */
+  private long totalMiningPower = 0;
+
+  /**
+   * The upper bound of the success rate per unit of mining power of the mined blocks.
+   */
+  private double maxSuccessRate = 0;
+
+  /**
+   * The currently scheduled mining event.
+   */
+  private SampledMiningTask pendingTask = null;
+
+  /**
+   * The simulation whose nodes are sampled.
+   */
+  private final SimulationContext context;
+
+  /**
+   * Instantiates a new Block winner sampler.
+   *
+   * @param context the simulation whose nodes are sampled
+   */
+  public BlockWinnerSampler(SimulationContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Registers that the node started mining on its current block. Reschedules the pending mining
+   * event only if there is none yet or the block raises the success rate bound.
+   *
+   * @param node the node
+   */
+  public void startMining(Node node) {
+    ProofOfWorkBlock parent = (ProofOfWorkBlock) node.getBlock();
+    double successRate = getSuccessRate(parent.getNextDifficulty());
+    if (this.pendingTask != null && successRate <= this.maxSuccessRate) {
+      return;
+    }
+    this.maxSuccessRate = Math.max(this.maxSuccessRate, successRate);
+    if (this.pendingTask != null) {
+      this.context.removeTask(this.pendingTask);
+    }
+    this.scheduleNext();
+  }
+
+  /**
+   * Handles a fired mining event and schedules the next one.
+   *
+   * @param task the fired task
+   */
+  public void mined(SampledMiningTask task) {
+    if (task == this.pendingTask) {
+      this.scheduleNext();
+    }
+  }
+
+  /**
+   * Gets the success rate per unit of mining power and millisecond for the difficulty, i.e.
+   * <em>-log(1 - 1 / difficulty)</em>.
+   *
+   * @param difficulty the difficulty
+   * @return the success rate, 0 if the difficulty is too high to ever succeed
+   */
+  public static double getSuccessRate(long difficulty) {
+    double p = 1.0 / difficulty;
+    return p <= Math.pow(2, -53) ? 0 : -Math.log(1.0 - p);
+  }
+
+  /**
+   * Draws the next mining event of the network.
+   */
+  private void scheduleNext() {
+    this.pendingTask = null;
+    if (this.maxSuccessRate == 0) {
+      return;
+    }
+    List<Node> nodes = this.context.getSimulatedNodes();
+    if (this.miningPowerTable == null || this.miningPowerTable.size() != nodes.size()) {
+      this.buildTable(nodes);
+    }
+    Random random = this.context.getRandom();
+    Node winner = nodes.get(this.miningPowerTable.sample(random));
+    double u = random.nextDouble();
+    long interval = (long) (Math.log(u) / -this.maxSuccessRate / this.totalMiningPower);
+    this.pendingTask = new SampledMiningTask(
+        this, winner, interval, random.nextDouble() * this.maxSuccessRate);
+    this.context.putTask(this.pendingTask);
+  }
+
+  private void buildTable(List<Node> nodes) {
+    double[] weights = new double[nodes.size()];
+    this.totalMiningPower = 0;
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = nodes.get(i).getMiningPower();
+      this.totalMiningPower += nodes.get(i).getMiningPower();
+    }
+    this.miningPowerTable = new AliasTable(weights);
+  }
+}
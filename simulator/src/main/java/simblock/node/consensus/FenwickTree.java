@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node.consensus;
+
+/**
+ * The type Fenwick tree keeps non-negative weights of a fixed number of indices, allowing to
+ * change a weight and to find the index at a position of the cumulative weight in O(log n).
+ * Since changing weights accumulates rounding errors in the partial sums, the tree is rebuilt
+ * from the weights after as many changes as there are indices, which costs O(1) amortized.
+ */
+public class FenwickTree {
+  /**
+   * The weights.
+   */
+  private final double[] weights;
+
+  /**
+   * The partial sums, 1-based.
+   */
+  private final double[] sums;
+
+  /**
+   * The sum of all weights.
+   */
+  private double total = 0;
+
+  /**
+   * The number of weight changes since the tree was last rebuilt.
+   */
+  private int changeCount = 0;
+
+  /**
+   * Instantiates a new Fenwick tree with all weights set to zero.
+   *
+   * @param size the number of indices
+   */
+  public FenwickTree(int size) {
+    this.weights = new double[size];
+    this.sums = new double[size + 1];
+  }
+
+  /**
+   * Gets the number of indices.
+   *
+   * @return the size
+   */
+  public int size() {
+    return this.weights.length;
+  }
+
+  /**
+   * Gets the weight of the index.
+   *
+   * @param index the index
+   * @return the weight
+   */
+  public double get(int index) {
+    return this.weights[index];
+  }
+
+  /**
+   * Sets the weight of the index.
+   *
+   * @param index  the index
+   * @param weight the non-negative weight
+   */
+  public void set(int index, double weight) {
+    double delta = weight - this.weights[index];
+    if (delta == 0) {
+      return;
+    }
+    this.weights[index] = weight;
+    if (++this.changeCount >= this.weights.length) {
+      this.rebuild();
+      return;
+    }
+    for (int i = index + 1; i < this.sums.length; i += i & -i) {
+      this.sums[i] += delta;
+    }
+    this.total += delta;
+  }
+
+  /**
+   * Gets the sum of all weights.
+   *
+   * @return the total
+   */
+  public double getTotal() {
+    return this.total;
+  }
+
+  /**
+   * Finds the index whose interval of the cumulative weight contains the position, i.e. draws
+   * an index proportionally to its weight if the position is uniform in [0, total).
+   *
+   * @param position the position, in [0, total)
+   * @return the index, or -1 if the position is not below the total
+   */
+  public int find(double position) {
+    if (!(position < this.total)) {
+      return -1;
+    }
+    int index = 0;
+    for (int step = Integer.highestOneBit(this.weights.length); step > 0; step >>= 1) {
+      int next = index + step;
+      if (next < this.sums.length && this.sums[next] <= position) {
+        index = next;
+        position -= this.sums[next];
+      }
+    }
+    // Skip indices without weight the position may hit due to rounding errors
+    while (index < this.weights.length && this.weights[index] == 0) {
+      index++;
+    }
+    return index < this.weights.length ? index : -1;
+  }
+
+  /**
+   * Recomputes the partial sums and the total from the weights in O(n).
+   */
+  private void rebuild() {
+    this.total = 0;
+    for (int i = 1; i < this.sums.length; i++) {
+      this.sums[i] = this.weights[i - 1];
+      this.total += this.weights[i - 1];
+    }
+    for (int i = 1; i < this.sums.length; i++) {
+      int parent = i + (i & -i);
+      if (parent < this.sums.length) {
+        this.sums[parent] += this.sums[i];
+      }
+    }
+    this.changeCount = 0;
+  }
+}
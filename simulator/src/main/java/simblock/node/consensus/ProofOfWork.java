@@ -16,9 +16,8 @@
 
 package simblock.node.consensus;
 
-import static simblock.simulator.Main.random;
+import static simblock.settings.SimulationConfiguration.GLOBAL_MINING_SAMPLER;
 
-import java.math.BigInteger;
 import simblock.block.Block;
 import simblock.block.ProofOfWorkBlock;
 import simblock.node.Node;
@@ -39,15 +38,21 @@ public class ProofOfWork extends AbstractConsensusAlgo {
   }
 
   /**
-   * Mints a new block by simulating Proof of Work.
+   * Mints a new block by simulating Proof of Work. If {@link
+   * simblock.settings.SimulationConfiguration#GLOBAL_MINING_SAMPLER} is set, the node is
+   * registered with the {@link BlockWinnerSampler} instead and no task is returned.
    */
   @Override
   public MiningTask minting() {
     Node selfNode = this.getSelfNode();
+    if (GLOBAL_MINING_SAMPLER) {
+      selfNode.getContext().getBlockWinnerSampler().startMining(selfNode);
+      return null;
+    }
     ProofOfWorkBlock parent = (ProofOfWorkBlock) selfNode.getBlock();
-    BigInteger difficulty = parent.getNextDifficulty();
-    double p = 1.0 / difficulty.doubleValue();
-    double u = random.nextDouble();
+    long difficulty = parent.getNextDifficulty();
+    double p = 1.0 / difficulty;
+    double u = selfNode.getRandom().nextDouble();
     return p <= Math.pow(2, -53) ? null : new MiningTask(selfNode, (long) (Math.log(u) / Math.log(
         1.0 - p) / selfNode.getMiningPower()), difficulty);
   }
@@ -56,7 +61,7 @@ public class ProofOfWork extends AbstractConsensusAlgo {
    * Tests if the receivedBlock is valid with regards to the current block. The receivedBlock
    * is valid if it is an instance of a Proof of Work block and the received block needs to have
    * a bigger difficulty than its parent next difficulty and a bigger total difficulty compared to
-   * the current block.
+   * the current block. A pruned block is not valid.
    *
    * @param receivedBlock the received block
    * @param currentBlock  the current block
@@ -64,22 +69,22 @@ public class ProofOfWork extends AbstractConsensusAlgo {
    */
   @Override
   public boolean isReceivedBlockValid(Block receivedBlock, Block currentBlock) {
-    if (!(receivedBlock instanceof ProofOfWorkBlock)) {
+    // A pruned block no longer knows its parent
+    if (!(receivedBlock instanceof ProofOfWorkBlock) || receivedBlock.isPruned()) {
       return false;
     }
     ProofOfWorkBlock recPoWBlock = (ProofOfWorkBlock) receivedBlock;
     ProofOfWorkBlock currPoWBlock = (ProofOfWorkBlock) currentBlock;
     int receivedBlockHeight = receivedBlock.getHeight();
-    ProofOfWorkBlock receivedBlockParent = receivedBlockHeight == 0 ? null :
-        (ProofOfWorkBlock) receivedBlock.getBlockWithHeight(receivedBlockHeight - 1);
+    ProofOfWorkBlock receivedBlockParent = (ProofOfWorkBlock) receivedBlock.getParent();
 
     //TODO - dangerous to split due to short circuit operators being used, refactor?
     return (
         receivedBlockHeight == 0 ||
-            recPoWBlock.getDifficulty().compareTo(receivedBlockParent.getNextDifficulty()) >= 0
+            recPoWBlock.getDifficulty() >= receivedBlockParent.getNextDifficulty()
     ) && (
         currentBlock == null ||
-            recPoWBlock.getTotalDifficulty().compareTo(currPoWBlock.getTotalDifficulty()) > 0
+            recPoWBlock.compareTotalDifficulty(currPoWBlock) > 0
     );
   }
 
@@ -16,7 +16,7 @@
 
 package simblock.node.consensus;
 
-import static simblock.simulator.Main.random;
+import static simblock.settings.SimulationConfiguration.STAKE_WEIGHTED_SAMPLER;
 
 import java.math.BigInteger;
 import simblock.block.Block;
@@ -38,13 +38,22 @@ public class SampleProofOfStake extends AbstractConsensusAlgo {
     super(selfNode);
   }
 
+  /**
+   * Mints a new block by simulating Proof of Stake. If {@link
+   * simblock.settings.SimulationConfiguration#STAKE_WEIGHTED_SAMPLER} is set, the node is
+   * registered with the {@link StakeWinnerSampler} instead and no task is returned.
+   */
   @Override
   public SampleStakingTask minting() {
     Node selfNode = this.getSelfNode();
+    if (STAKE_WEIGHTED_SAMPLER) {
+      selfNode.getContext().getStakeWinnerSampler().startStaking(selfNode);
+      return null;
+    }
     SamplePoSBlock parent = (SamplePoSBlock) selfNode.getBlock();
     BigInteger difficulty = parent.getNextDifficulty();
-    double p = parent.getCoinage(selfNode).getCoinage().doubleValue() / difficulty.doubleValue();
-    double u = random.nextDouble();
+    double p = parent.getStakingProbability(selfNode);
+    double u = selfNode.getRandom().nextDouble();
     return p <= Math.pow(2, -53) ? null : new SampleStakingTask(selfNode,
                                                                 (long) (Math.log(u) / Math.log(
                                                                     1.0 - p) * 1000), difficulty
@@ -54,14 +63,14 @@ public class SampleProofOfStake extends AbstractConsensusAlgo {
   @SuppressWarnings("CheckStyle")
   @Override
   public boolean isReceivedBlockValid(Block receivedBlock, Block currentBlock) {
-    if (!(receivedBlock instanceof SamplePoSBlock)) {
+    // A pruned block no longer knows its parent
+    if (!(receivedBlock instanceof SamplePoSBlock) || receivedBlock.isPruned()) {
       return false;
     }
     SamplePoSBlock recPoSBlock = (SamplePoSBlock) receivedBlock;
     SamplePoSBlock currPoSBlock = (SamplePoSBlock) currentBlock;
     int receivedBlockHeight = receivedBlock.getHeight();
-    SamplePoSBlock receivedBlockParent = receivedBlockHeight == 0 ? null :
-        (SamplePoSBlock) receivedBlock.getBlockWithHeight(receivedBlockHeight - 1);
+    SamplePoSBlock receivedBlockParent = (SamplePoSBlock) receivedBlock.getParent();
 
     //TODO - dangerous to split due to short circuit operators being used, refactor?
     return (
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node.consensus;
+
+import java.util.List;
+import java.util.Random;
+import simblock.block.SamplePoSBlock;
+import simblock.node.Node;
+import simblock.simulator.SimulationContext;
+import simblock.task.SampledStakingTask;
+
+/**
+ * The type Stake winner sampler replaces the per node {@link simblock.task.SampleStakingTask}
+ * instances of {@link SampleProofOfStake} with a single pending staking event for the whole
+ * network.
+ *
+ * <p>Every node staking on a block with next difficulty <em>D</em> mints a block after an
+ * exponentially distributed time with rate <em>-log(1 - coinage / D)</em> per second, where the
+ * coinage is the one of the node in that block. The rates of all nodes are kept in a {@link
+ * FenwickTree}, which is updated in O(log n) whenever a node switches blocks. Staking events of
+ * the whole network are proposed at a rate bound above the total rate, and a proposal is mapped to
+ * the node at a uniform position below the bound when it is run. A position beyond the total rate
+ * rejects the proposal. This thinning yields the same distribution of block intervals and minters
+ * as the per node tasks, while the pending event only has to be rescheduled when the total rate
+ * exceeds the bound.
+ */
+public class StakeWinnerSampler {
+  /**
+   * The factor by which the rate bound exceeds the total rate when it is set.
+   */
+  private static final double RATE_BOUND_MARGIN = 1.25;
+
+  /**
+   * The staking rates in milliseconds of all simulated nodes, indexed by node id - 1.
+   */
+  private FenwickTree stakingRates = null;
+
+  /**
+   * The rate at which staking events are proposed.
+   */
+  private double rateBound = 0;
+
+  /**
+   * The node that most recently started staking, used as the nominal minter of new events.
+   */
+  private Node lastStaker = null;
+
+  /**
+   * The currently scheduled staking event.
+   */
+  private SampledStakingTask pendingTask = null;
+
+  /**
+   * The simulation whose nodes are sampled.
+   */
+  private final SimulationContext context;
+
+  /**
+   * Instantiates a new Stake winner sampler.
+   *
+   * @param context the simulation whose nodes are sampled
+   */
+  public StakeWinnerSampler(SimulationContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Registers that the node started staking on its current block. Reschedules the pending
+   * staking event only if there is none yet or the total rate exceeds the bound.
+   *
+   * @param node the node
+   */
+  public void startStaking(Node node) {
+    List<Node> nodes = this.context.getSimulatedNodes();
+    if (this.stakingRates == null || this.stakingRates.size() != nodes.size()) {
+      this.stakingRates = new FenwickTree(nodes.size());
+    }
+    SamplePoSBlock parent = (SamplePoSBlock) node.getBlock();
+    this.stakingRates.set(node.getNodeID() - 1, getStakingRate(parent, node));
+    this.lastStaker = node;
+    if (this.pendingTask != null && this.stakingRates.getTotal() <= this.rateBound) {
+      return;
+    }
+    if (this.pendingTask != null) {
+      this.context.removeTask(this.pendingTask);
+    }
+    this.scheduleNext();
+  }
+
+  /**
+   * Handles a fired staking event and schedules the next one.
+   *
+   * @param task the fired task
+   */
+  public void staked(SampledStakingTask task) {
+    if (task == this.pendingTask) {
+      this.scheduleNext();
+    }
+  }
+
+  /**
+   * Gets the node a staking event at the position below the rate bound is mapped to.
+   *
+   * @param position the position
+   * @return the node, or null if the position is beyond the total rate
+   */
+  public Node getWinner(double position) {
+    int index = this.stakingRates.find(position);
+    return index < 0 ? null : this.context.getSimulatedNodes().get(index);
+  }
+
+  /**
+   * Gets the staking rate per millisecond of the node on the block.
+   *
+   * @param parent the block
+   * @param node   the node
+   * @return the staking rate, 0 if the node can never mint on the block
+   */
+  private static double getStakingRate(SamplePoSBlock parent, Node node) {
+    double p = parent.getStakingProbability(node);
+    return p <= Math.pow(2, -53) ? 0 : -Math.log(1.0 - p) / 1000;
+  }
+
+  /**
+   * Proposes the next staking event of the network and tightens the rate bound.
+   */
+  private void scheduleNext() {
+    this.pendingTask = null;
+    this.rateBound = this.stakingRates.getTotal() * RATE_BOUND_MARGIN;
+    if (this.rateBound == 0) {
+      return;
+    }
+    Random random = this.context.getRandom();
+    double u = random.nextDouble();
+    long interval = (long) (Math.log(u) / -this.rateBound);
+    this.pendingTask = new SampledStakingTask(
+        this, this.lastStaker, interval, random.nextDouble() * this.rateBound);
+    this.context.putTask(this.pendingTask);
+  }
+}
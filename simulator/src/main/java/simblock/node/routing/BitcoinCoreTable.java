@@ -16,13 +16,12 @@
 
 package simblock.node.routing;
 
-import static simblock.simulator.Main.OUT_JSON_FILE;
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Timer.getCurrentTime;
-
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
+import simblock.simulator.TraceWriter;
 
 /**
  * The implementation of the {@link AbstractRoutingTable} representing the Bitcoin core routing
@@ -71,14 +70,16 @@ public class BitcoinCoreTable extends AbstractRoutingTable {
    */
   //TODO this should be done using the bootstrap node
   public void initTable() {
+    SimulationContext context = this.getSelfNode().getContext();
+    List<Node> simulatedNodes = context.getSimulatedNodes();
     ArrayList<Integer> candidates = new ArrayList<>();
-    for (int i = 0; i < getSimulatedNodes().size(); i++) {
+    for (int i = 0; i < simulatedNodes.size(); i++) {
       candidates.add(i);
     }
-    Collections.shuffle(candidates);
+    Collections.shuffle(candidates, context.getRandom());
     for (int candidate : candidates) {
       if (this.outbound.size() < this.getNumConnection()) {
-        this.addNeighbor(getSimulatedNodes().get(candidate));
+        this.addNeighbor(simulatedNodes.get(candidate));
       } else {
         break;
       }
@@ -101,6 +102,7 @@ public class BitcoinCoreTable extends AbstractRoutingTable {
         node) || this.outbound.size() >= this.getNumConnection()) {
       return false;
     } else if (this.outbound.add(node) && node.getRoutingTable().addInbound(getSelfNode())) {
+      getSelfNode().getContext().getTopologyLog().addLink(getSelfNode(), node);
       printAddLink(node);
       return true;
     } else {
@@ -117,6 +119,7 @@ public class BitcoinCoreTable extends AbstractRoutingTable {
    */
   public boolean removeNeighbor(Node node) {
     if (this.outbound.remove(node) && node.getRoutingTable().removeInbound(getSelfNode())) {
+      getSelfNode().getContext().getTopologyLog().removeLink(getSelfNode(), node);
       printRemoveLink(node);
       return true;
     }
@@ -153,28 +156,20 @@ public class BitcoinCoreTable extends AbstractRoutingTable {
 
   //TODO add example
   private void printAddLink(Node endNode) {
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"add-link\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"begin-node-id\":" + getSelfNode().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"end-node-id\":" + endNode.getNodeID());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    SimulationContext context = getSelfNode().getContext();
+    TraceWriter trace = context.getTrace();
+    if (trace.tracesLinks()) {
+      trace.addLink(context.getCurrentTime(), getSelfNode().getNodeID(), endNode.getNodeID());
+    }
   }
 
   //TODO add example
   private void printRemoveLink(Node endNode) {
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"remove-link\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"begin-node-id\":" + getSelfNode().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"end-node-id\":" + endNode.getNodeID());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    SimulationContext context = getSelfNode().getContext();
+    TraceWriter trace = context.getTrace();
+    if (trace.tracesLinks()) {
+      trace.removeLink(context.getCurrentTime(), getSelfNode().getNodeID(), endNode.getNodeID());
+    }
   }
 
 }
@@ -39,12 +39,61 @@ public class SimulationConfiguration {
   // TODO return to PoW
   public static final String ALGO = "simblock.node.consensus.ProofOfWork";
 
+  /**
+   * The kind of Future Event List used by the timer, either
+   * "simblock.simulator.IndexedHeapEventList" or "simblock.simulator.CalendarEventList".
+   */
+  public static final String FUTURE_EVENT_LIST = "simblock.simulator.IndexedHeapEventList";
+
+  /**
+   * Whether abandoned minting tasks are only marked as cancelled (tombstones) and skipped when
+   * they reach the head of the Future Event List, instead of being removed immediately.
+   */
+  public static final boolean LAZY_MINTING_CANCELLATION = true;
+
+  /**
+   * The portion of tombstones among the scheduled minting tasks above which all tombstones are
+   * removed from the Future Event List at once.
+   */
+  public static final float TOMBSTONE_COMPACTION_RATE = 0.5f;
+
+  /**
+   * The number of threads (logical processes) simulating partitions of the regions, or of the
+   * nodes with {@link #TIME_WARP}, in parallel. The results are the same as with a single thread,
+   * which runs the sequential simulation. Ignored if a global sampler is used.
+   */
+  public static final int NUM_OF_LOGICAL_PROCESSES = 1;
+
+  /**
+   * Whether the logical processes run optimistically and roll back tasks run too early (Time Warp)
+   * instead of waiting for the tasks of other partitions.
+   */
+  public static final boolean TIME_WARP = false;
+
+  /**
+   * The simulated time in milliseconds the logical processes run ahead of the Global Virtual Time
+   * with {@link #TIME_WARP}.
+   */
+  public static final long TIME_WARP_WINDOW = 25;
+
+  /**
+   * Whether Proof of Work mining is sampled by a single pending mining event for the whole
+   * network instead of a mining task per node.
+   */
+  public static final boolean GLOBAL_MINING_SAMPLER = false;
+
   /**
    * The expected value of block generation interval. The difficulty of mining is automatically
    * adjusted by this value and the sum of mining power. (unit: millisecond)
    */
   public static final long INTERVAL = 1000 * 60 * 10;//1000*60;//1000*30*5;//1000*60*10;
 
+  /**
+   * The number of blocks after which the difficulty of Proof of Work mining is retargeted from
+   * the time the blocks took, like in Bitcoin. 0 keeps the initial difficulty.
+   */
+  public static final int DIFFICULTY_ADJUSTMENT_INTERVAL = 2016;
+
   /**
    * The average mining power of each node. Mining power corresponds to Hash Rate in Bitcoin, and
    * is the number of mining (hash calculation) executed per millisecond.
@@ -73,6 +122,12 @@ public class SimulationConfiguration {
    */
   public static final double STAKING_REWARD = 0.01;
 
+  /**
+   * Whether PoS minting is sampled by a single pending staking event for the whole network
+   * instead of a staking task per node.
+   */
+  public static final boolean STAKE_WEIGHTED_SAMPLER = false;
+
   /**
    * The block height when a simulation ends.
    */
@@ -80,6 +135,63 @@ public class SimulationConfiguration {
   //public static final int END_BLOCK_HEIGHT = 100;
   public static final int END_BLOCK_HEIGHT = 3;
 
+  /**
+   * The number of block heights between two full graph checkpoints. The links added and removed
+   * between them are logged as changes.
+   */
+  public static final int GRAPH_CHECKPOINT_INTERVAL = 1000;
+
+  /**
+   * The number of most recently observed blocks whose arrival times are kept, at least 1. The
+   * propagation of older blocks is written to propagation.csv.
+   */
+  public static final int PROPAGATION_WINDOW = 10;
+
+  /**
+   * Whether the arrival time of every block at every node is written to propagation.csv. The
+   * percentiles of the propagation times of every block are always written to
+   * propagation_summary.csv.
+   */
+  public static final boolean PROPAGATION_ARRIVAL_TIMES = true;
+
+  /**
+   * The number of block heights below the highest block whose blocks are kept in memory. Deeper
+   * blocks are assumed final: they are written to block_archive.csv and their ancestors are
+   * released. 0 (default) keeps all blocks and writes them at the end of the simulation. Pruning
+   * changes the results, since nodes ignore blocks that arrive after they were archived.
+   */
+  public static final int BLOCK_STORE_DEPTH = 0;
+
+  /**
+   * The format of the trace of the simulation events, either "json" for output.json, which is
+   * read by the visualizer, "binary" for the compact output.bin, or "segmented" for the same
+   * format in memory-mapped segment files with an index in trace/. Binary traces are converted to
+   * JSON by simblock.simulator.TraceConverter.
+   */
+  public static final String TRACE_FORMAT = "json";
+
+  /**
+   * The size of a segment file of a "segmented" trace. (unit: byte)
+   */
+  public static final int TRACE_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * The simulation events written to the trace: "none", "blocks" for nodes and blocks, "links"
+   * for nodes, blocks and links, or "full" for all events including block transmissions.
+   */
+  public static final String TRACE_LEVEL = "full";
+
+  /**
+   * The regions whose nodes have their block transmissions traced, all regions if empty.
+   */
+  public static final int[] TRACE_SAMPLED_REGIONS = {};
+
+  /**
+   * The rate of nodes of the sampled regions that have their block transmissions traced. The
+   * nodes are chosen by a hash of their id, independently of the simulation seed.
+   */
+  public static final float TRACE_NODE_SAMPLING_RATE = 1.0f;
+
   /**
    * Block size. (unit: byte).
    */
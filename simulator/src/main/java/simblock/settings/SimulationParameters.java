@@ -0,0 +1,386 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.settings;
+
+/**
+ * The type Simulation parameters holds the configuration values that can differ between
+ * simulations run in the same JVM, such as the points of a parameter sweep. The values default to
+ * the constants of {@link SimulationConfiguration} with the same names. The parameters of
+ * {@link #NAMES} can be set by name, the settings of the outputs with their setters.
+ */
+public class SimulationParameters {
+  /**
+   * The names of the parameters accepted by {@link #set(String, String)}.
+   */
+  public static final String[] NAMES = {
+      "NUM_OF_NODES", "INTERVAL", "BLOCK_SIZE", "CBR_USAGE_RATE", "CHURN_NODE_RATE"
+  };
+
+  /**
+   * The number of nodes participating in the blockchain network.
+   */
+  private int numOfNodes = SimulationConfiguration.NUM_OF_NODES;
+
+  /**
+   * The expected value of block generation interval. (unit: millisecond)
+   */
+  private long interval = SimulationConfiguration.INTERVAL;
+
+  /**
+   * Block size. (unit: byte).
+   */
+  private long blockSize = SimulationConfiguration.BLOCK_SIZE;
+
+  /**
+   * The usage rate of compact block relay (CBR) protocol.
+   */
+  private float cbrUsageRate = SimulationConfiguration.CBR_USAGE_RATE;
+
+  /**
+   * The rate of nodes that cause churn.
+   */
+  private float churnNodeRate = SimulationConfiguration.CHURN_NODE_RATE;
+
+  /**
+   * The number of block heights between two full graph checkpoints.
+   */
+  private int graphCheckpointInterval = SimulationConfiguration.GRAPH_CHECKPOINT_INTERVAL;
+
+  /**
+   * The number of most recently observed blocks whose arrival times are kept.
+   */
+  private int propagationWindow = SimulationConfiguration.PROPAGATION_WINDOW;
+
+  /**
+   * Whether the arrival time of every block at every node is written.
+   */
+  private boolean propagationArrivalTimes = SimulationConfiguration.PROPAGATION_ARRIVAL_TIMES;
+
+  /**
+   * The number of block heights below the highest block whose blocks are kept in memory.
+   */
+  private int blockStoreDepth = SimulationConfiguration.BLOCK_STORE_DEPTH;
+
+  /**
+   * The format of the trace of the simulation events.
+   */
+  private String traceFormat = SimulationConfiguration.TRACE_FORMAT;
+
+  /**
+   * The size of a segment file of a segmented trace. (unit: byte)
+   */
+  private int traceSegmentSize = SimulationConfiguration.TRACE_SEGMENT_SIZE;
+
+  /**
+   * The simulation events written to the trace.
+   */
+  private String traceLevel = SimulationConfiguration.TRACE_LEVEL;
+
+  /**
+   * The regions whose nodes have their block transmissions traced, all regions if empty.
+   */
+  private int[] traceSampledRegions = SimulationConfiguration.TRACE_SAMPLED_REGIONS.clone();
+
+  /**
+   * The rate of nodes of the sampled regions that have their block transmissions traced.
+   */
+  private float traceNodeSamplingRate = SimulationConfiguration.TRACE_NODE_SAMPLING_RATE;
+
+  /**
+   * Copies the parameters.
+   *
+   * @return a new instance with the same values
+   */
+  public SimulationParameters copy() {
+    SimulationParameters copy = new SimulationParameters();
+    copy.numOfNodes = this.numOfNodes;
+    copy.interval = this.interval;
+    copy.blockSize = this.blockSize;
+    copy.cbrUsageRate = this.cbrUsageRate;
+    copy.churnNodeRate = this.churnNodeRate;
+    copy.graphCheckpointInterval = this.graphCheckpointInterval;
+    copy.propagationWindow = this.propagationWindow;
+    copy.propagationArrivalTimes = this.propagationArrivalTimes;
+    copy.blockStoreDepth = this.blockStoreDepth;
+    copy.traceFormat = this.traceFormat;
+    copy.traceSegmentSize = this.traceSegmentSize;
+    copy.traceLevel = this.traceLevel;
+    copy.traceSampledRegions = this.traceSampledRegions.clone();
+    copy.traceNodeSamplingRate = this.traceNodeSamplingRate;
+    return copy;
+  }
+
+  /**
+   * Sets the parameter with the name of its {@link SimulationConfiguration} constant.
+   *
+   * @param name  the name of the parameter, one of {@link #NAMES}
+   * @param value the value
+   * @throws IllegalArgumentException if the name is unknown or the value cannot be parsed
+   */
+  public void set(String name, String value) {
+    switch (name) {
+      case "NUM_OF_NODES":
+        this.numOfNodes = (int) Math.round(Double.parseDouble(value));
+        break;
+      case "INTERVAL":
+        this.interval = Math.round(Double.parseDouble(value));
+        break;
+      case "BLOCK_SIZE":
+        this.blockSize = Math.round(Double.parseDouble(value));
+        break;
+      case "CBR_USAGE_RATE":
+        this.cbrUsageRate = Float.parseFloat(value);
+        break;
+      case "CHURN_NODE_RATE":
+        this.churnNodeRate = Float.parseFloat(value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown simulation parameter " + name);
+    }
+  }
+
+  /**
+   * Gets the parameter with the name of its {@link SimulationConfiguration} constant.
+   *
+   * @param name the name of the parameter, one of {@link #NAMES}
+   * @return the value as a string
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  public String get(String name) {
+    switch (name) {
+      case "NUM_OF_NODES":
+        return String.valueOf(this.numOfNodes);
+      case "INTERVAL":
+        return String.valueOf(this.interval);
+      case "BLOCK_SIZE":
+        return String.valueOf(this.blockSize);
+      case "CBR_USAGE_RATE":
+        return String.valueOf(this.cbrUsageRate);
+      case "CHURN_NODE_RATE":
+        return String.valueOf(this.churnNodeRate);
+      default:
+        throw new IllegalArgumentException("Unknown simulation parameter " + name);
+    }
+  }
+
+  /**
+   * Gets the number of nodes participating in the blockchain network.
+   *
+   * @return the number of nodes
+   */
+  public int getNumOfNodes() {
+    return this.numOfNodes;
+  }
+
+  /**
+   * Gets the expected value of block generation interval.
+   *
+   * @return the interval in milliseconds
+   */
+  public long getInterval() {
+    return this.interval;
+  }
+
+  /**
+   * Gets the block size.
+   *
+   * @return the block size in bytes
+   */
+  public long getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Gets the usage rate of compact block relay (CBR) protocol.
+   *
+   * @return the CBR usage rate
+   */
+  public float getCbrUsageRate() {
+    return this.cbrUsageRate;
+  }
+
+  /**
+   * Gets the rate of nodes that cause churn.
+   *
+   * @return the churn node rate
+   */
+  public float getChurnNodeRate() {
+    return this.churnNodeRate;
+  }
+
+  /**
+   * Gets the number of block heights between two full graph checkpoints.
+   *
+   * @return the checkpoint interval
+   */
+  public int getGraphCheckpointInterval() {
+    return this.graphCheckpointInterval;
+  }
+
+  /**
+   * Sets the number of block heights between two full graph checkpoints.
+   *
+   * @param interval the checkpoint interval
+   */
+  public void setGraphCheckpointInterval(int interval) {
+    this.graphCheckpointInterval = interval;
+  }
+
+  /**
+   * Gets the number of most recently observed blocks whose arrival times are kept.
+   *
+   * @return the propagation window, at least 1
+   */
+  public int getPropagationWindow() {
+    return this.propagationWindow;
+  }
+
+  /**
+   * Sets the number of most recently observed blocks whose arrival times are kept.
+   *
+   * @param window the propagation window, at least 1
+   */
+  public void setPropagationWindow(int window) {
+    this.propagationWindow = window;
+  }
+
+  /**
+   * Gets whether the arrival time of every block at every node is written.
+   *
+   * @return true if the arrival times are written
+   */
+  public boolean isPropagationArrivalTimes() {
+    return this.propagationArrivalTimes;
+  }
+
+  /**
+   * Sets whether the arrival time of every block at every node is written.
+   *
+   * @param arrivalTimes true if the arrival times are written
+   */
+  public void setPropagationArrivalTimes(boolean arrivalTimes) {
+    this.propagationArrivalTimes = arrivalTimes;
+  }
+
+  /**
+   * Gets the number of block heights below the highest block whose blocks are kept in memory.
+   *
+   * @return the depth, 0 or less to keep all blocks
+   */
+  public int getBlockStoreDepth() {
+    return this.blockStoreDepth;
+  }
+
+  /**
+   * Sets the number of block heights below the highest block whose blocks are kept in memory.
+   *
+   * @param depth the depth, 0 or less to keep all blocks
+   */
+  public void setBlockStoreDepth(int depth) {
+    this.blockStoreDepth = depth;
+  }
+
+  /**
+   * Gets the format of the trace of the simulation events.
+   *
+   * @return "json", "binary" or "segmented"
+   */
+  public String getTraceFormat() {
+    return this.traceFormat;
+  }
+
+  /**
+   * Sets the format of the trace of the simulation events.
+   *
+   * @param format "json", "binary" or "segmented"
+   */
+  public void setTraceFormat(String format) {
+    this.traceFormat = format;
+  }
+
+  /**
+   * Gets the size of a segment file of a segmented trace.
+   *
+   * @return the segment size in bytes
+   */
+  public int getTraceSegmentSize() {
+    return this.traceSegmentSize;
+  }
+
+  /**
+   * Sets the size of a segment file of a segmented trace.
+   *
+   * @param size the segment size in bytes
+   */
+  public void setTraceSegmentSize(int size) {
+    this.traceSegmentSize = size;
+  }
+
+  /**
+   * Gets the simulation events written to the trace.
+   *
+   * @return "none", "blocks", "links" or "full"
+   */
+  public String getTraceLevel() {
+    return this.traceLevel;
+  }
+
+  /**
+   * Sets the simulation events written to the trace.
+   *
+   * @param level "none", "blocks", "links" or "full"
+   */
+  public void setTraceLevel(String level) {
+    this.traceLevel = level;
+  }
+
+  /**
+   * Gets the regions whose nodes have their block transmissions traced.
+   *
+   * @return the regions, all regions if empty
+   */
+  public int[] getTraceSampledRegions() {
+    return this.traceSampledRegions.clone();
+  }
+
+  /**
+   * Sets the regions whose nodes have their block transmissions traced.
+   *
+   * @param regions the regions, all regions if empty
+   */
+  public void setTraceSampledRegions(int[] regions) {
+    this.traceSampledRegions = regions.clone();
+  }
+
+  /**
+   * Gets the rate of nodes of the sampled regions that have their block transmissions traced.
+   *
+   * @return the sampling rate
+   */
+  public float getTraceNodeSamplingRate() {
+    return this.traceNodeSamplingRate;
+  }
+
+  /**
+   * Sets the rate of nodes of the sampled regions that have their block transmissions traced.
+   *
+   * @param rate the sampling rate
+   */
+  public void setTraceNodeSamplingRate(float rate) {
+    this.traceNodeSamplingRate = rate;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.simulator.TraceWriter.ADD_BLOCK;
+import static simblock.simulator.TraceWriter.ADD_LINK;
+import static simblock.simulator.TraceWriter.ADD_NODE;
+import static simblock.simulator.TraceWriter.FLOW_BLOCK;
+import static simblock.simulator.TraceWriter.REMOVE_LINK;
+import static simblock.simulator.TraceWriter.SIMULATION_END;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The type Binary trace encoder encodes records in the binary trace format described in {@link
+ * BinaryTraceSink}. Times and block ids are encoded as differences to the previous record, so a
+ * reader has to start decoding where the encoder started.
+ */
+class BinaryTraceEncoder {
+  /**
+   * The maximum number of bytes of an encoded record.
+   */
+  static final int MAX_RECORD_SIZE = 1 + 5 * 10;
+
+  /**
+   * The time of the previous record.
+   */
+  private long previousTime = 0;
+
+  /**
+   * The block id of the previous record with a block id.
+   */
+  private long previousBlockID = 0;
+
+  /**
+   * Encodes a record into the buffer, which needs {@link #MAX_RECORD_SIZE} bytes remaining.
+   *
+   * @param buffer  the buffer
+   * @param records the records
+   * @param offset  the offset of the record
+   */
+  void encode(ByteBuffer buffer, long[] records, int offset) {
+    int kind = (int) records[offset];
+    long time = records[offset + (kind == FLOW_BLOCK ? 2 : 1)];
+    buffer.put((byte) kind);
+    putZigzag(buffer, time - this.previousTime);
+    this.previousTime = time;
+    switch (kind) {
+      case ADD_NODE:
+      case ADD_LINK:
+      case REMOVE_LINK:
+        putVarint(buffer, records[offset + 3]);
+        putVarint(buffer, records[offset + 4]);
+        break;
+      case ADD_BLOCK:
+        putVarint(buffer, records[offset + 3]);
+        putZigzag(buffer, records[offset + 4] - this.previousBlockID);
+        this.previousBlockID = records[offset + 4];
+        break;
+      case FLOW_BLOCK:
+        putVarint(buffer, records[offset + 2] - records[offset + 1]);
+        putVarint(buffer, records[offset + 3]);
+        putVarint(buffer, records[offset + 4]);
+        putZigzag(buffer, records[offset + 5] - this.previousBlockID);
+        this.previousBlockID = records[offset + 5];
+        break;
+      case SIMULATION_END:
+        break;
+      default:
+        throw new IllegalStateException("Unknown trace record kind " + kind);
+    }
+  }
+
+  /**
+   * Starts encoding anew, as if no record had been encoded.
+   */
+  void reset() {
+    this.previousTime = 0;
+    this.previousBlockID = 0;
+  }
+
+  /**
+   * Puts a value as a varint of 7 bits per byte, least significant group first.
+   *
+   * @param buffer the buffer
+   * @param value  the value, which is treated as unsigned
+   */
+  private static void putVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) (value & 0x7F | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /**
+   * Puts a signed value as a zigzag encoded varint, so that small negative values are short.
+   *
+   * @param buffer the buffer
+   * @param value  the value
+   */
+  private static void putZigzag(ByteBuffer buffer, long value) {
+    putVarint(buffer, value << 1 ^ value >> 63);
+  }
+}
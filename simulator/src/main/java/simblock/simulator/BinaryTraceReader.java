@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.simulator.TraceWriter.ADD_BLOCK;
+import static simblock.simulator.TraceWriter.ADD_LINK;
+import static simblock.simulator.TraceWriter.ADD_NODE;
+import static simblock.simulator.TraceWriter.FLOW_BLOCK;
+import static simblock.simulator.TraceWriter.RECORD_SIZE;
+import static simblock.simulator.TraceWriter.REMOVE_LINK;
+import static simblock.simulator.TraceWriter.SIMULATION_END;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The type Binary trace reader streams the records of a trace written in the format of {@link
+ * BinaryTraceSink}, holding only a small buffer of the file in memory.
+ */
+public class BinaryTraceReader implements Closeable {
+  /**
+   * The bytes read from the file and not decoded yet.
+   */
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BinaryTraceSink.BUFFER_SIZE);
+
+  /**
+   * The channel of the trace file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The number of bytes of the trace not read into the buffer yet.
+   */
+  private long unreadBytes;
+
+  /**
+   * The time of the previous record.
+   */
+  private long previousTime = 0;
+
+  /**
+   * The block id of the previous record with a block id.
+   */
+  private long previousBlockID = 0;
+
+  /**
+   * Opens a binary trace and checks its header.
+   *
+   * @param path the path of the trace file
+   * @throws IOException if the file cannot be read or is not a binary trace
+   */
+  public BinaryTraceReader(Path path) throws IOException {
+    this(path, Long.MAX_VALUE);
+  }
+
+  /**
+   * Opens a binary trace which ends before the end of the file and checks its header.
+   *
+   * @param path the path of the trace file
+   * @param end  the position in the file where the trace ends
+   * @throws IOException if the file cannot be read or is not a binary trace
+   */
+  public BinaryTraceReader(Path path, long end) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.unreadBytes = end;
+    this.buffer.flip();
+    this.fill();
+    byte[] magic = new byte[BinaryTraceSink.MAGIC.length];
+    if (this.buffer.remaining() < magic.length + 1) {
+      this.close();
+      throw new IOException("Not a binary trace: " + path);
+    }
+    this.buffer.get(magic);
+    byte version = this.buffer.get();
+    if (!Arrays.equals(magic, BinaryTraceSink.MAGIC) || version != BinaryTraceSink.VERSION) {
+      this.close();
+      throw new IOException(
+          "Not a binary trace of version " + BinaryTraceSink.VERSION + ": " + path);
+    }
+  }
+
+  /**
+   * Reads the next record: the kind, two timestamps and three ids. The kinds and the positions
+   * of their values are the ones of {@link TraceWriter}, unused values are 0.
+   *
+   * @param record the array of {@link TraceWriter#RECORD_SIZE} longs the record is read into
+   * @return false if there are no more records
+   * @throws IOException if the file cannot be read or is truncated
+   */
+  public boolean next(long[] record) throws IOException {
+    if (this.buffer.remaining() < BinaryTraceEncoder.MAX_RECORD_SIZE) {
+      this.fill();
+    }
+    if (!this.buffer.hasRemaining()) {
+      return false;
+    }
+    Arrays.fill(record, 0, RECORD_SIZE, 0);
+    int kind = this.buffer.get();
+    record[0] = kind;
+    long time = this.previousTime + this.getZigzag();
+    this.previousTime = time;
+    record[1] = time;
+    switch (kind) {
+      case ADD_NODE:
+      case ADD_LINK:
+      case REMOVE_LINK:
+        record[3] = this.getVarint();
+        record[4] = this.getVarint();
+        break;
+      case ADD_BLOCK:
+        record[3] = this.getVarint();
+        record[4] = this.previousBlockID + this.getZigzag();
+        this.previousBlockID = record[4];
+        break;
+      case FLOW_BLOCK:
+        record[2] = time;
+        record[1] = time - this.getVarint();
+        record[3] = this.getVarint();
+        record[4] = this.getVarint();
+        record[5] = this.previousBlockID + this.getZigzag();
+        this.previousBlockID = record[5];
+        break;
+      case SIMULATION_END:
+        break;
+      default:
+        throw new IOException("Unknown trace record kind " + kind);
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Moves the remaining bytes to the beginning of the buffer and reads more bytes after them.
+   *
+   * @throws IOException if the file cannot be read
+   */
+  private void fill() throws IOException {
+    if (this.unreadBytes == 0) {
+      return;
+    }
+    this.buffer.compact();
+    if (this.buffer.remaining() > this.unreadBytes) {
+      this.buffer.limit(this.buffer.position() + (int) this.unreadBytes);
+    }
+    while (this.buffer.hasRemaining()) {
+      int read = this.channel.read(this.buffer);
+      if (read < 0) {
+        this.unreadBytes = 0;
+        break;
+      }
+      this.unreadBytes -= read;
+    }
+    this.buffer.flip();
+  }
+
+  /**
+   * Gets a varint of 7 bits per byte, least significant group first.
+   *
+   * @return the value
+   * @throws IOException if the varint is truncated
+   */
+  private long getVarint() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (!this.buffer.hasRemaining()) {
+        throw new IOException("Truncated binary trace");
+      }
+      byte b = this.buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in binary trace");
+  }
+
+  /**
+   * Gets a zigzag encoded varint.
+   *
+   * @return the signed value
+   * @throws IOException if the varint is truncated
+   */
+  private long getZigzag() throws IOException {
+    long value = this.getVarint();
+    return value >>> 1 ^ -(value & 1);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The type Binary trace sink writes the records in the binary trace format through a {@link
+ * FileChannel}. The file starts with the magic bytes <em>SBTR</em> and a version byte, followed
+ * by the records. A record starts with its kind as a byte, followed by the difference of its time
+ * to the time of the previous record, the reception time for a flow-block, as a zigzag encoded
+ * varint. Then come the ids of the kind as varints:
+ *
+ * <ul>
+ * <li>add-node: the node id and the region id.</li>
+ * <li>add-link, remove-link: the begin node id and the end node id.</li>
+ * <li>add-block: the node id and the difference of the block id to the previous block id, zigzag
+ * encoded.</li>
+ * <li>flow-block: the transmission time before the reception time, the begin node id, the end
+ * node id and the difference of the block id to the previous block id, zigzag encoded.</li>
+ * <li>simulation-end: nothing.</li>
+ * </ul>
+ *
+ * <p>The records are encoded by {@link BinaryTraceEncoder}. The file is read by {@link
+ * BinaryTraceReader} and converted to JSON by {@link TraceConverter}.
+ */
+class BinaryTraceSink implements TraceSink {
+  /**
+   * The magic bytes at the beginning of a binary trace.
+   */
+  static final byte[] MAGIC = {'S', 'B', 'T', 'R'};
+
+  /**
+   * The version of the binary trace format.
+   */
+  static final byte VERSION = 1;
+
+  /**
+   * The number of bytes buffered before they are written.
+   */
+  static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The encoded records not written yet.
+   */
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /**
+   * The encoder of the records.
+   */
+  private final BinaryTraceEncoder encoder = new BinaryTraceEncoder();
+
+  /**
+   * The channel of the trace file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * Instantiates a new Binary trace sink and writes the header.
+   *
+   * @param channel the channel of the trace file
+   */
+  BinaryTraceSink(FileChannel channel) {
+    this.channel = channel;
+    this.buffer.put(MAGIC).put(VERSION);
+  }
+
+  @Override
+  public void write(long[] records, int offset) throws IOException {
+    if (this.buffer.remaining() < BinaryTraceEncoder.MAX_RECORD_SIZE) {
+      this.flush();
+    }
+    this.encoder.encode(this.buffer, records, offset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.flush();
+    this.channel.close();
+  }
+
+  /**
+   * Writes the buffered bytes to the channel.
+   *
+   * @throws IOException if the bytes cannot be written
+   */
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+}
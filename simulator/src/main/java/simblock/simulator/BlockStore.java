@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import simblock.block.Block;
+
+/**
+ * The type Block store keeps the blocks of the most recent heights in memory. When the highest
+ * block gets deeper than the depth of the store, the blocks at the lowest kept height are
+ * archived: they are written to <em>block_archive.csv</em> in the format:
+ *
+ * <p><em>block_ID, block_height, time, minter_ID, orphan</em>
+ *
+ * <p>where <em>orphan</em> is 1 if the block is not on the main chain of the {@link BlockTree} and
+ * 0 otherwise. Archived blocks are pruned, i.e. they drop the references to their ancestors, so
+ * the blocks below the store can be garbage collected. Blocks are assumed final once archived,
+ * so no node should fork off below the store.
+ */
+public class BlockStore {
+  /**
+   * The number of characters formatted before they are written.
+   */
+  private static final int BATCH_SIZE = 1 << 16;
+
+  /**
+   * The number of heights whose blocks are kept, 0 or less to keep all blocks.
+   */
+  private final int depth;
+
+  /**
+   * The index of all adopted blocks, which tells the main chain.
+   */
+  private final BlockTree blockTree;
+
+  /**
+   * The kept blocks, indexed by height modulo the depth, or by height if all blocks are kept.
+   */
+  private final List<List<Block>> levels;
+
+  /**
+   * The lowest kept height.
+   */
+  private int lowestHeight = 0;
+
+  /**
+   * The highest kept height, -1 if no block was added.
+   */
+  private int highestHeight = -1;
+
+  /**
+   * The formatted archived blocks not written yet.
+   */
+  private final StringBuilder batch = new StringBuilder(BATCH_SIZE + 256);
+
+  /**
+   * The writer of the archived blocks.
+   */
+  private final Writer out;
+
+  /**
+   * Instantiates a new Block store and writes the CSV header.
+   *
+   * @param out       the writer of the archived blocks
+   * @param depth     the number of heights whose blocks are kept, 0 or less to keep all blocks
+   *                  until the store is closed
+   * @param blockTree the index of all adopted blocks, updated before a block is added
+   */
+  public BlockStore(Writer out, int depth, BlockTree blockTree) {
+    this.out = out;
+    this.depth = depth;
+    this.blockTree = blockTree;
+    this.levels = new ArrayList<>(Math.max(depth, 0));
+    for (int i = 0; i < depth; i++) {
+      this.levels.add(new ArrayList<>());
+    }
+    this.batch.append("block_id,block_height,time,minter_id,orphan\n");
+  }
+
+  /**
+   * Adds a block that was adopted for the first time. If the block is higher than all kept
+   * blocks, the blocks that get too deep are archived. A block below the store is archived
+   * right away.
+   *
+   * @param block the block
+   */
+  public void add(Block block) {
+    int height = block.getHeight();
+    if (height < this.lowestHeight) {
+      this.archive(block, block.getId() != this.blockTree.getMainChainIds(height)[0]);
+      return;
+    }
+    if (height > this.highestHeight) {
+      // The block tree already holds the block, and the level of the block is the one of the
+      // lowest height until it is archived
+      if (this.depth > 0 && height - this.lowestHeight >= this.depth) {
+        int lowest = this.lowestHeight;
+        int[] mainChain = this.blockTree.getMainChainIds(lowest);
+        while (height - this.lowestHeight >= this.depth) {
+          this.archiveLevel(mainChain[this.lowestHeight - lowest]);
+        }
+      }
+      this.highestHeight = height;
+    }
+    this.getLevel(height).add(block);
+  }
+
+  /**
+   * Archives all kept blocks and closes the underlying writer.
+   *
+   * @throws IOException if the archive cannot be written
+   */
+  public void close() throws IOException {
+    if (this.highestHeight >= 0) {
+      int lowest = this.lowestHeight;
+      int[] mainChain = this.blockTree.getMainChainIds(lowest);
+      while (this.lowestHeight <= this.highestHeight) {
+        this.archiveLevel(mainChain[this.lowestHeight - lowest]);
+      }
+    }
+    this.out.append(this.batch);
+    this.out.close();
+  }
+
+  /**
+   * Gets the kept blocks at the height.
+   *
+   * @param height the height
+   * @return the blocks
+   */
+  private List<Block> getLevel(int height) {
+    if (this.depth > 0) {
+      return this.levels.get(height % this.depth);
+    }
+    while (this.levels.size() <= height) {
+      this.levels.add(new ArrayList<>());
+    }
+    return this.levels.get(height);
+  }
+
+  /**
+   * Archives the blocks at the lowest kept height.
+   *
+   * @param mainChainId the id of the block at the lowest kept height on the main chain
+   */
+  private void archiveLevel(int mainChainId) {
+    List<Block> level = this.getLevel(this.lowestHeight);
+    for (Block block : level) {
+      this.archive(block, block.getId() != mainChainId);
+    }
+    level.clear();
+    this.lowestHeight++;
+  }
+
+  /**
+   * Formats the block and prunes it.
+   *
+   * @param block  the block
+   * @param orphan whether the block is not on the main chain
+   */
+  private void archive(Block block, boolean orphan) {
+    this.batch.append(block.getId()).append(',').append(block.getHeight()).append(',')
+        .append(block.getTime()).append(',').append(block.getMinter().getNodeID()).append(',')
+        .append(orphan ? 1 : 0).append('\n');
+    block.prune();
+    if (this.batch.length() >= BATCH_SIZE) {
+      try {
+        this.out.append(this.batch);
+        this.batch.setLength(0);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.util.Arrays;
+import simblock.block.Block;
+import simblock.block.BlockTable;
+
+/**
+ * The type Block tree indexes all blocks adopted by any node by their id, reading the id of the
+ * parent and the height of every block from the {@link BlockTable}. The main chain ends at the
+ * highest block, the first adopted one among blocks of the same height, and all other blocks are
+ * stale. The tree is updated when a block is first adopted and when a node switches to a block
+ * that does not extend its current block (a reorganization), so the stale rate, the fork depths
+ * and the reorganizations can be reported at any time in O(blocks), without keeping the blocks
+ * reachable.
+ */
+public class BlockTree {
+  /**
+   * The table of all blocks.
+   */
+  private final BlockTable blockTable;
+
+  /**
+   * Whether a block was adopted, indexed by block id.
+   */
+  private boolean[] adopted = new boolean[64];
+
+  /**
+   * The number of adopted blocks.
+   */
+  private int blockCount = 0;
+
+  /**
+   * The largest block id allocated so far + 1.
+   */
+  private int idLimit = 0;
+
+  /**
+   * The id of the last block of the main chain, -1 if no block was adopted.
+   */
+  private int tip = -1;
+
+  /**
+   * The number of reorganizations, indexed by their depth, i.e. the number of blocks a node
+   * abandoned.
+   */
+  private long[] reorgDepths = new long[8];
+
+  /**
+   * The number of reorganizations.
+   */
+  private long reorgCount = 0;
+
+  /**
+   * Instantiates a new empty Block tree.
+   *
+   * @param blockTable the table of all blocks
+   */
+  public BlockTree(BlockTable blockTable) {
+    this.blockTable = blockTable;
+  }
+
+  /**
+   * Records that a node adopted the block, replacing its previous block.
+   *
+   * @param block    the adopted block
+   * @param previous the previous block of the node, may be null
+   * @return true if the block was adopted for the first time
+   */
+  public boolean adopt(Block block, Block previous) {
+    int id = block.getId();
+    boolean first = id >= this.idLimit || !this.adopted[id];
+    if (first) {
+      this.add(id);
+    }
+    if (previous != null && this.blockTable.getParentId(id) != previous.getId()) {
+      // A node catching up on more than one block does not abandon any
+      int depth = previous.getHeight() - this.blockTable.getHeight(this.getCommonAncestor(
+          id, previous.getId()));
+      if (depth == 0) {
+        return first;
+      }
+      if (depth >= this.reorgDepths.length) {
+        this.reorgDepths = Arrays.copyOf(this.reorgDepths, Math.max(depth + 1,
+            this.reorgDepths.length * 2));
+      }
+      this.reorgDepths[depth]++;
+      this.reorgCount++;
+    }
+    return first;
+  }
+
+  /**
+   * Gets the number of adopted blocks.
+   *
+   * @return the block count
+   */
+  public int getBlockCount() {
+    return this.blockCount;
+  }
+
+  /**
+   * Gets the height of the main chain.
+   *
+   * @return the height, -1 if no block was adopted
+   */
+  public int getHeight() {
+    return this.tip < 0 ? -1 : this.blockTable.getHeight(this.tip);
+  }
+
+  /**
+   * Gets the ids of the blocks of the main chain from the height up to the highest block.
+   *
+   * @param height the lowest height
+   * @return the ids, indexed by the height of the block minus the lowest height
+   */
+  public int[] getMainChainIds(int height) {
+    int[] ids = new int[Math.max(this.getHeight() - height + 1, 0)];
+    for (int id = this.tip; id >= 0 && this.blockTable.getHeight(id) >= height;
+        id = this.blockTable.getParentId(id)) {
+      ids[this.blockTable.getHeight(id) - height] = id;
+    }
+    return ids;
+  }
+
+  /**
+   * Gets the number of stale blocks, i.e. adopted blocks not on the main chain.
+   *
+   * @return the stale block count
+   */
+  public int getStaleBlockCount() {
+    return this.tip < 0 ? 0 : this.blockCount - this.blockTable.getHeight(this.tip) - 1;
+  }
+
+  /**
+   * Gets the rate of stale blocks among all adopted blocks except the genesis block.
+   *
+   * @return the stale rate
+   */
+  public double getStaleRate() {
+    return this.blockCount <= 1 ? 0 : (double) this.getStaleBlockCount() / (this.blockCount - 1);
+  }
+
+  /**
+   * Gets the number of reorganizations.
+   *
+   * @return the reorganization count
+   */
+  public long getReorgCount() {
+    return this.reorgCount;
+  }
+
+  /**
+   * Gets the number of reorganizations by depth.
+   *
+   * @return the counts, indexed by the number of blocks abandoned
+   */
+  public long[] getReorgDepths() {
+    int length = this.reorgDepths.length;
+    while (length > 0 && this.reorgDepths[length - 1] == 0) {
+      length--;
+    }
+    return Arrays.copyOf(this.reorgDepths, length);
+  }
+
+  /**
+   * Gets the number of forks by depth. A fork is a subtree of stale blocks whose parent is on
+   * the main chain, and its depth is the length of its longest branch.
+   *
+   * @return the counts, indexed by the fork depth
+   */
+  public long[] getForkDepths() {
+    boolean[] onChain = this.getMainChain();
+    int[] depths = new int[this.idLimit];
+    int[] roots = new int[this.idLimit];
+    int[] forkDepths = new int[this.idLimit];
+    int maxDepth = 0;
+    // Parents have smaller ids than their children
+    for (int id = 0; id < this.idLimit; id++) {
+      if (!this.adopted[id] || onChain[id]) {
+        continue;
+      }
+      int parent = this.blockTable.getParentId(id);
+      if (onChain[parent]) {
+        depths[id] = 1;
+        roots[id] = id;
+      } else {
+        depths[id] = depths[parent] + 1;
+        roots[id] = roots[parent];
+      }
+      forkDepths[roots[id]] = Math.max(forkDepths[roots[id]], depths[id]);
+      maxDepth = Math.max(maxDepth, depths[id]);
+    }
+    long[] counts = new long[maxDepth + 1];
+    for (int id = 0; id < this.idLimit; id++) {
+      if (forkDepths[id] > 0) {
+        counts[forkDepths[id]]++;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Prints the stale rate, the fork depths and the reorganizations.
+   *
+   * @param log the stream to print to
+   */
+  public void report(PrintStream log) {
+    log.println("stale blocks: " + this.getStaleBlockCount() + " of " + this.blockCount
+        + " (stale rate " + this.getStaleRate() + ")");
+    log.println("forks by depth: " + Arrays.toString(this.getForkDepths()));
+    log.println("reorganizations: " + this.reorgCount + ", by depth: " + Arrays.toString(
+        this.getReorgDepths()));
+  }
+
+  /**
+   * Writes all adopted blocks except the genesis block in the order of their ids, in the format:
+   *
+   * <p><em>fork_information : block_height : block_ID</em>
+   *
+   * <p><em>fork_information</em>: One of "OnChain" and "Orphan". "OnChain" denotes that the
+   * block is on the main chain, "Orphan" that the block is stale.
+   *
+   * @param uri the file to write to
+   */
+  public void writeBlockList(URI uri) {
+    boolean[] onChain = this.getMainChain();
+    try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(new File(uri))))) {
+      for (int id = 0; id < this.idLimit; id++) {
+        if (this.adopted[id] && this.blockTable.getParentId(id) != BlockTable.NO_PARENT) {
+          pw.println((onChain[id] ? "OnChain : " : "Orphan : ") + this.blockTable.getHeight(id)
+              + " : " + id);
+        }
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Adds a block that was adopted for the first time, together with its ancestors not adopted
+   * yet.
+   *
+   * @param id the block id
+   */
+  private void add(int id) {
+    int parent = this.blockTable.getParentId(id);
+    if (parent != BlockTable.NO_PARENT && (parent >= this.idLimit || !this.adopted[parent])) {
+      this.add(parent);
+    }
+    if (id >= this.adopted.length) {
+      this.adopted = Arrays.copyOf(this.adopted, Math.max(id + 1, this.adopted.length * 2));
+    }
+    this.adopted[id] = true;
+    this.blockCount++;
+    this.idLimit = Math.max(this.idLimit, id + 1);
+    int height = this.blockTable.getHeight(id);
+    if (this.tip < 0 || height > this.blockTable.getHeight(this.tip)) {
+      this.tip = id;
+    }
+  }
+
+  /**
+   * Finds the last common ancestor of two adopted blocks.
+   *
+   * @param a the id of the first block
+   * @param b the id of the second block
+   * @return the id of the common ancestor
+   */
+  private int getCommonAncestor(int a, int b) {
+    while (a != b) {
+      if (this.blockTable.getHeight(a) >= this.blockTable.getHeight(b)) {
+        a = this.blockTable.getParentId(a);
+      } else {
+        b = this.blockTable.getParentId(b);
+      }
+    }
+    return a;
+  }
+
+  /**
+   * Marks the blocks of the main chain.
+   *
+   * @return whether a block is on the main chain, indexed by block id
+   */
+  private boolean[] getMainChain() {
+    boolean[] onChain = new boolean[this.idLimit];
+    for (int id = this.tip; id >= 0; id = this.blockTable.getParentId(id)) {
+      onChain[id] = true;
+    }
+    return onChain;
+  }
+}
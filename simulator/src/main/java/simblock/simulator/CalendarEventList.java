@@ -0,0 +1,556 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import simblock.task.AbstractTask;
+import simblock.task.Task;
+
+/**
+ * The type Calendar event list implements the {@link FutureEventList} as a calendar queue (R.
+ * Brown, "Calendar queues: a fast O(1) priority queue implementation for the simulation event
+ * set problem", 1988). Entries are hashed by scheduled time into buckets of a fixed width, one
+ * "year" being the number of buckets times the width. Each bucket is a sorted doubly linked list
+ * of slots, so adding, removing and polling a task take amortized O(1) as long as the bucket
+ * width matches the spacing of the near future events. The number of buckets follows the number
+ * of entries and the width is re-estimated from the earliest entries on every resize.
+ *
+ * <p>Like {@link IndexedHeapEventList}, the slot of an entry is stored as the handle of the
+ * {@link AbstractTask}.
+ */
+public class CalendarEventList implements FutureEventList {
+  /**
+   * The minimum number of buckets.
+   */
+  private static final int MIN_BUCKETS = 16;
+
+  /**
+   * The maximum number of entries sampled to estimate the bucket width.
+   */
+  private static final int WIDTH_SAMPLE_SIZE = 25;
+
+  /**
+   * The minimum number of operations after which the observed scan cost is checked. The actual
+   * period is at least the number of entries, so re-estimating costs amortized O(1).
+   */
+  private static final int COST_CHECK_PERIOD = 4096;
+
+  /**
+   * The average number of bucket and list steps per operation above which the bucket width is
+   * re-estimated even though the number of buckets does not change.
+   */
+  private static final int MAX_AVERAGE_COST = 8;
+
+  /**
+   * The initial number of slots.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * No slot.
+   */
+  private static final int NONE = -1;
+
+  /**
+   * The first slot of each bucket.
+   */
+  private int[] buckets = newBuckets(MIN_BUCKETS);
+
+  /**
+   * The last slot of each bucket.
+   */
+  private int[] bucketTails = newBuckets(MIN_BUCKETS);
+
+  /**
+   * The number of buckets minus one, the number of buckets being a power of two.
+   */
+  private int bucketMask = MIN_BUCKETS - 1;
+
+  /**
+   * The time span covered by one bucket.
+   */
+  private long bucketWidth = 1;
+
+  /**
+   * The bucket the calendar is currently positioned at.
+   */
+  private int currentBucket = 0;
+
+  /**
+   * The start time of the current bucket. No entry is scheduled before this time.
+   */
+  private long currentBucketStart = 0;
+
+  /**
+   * The slot of the earliest entry if already located, {@link #NONE} otherwise.
+   */
+  private int minSlot = NONE;
+
+  /**
+   * The number of operations since the scan cost was last checked.
+   */
+  private int operationCount = 0;
+
+  /**
+   * The number of bucket and list steps taken since the scan cost was last checked.
+   */
+  private long scanCost = 0;
+
+  /**
+   * The tasks indexed by slot.
+   */
+  private Task[] tasks = new Task[INITIAL_CAPACITY];
+
+  /**
+   * The scheduled times indexed by slot.
+   */
+  private long[] times = new long[INITIAL_CAPACITY];
+
+  /**
+   * The orders indexed by slot, used to break ties between equal scheduled times.
+   */
+  private long[] orders = new long[INITIAL_CAPACITY];
+
+  /**
+   * The next slot in the same bucket, or the next unused slot for unused slots.
+   */
+  private int[] next = new int[INITIAL_CAPACITY];
+
+  /**
+   * The previous slot in the same bucket.
+   */
+  private int[] prev = new int[INITIAL_CAPACITY];
+
+  /**
+   * The first unused slot below {@link #slotLimit}.
+   */
+  private int freeSlot = NONE;
+
+  /**
+   * Slots from this number on have never been used.
+   */
+  private int slotLimit = 0;
+
+  /**
+   * The number of scheduled tasks.
+   */
+  private int size = 0;
+
+  @Override
+  public void add(Task task, long time, long order) {
+    int slot = this.allocateSlot();
+    this.tasks[slot] = task;
+    this.times[slot] = time;
+    this.orders[slot] = order;
+    if (task instanceof AbstractTask) {
+      ((AbstractTask) task).setHandle(slot);
+    }
+    this.insert(slot);
+    this.size++;
+
+    if (time < this.currentBucketStart) {
+      // Move the calendar back so the new entry is not skipped
+      this.positionAt(time);
+    }
+    if (this.minSlot != NONE && this.isBefore(slot, this.minSlot)) {
+      this.minSlot = slot;
+    }
+    if (this.size > 2 * this.buckets.length) {
+      this.resize(this.buckets.length * 2);
+    } else {
+      this.checkScanCost();
+    }
+  }
+
+  @Override
+  public boolean remove(Task task) {
+    int slot = this.findSlot(task);
+    if (slot == NONE) {
+      return false;
+    }
+    this.release(slot);
+    return true;
+  }
+
+  @Override
+  public int removeIf(Predicate<? super Task> filter) {
+    int removed = 0;
+    for (int head : this.buckets) {
+      int slot = head;
+      while (slot != NONE) {
+        int following = this.next[slot];
+        if (filter.test(this.tasks[slot])) {
+          this.free(slot);
+          removed++;
+        }
+        slot = following;
+      }
+    }
+    int bucketCount = this.buckets.length;
+    while (this.size < bucketCount / 2 && bucketCount > MIN_BUCKETS) {
+      bucketCount /= 2;
+    }
+    if (bucketCount != this.buckets.length) {
+      this.resize(bucketCount);
+    }
+    return removed;
+  }
+
+  @Override
+  public Task peek() {
+    return this.size > 0 ? this.tasks[this.locateMin()] : null;
+  }
+
+  @Override
+  public long peekTime() {
+    return this.times[this.locateMin()];
+  }
+
+  @Override
+  public long peekOrder() {
+    return this.orders[this.locateMin()];
+  }
+
+  @Override
+  public Task poll() {
+    if (this.size == 0) {
+      return null;
+    }
+    int slot = this.locateMin();
+    Task task = this.tasks[slot];
+    this.release(slot);
+    return task;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Locates the earliest entry and positions the calendar at its bucket.
+   *
+   * @return the slot of the earliest entry, undefined if the list is empty
+   */
+  private int locateMin() {
+    if (this.minSlot != NONE || this.size == 0) {
+      return this.minSlot;
+    }
+    // Scan one year starting with the current bucket
+    int bucket = this.currentBucket;
+    long bucketEnd = this.currentBucketStart + this.bucketWidth;
+    for (int i = 0; i < this.buckets.length; i++) {
+      int head = this.buckets[bucket];
+      if (head != NONE && this.times[head] < bucketEnd) {
+        this.currentBucket = bucket;
+        this.currentBucketStart = bucketEnd - this.bucketWidth;
+        this.minSlot = head;
+        this.scanCost += i;
+        return head;
+      }
+      bucket = (bucket + 1) & this.bucketMask;
+      bucketEnd += this.bucketWidth;
+    }
+    // No entry within a year, directly search the earliest bucket head
+    this.scanCost += 2L * this.buckets.length;
+    int min = this.searchMin();
+    this.positionAt(this.times[min]);
+    this.minSlot = min;
+    return min;
+  }
+
+  /**
+   * Finds the earliest entry by searching all bucket heads.
+   *
+   * @return the slot of the earliest entry, {@link #NONE} if the list is empty
+   */
+  private int searchMin() {
+    int min = NONE;
+    for (int head : this.buckets) {
+      if (head != NONE && (min == NONE || this.isBefore(head, min))) {
+        min = head;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Positions the calendar at the bucket containing the provided time.
+   *
+   * @param time the time
+   */
+  private void positionAt(long time) {
+    this.currentBucket = this.bucketOf(time);
+    this.currentBucketStart = time - Math.floorMod(time, this.bucketWidth);
+  }
+
+  /**
+   * Inserts the slot into its bucket, keeping the bucket sorted. The bucket is searched from its
+   * tail since new entries are mostly scheduled after the entries already in the bucket, in
+   * particular after all entries with the same scheduled time.
+   *
+   * @param slot the slot
+   */
+  private void insert(int slot) {
+    int bucket = this.bucketOf(this.times[slot]);
+    int before = this.bucketTails[bucket];
+    int after = NONE;
+    while (before != NONE && this.isBefore(slot, before)) {
+      after = before;
+      before = this.prev[before];
+      this.scanCost++;
+    }
+    this.prev[slot] = before;
+    this.next[slot] = after;
+    if (before == NONE) {
+      this.buckets[bucket] = slot;
+    } else {
+      this.next[before] = slot;
+    }
+    if (after == NONE) {
+      this.bucketTails[bucket] = slot;
+    } else {
+      this.prev[after] = slot;
+    }
+  }
+
+  /**
+   * Unlinks the slot from its bucket.
+   *
+   * @param slot the slot
+   */
+  private void unlink(int slot) {
+    int before = this.prev[slot];
+    int after = this.next[slot];
+    if (before == NONE) {
+      this.buckets[this.bucketOf(this.times[slot])] = after;
+    } else {
+      this.next[before] = after;
+    }
+    if (after == NONE) {
+      this.bucketTails[this.bucketOf(this.times[slot])] = before;
+    } else {
+      this.prev[after] = before;
+    }
+  }
+
+  /**
+   * Removes the entry in the slot, makes the slot available again and shrinks the calendar if it
+   * became sparse.
+   *
+   * @param slot the slot
+   */
+  private void release(int slot) {
+    this.free(slot);
+    if (this.size < this.buckets.length / 2 && this.buckets.length > MIN_BUCKETS) {
+      this.resize(this.buckets.length / 2);
+    }
+  }
+
+  /**
+   * Removes the entry in the slot and makes the slot available again.
+   *
+   * @param slot the slot
+   */
+  private void free(int slot) {
+    this.unlink(slot);
+    if (this.tasks[slot] instanceof AbstractTask) {
+      ((AbstractTask) this.tasks[slot]).setHandle(NONE);
+    }
+    this.tasks[slot] = null;
+    this.next[slot] = this.freeSlot;
+    this.freeSlot = slot;
+    this.size--;
+    if (slot == this.minSlot) {
+      this.minSlot = NONE;
+    }
+  }
+
+  /**
+   * Finds the slot holding the task. Tasks extending {@link AbstractTask} are found through
+   * their handle, other tasks by a linear search.
+   *
+   * @param task the task
+   * @return the slot or {@link #NONE} if the task is not scheduled
+   */
+  private int findSlot(Task task) {
+    if (task instanceof AbstractTask) {
+      int slot = ((AbstractTask) task).getHandle();
+      return slot >= 0 && slot < this.slotLimit && this.tasks[slot] == task ? slot : NONE;
+    }
+    for (int slot = 0; slot < this.slotLimit; slot++) {
+      if (this.tasks[slot] == task) {
+        return slot;
+      }
+    }
+    return NONE;
+  }
+
+  private int allocateSlot() {
+    if (this.freeSlot != NONE) {
+      int slot = this.freeSlot;
+      this.freeSlot = this.next[slot];
+      return slot;
+    }
+    if (this.slotLimit == this.tasks.length) {
+      int capacity = this.tasks.length * 2;
+      this.tasks = Arrays.copyOf(this.tasks, capacity);
+      this.times = Arrays.copyOf(this.times, capacity);
+      this.orders = Arrays.copyOf(this.orders, capacity);
+      this.next = Arrays.copyOf(this.next, capacity);
+      this.prev = Arrays.copyOf(this.prev, capacity);
+    }
+    return this.slotLimit++;
+  }
+
+  /**
+   * Re-estimates the bucket width if the operations since the last check took too many steps on
+   * average, i.e. the distribution of the scheduled times drifted away from the bucket width.
+   */
+  private void checkScanCost() {
+    if (++this.operationCount < Math.max(COST_CHECK_PERIOD, this.size)) {
+      return;
+    }
+    if (this.scanCost > (long) MAX_AVERAGE_COST * this.operationCount) {
+      this.resize(this.buckets.length);
+    }
+    this.operationCount = 0;
+    this.scanCost = 0;
+  }
+
+  /**
+   * Changes the number of buckets, re-estimates the bucket width and redistributes all entries.
+   *
+   * @param bucketCount the new number of buckets, a power of two
+   */
+  private void resize(int bucketCount) {
+    this.operationCount = 0;
+    this.scanCost = 0;
+    long width = this.estimateWidth();
+    int[] oldBuckets = this.buckets;
+    this.buckets = newBuckets(bucketCount);
+    this.bucketTails = newBuckets(bucketCount);
+    this.bucketMask = bucketCount - 1;
+    this.bucketWidth = width;
+    for (int head : oldBuckets) {
+      int slot = head;
+      while (slot != NONE) {
+        int following = this.next[slot];
+        this.insert(slot);
+        slot = following;
+      }
+    }
+    if (this.size > 0) {
+      this.positionAt(this.times[this.minSlot != NONE ? this.minSlot : this.searchMin()]);
+    }
+  }
+
+  /**
+   * Estimates the bucket width as three times the average separation of the earliest entries,
+   * ignoring separations larger than twice the average.
+   *
+   * @return the bucket width
+   */
+  private long estimateWidth() {
+    int sampleSize = Math.min(this.size, WIDTH_SAMPLE_SIZE);
+    if (sampleSize < 2) {
+      return this.bucketWidth;
+    }
+    long[] sample = new long[sampleSize];
+    int count = this.sampleCurrentYear(sample);
+    if (count < sampleSize) {
+      count = this.sampleAll(sample);
+    }
+    double average = (double) (sample[count - 1] - sample[0]) / (count - 1);
+    double total = 0;
+    int separations = 0;
+    for (int i = 1; i < count; i++) {
+      long separation = sample[i] - sample[i - 1];
+      if (separation <= 2 * average) {
+        total += separation;
+        separations++;
+      }
+    }
+    return Math.max(1, Math.round(3 * total / Math.max(separations, 1)));
+  }
+
+  /**
+   * Collects the earliest scheduled times by walking the calendar for one year from the current
+   * bucket.
+   *
+   * @param sample the array to be filled in ascending order
+   * @return the number of collected times
+   */
+  private int sampleCurrentYear(long[] sample) {
+    int count = 0;
+    int bucket = this.currentBucket;
+    long bucketEnd = this.currentBucketStart + this.bucketWidth;
+    for (int i = 0; i < this.buckets.length && count < sample.length; i++) {
+      int slot = this.buckets[bucket];
+      while (slot != NONE && count < sample.length && this.times[slot] < bucketEnd) {
+        sample[count++] = this.times[slot];
+        slot = this.next[slot];
+      }
+      bucket = (bucket + 1) & this.bucketMask;
+      bucketEnd += this.bucketWidth;
+    }
+    return count;
+  }
+
+  /**
+   * Collects the earliest scheduled times by inspecting every entry. Used when the entries are
+   * too sparse for the current year to contain enough of them.
+   *
+   * @param sample the array to be filled in ascending order
+   * @return the number of collected times
+   */
+  private int sampleAll(long[] sample) {
+    int count = 0;
+    for (int head : this.buckets) {
+      for (int slot = head; slot != NONE; slot = this.next[slot]) {
+        long time = this.times[slot];
+        if (count == sample.length && time >= sample[count - 1]) {
+          // Buckets are sorted, the rest of this bucket is not earlier either
+          break;
+        }
+        int i = count < sample.length ? count++ : count - 1;
+        while (i > 0 && sample[i - 1] > time) {
+          sample[i] = sample[i - 1];
+          i--;
+        }
+        sample[i] = time;
+      }
+    }
+    return count;
+  }
+
+  private int bucketOf(long time) {
+    return (int) Math.floorDiv(time, this.bucketWidth) & this.bucketMask;
+  }
+
+  private boolean isBefore(int slot1, int slot2) {
+    return this.times[slot1] < this.times[slot2]
+        || this.times[slot1] == this.times[slot2] && this.orders[slot1] < this.orders[slot2];
+  }
+
+  private static int[] newBuckets(int bucketCount) {
+    int[] buckets = new int[bucketCount];
+    Arrays.fill(buckets, NONE);
+    return buckets;
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.END_BLOCK_HEIGHT;
+import static simblock.simulator.Network.getMinimumLatency;
+import static simblock.simulator.Network.getRegionDistribution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import simblock.simulator.LogicalProcess.DeferredOutput;
+import simblock.task.AbstractMintingTask;
+import simblock.task.Task;
+
+/**
+ * The type Conservative engine runs the simulation on several threads, one {@link LogicalProcess}
+ * per partition of the regions, and produces the same results as the sequential simulation.
+ *
+ * <p>Tasks are ordered by scheduled time and by an order derived from the logical clock of the
+ * node scheduling them, which does not depend on how the nodes are partitioned. A message between
+ * two partitions takes at least the minimum latency between their regions (the lookahead). The
+ * engine therefore advances in windows: when the earliest scheduled task is at time <em>t</em>,
+ * all logical processes run their tasks before <em>t + lookahead</em> in parallel, since no task
+ * of another partition can schedule a task before that bound any more.
+ *
+ * <p>Minting tasks create blocks with globally numbered ids and end the simulation, so they are run
+ * one at a time when they are the earliest scheduled task of all partitions, and windows end
+ * before the earliest scheduled minting task. Output and changes of state shared by all nodes are
+ * deferred by the logical processes and applied in the order of the tasks up to the earliest
+ * scheduled task. Once the block before the last block has been minted the engine only runs one
+ * task at a time, so that no partition runs ahead of the task ending the simulation.
+ */
+public class ConservativeEngine {
+  /**
+   * The simulation run by the engine.
+   */
+  private final SimulationContext context;
+
+  /**
+   * The logical processes.
+   */
+  private final LogicalProcess[] processes;
+
+  /**
+   * The logical processes indexed by region.
+   */
+  private final LogicalProcess[] regionProcesses;
+
+  /**
+   * The minimum simulated time in milliseconds a task takes to reach another partition.
+   */
+  private final long lookahead;
+
+  /**
+   * Whether tasks are only run one at a time.
+   */
+  private boolean serial = false;
+
+  /**
+   * Instantiates a new Conservative engine. Regions are assigned to the logical processes with
+   * the largest expected number of nodes first, each to the logical process with the fewest.
+   *
+   * @param context      the simulation
+   * @param processCount the number of logical processes, at most the number of regions
+   */
+  public ConservativeEngine(SimulationContext context, int processCount) {
+    this.context = context;
+    double[] regionDistribution = getRegionDistribution();
+    int regionCount = regionDistribution.length;
+    this.processes = new LogicalProcess[Math.max(1, Math.min(processCount, regionCount))];
+    for (int i = 0; i < this.processes.length; i++) {
+      this.processes[i] = new LogicalProcess();
+    }
+
+    this.regionProcesses = new LogicalProcess[regionCount];
+    int[] partitions = new int[regionCount];
+    double[] loads = new double[this.processes.length];
+    boolean[] assigned = new boolean[regionCount];
+    for (int n = 0; n < regionCount; n++) {
+      int region = -1;
+      for (int i = 0; i < regionCount; i++) {
+        if (!assigned[i] && (region < 0 || regionDistribution[i] > regionDistribution[region])) {
+          region = i;
+        }
+      }
+      int partition = 0;
+      for (int i = 1; i < loads.length; i++) {
+        if (loads[i] < loads[partition]) {
+          partition = i;
+        }
+      }
+      assigned[region] = true;
+      loads[partition] += regionDistribution[region];
+      partitions[region] = partition;
+      this.regionProcesses[region] = this.processes[partition];
+    }
+
+    long lookahead = Long.MAX_VALUE;
+    for (int from = 0; from < regionCount; from++) {
+      for (int to = 0; to < regionCount; to++) {
+        if (partitions[from] != partitions[to]) {
+          lookahead = Math.min(lookahead, getMinimumLatency(from, to));
+        }
+      }
+    }
+    this.lookahead = lookahead;
+  }
+
+  /**
+   * Gets the number of logical processes.
+   *
+   * @return the number of logical processes
+   */
+  public int getProcessCount() {
+    return this.processes.length;
+  }
+
+  /**
+   * Gets the lookahead.
+   *
+   * @return the lookahead in milliseconds
+   */
+  public long getLookahead() {
+    return this.lookahead;
+  }
+
+  /**
+   * Runs the scheduled tasks until no task is left or a minting task is rejected by the filter,
+   * like the sequential simulation loop in {@link Main}.
+   *
+   * @param mintingFilter tests a minting task before it is run, the simulation ends if it fails
+   */
+  public void run(Predicate<AbstractMintingTask> mintingFilter) {
+    LogicalProcess mainProcess = this.context.getMainProcess();
+    mainProcess.transferTo(node -> this.regionProcesses[node.getRegion()]);
+    for (LogicalProcess process : this.processes) {
+      process.startPartition(node -> this.regionProcesses[node.getRegion()], false);
+    }
+    // Without lookahead no two tasks of different partitions can be run in parallel
+    this.serial = this.lookahead < 1;
+
+    ExecutorService executor = Executors.newFixedThreadPool(this.processes.length);
+    long endTime = Long.MAX_VALUE;
+    long endOrder = Long.MAX_VALUE;
+    try {
+      while (true) {
+        for (LogicalProcess process : this.processes) {
+          process.deliverOutbox();
+        }
+        LogicalProcess next = getEarliestProcess(this.processes);
+        if (next == null) {
+          break;
+        }
+        long time = next.peekTime();
+        long order = next.peekOrder();
+        writeOutputs(this.processes, time, order);
+        Task task = next.peek();
+
+        if (task instanceof AbstractMintingTask) {
+          AbstractMintingTask mintingTask = (AbstractMintingTask) task;
+          if (!mintingFilter.test(mintingTask)) {
+            endTime = time;
+            endOrder = order;
+            break;
+          }
+          int height = mintingTask.getParent().getHeight();
+          runSerially(this.context, next);
+          if (height + 2 >= END_BLOCK_HEIGHT) {
+            this.serial = true;
+          }
+        } else if (this.serial) {
+          runSerially(this.context, next);
+        } else {
+          runWindow(executor, this.context, this.processes, time + this.lookahead);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (LogicalProcess process : this.processes) {
+      process.deliverOutbox();
+    }
+    writeOutputs(this.processes, endTime, endOrder);
+
+    long currentTime = 0L;
+    for (LogicalProcess process : this.processes) {
+      // Only output of tasks the sequential simulation would not have run can be left
+      process.discardDeferredOutputs();
+      if (process.hasRunAfter(endTime, endOrder)) {
+        System.err.println("Tasks ran past the end of the simulation, the final node states may "
+                               + "differ from a sequential run");
+      }
+      currentTime = Math.max(currentTime, process.getCurrentTime());
+      mainProcess.addCounters(process);
+    }
+    mainProcess.setCurrentTime(currentTime);
+  }
+
+  /**
+   * Gets the logical process with the earliest scheduled task.
+   *
+   * @param processes the logical processes
+   * @return the logical process, or null if no task is scheduled
+   */
+  static LogicalProcess getEarliestProcess(LogicalProcess[] processes) {
+    LogicalProcess earliest = null;
+    for (LogicalProcess process : processes) {
+      if (process.peek() != null && (earliest == null || LogicalProcess.isBefore(
+          process.peekTime(), process.peekOrder(), earliest.peekTime(), earliest.peekOrder()))) {
+        earliest = process;
+      }
+    }
+    return earliest;
+  }
+
+  /**
+   * Runs the next task of the logical process on the calling thread.
+   *
+   * @param context the simulation
+   * @param process the logical process
+   */
+  static void runSerially(SimulationContext context, LogicalProcess process) {
+    Timer.setCurrentProcess(process);
+    try {
+      process.runNext();
+    } finally {
+      Timer.setCurrentProcess(context.getMainProcess());
+    }
+  }
+
+  /**
+   * Runs all tasks before the bound in parallel, but not beyond the earliest scheduled minting
+   * task. Each logical process also stops at its own earliest scheduled minting task.
+   *
+   * @param executor  the executor
+   * @param context   the simulation, bound to the threads running the logical processes
+   * @param processes the logical processes
+   * @param boundTime the time before which tasks are run
+   */
+  static void runWindow(
+      ExecutorService executor, SimulationContext context, LogicalProcess[] processes,
+      long boundTime) {
+    long boundOrder = Long.MIN_VALUE;
+    for (LogicalProcess process : processes) {
+      if (process.hasMintingTask() && LogicalProcess.isBefore(
+          process.peekMintingTime(), process.peekMintingOrder(), boundTime, boundOrder)) {
+        boundTime = process.peekMintingTime();
+        boundOrder = process.peekMintingOrder();
+      }
+    }
+    final long windowTime = boundTime;
+    final long windowOrder = boundOrder;
+
+    List<Callable<Void>> windows = new ArrayList<>();
+    for (LogicalProcess process : processes) {
+      if (process.peek() != null && LogicalProcess.isBefore(
+          process.peekTime(), process.peekOrder(), windowTime, windowOrder)) {
+        windows.add(() -> {
+          SimulationContext.setCurrent(context);
+          Timer.setCurrentProcess(process);
+          process.runUntil(windowTime, windowOrder);
+          return null;
+        });
+      }
+    }
+    try {
+      for (Future<Void> future : executor.invokeAll(windows)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Writes the deferred output of all tasks before the bound in the order of the tasks.
+   *
+   * @param processes  the logical processes
+   * @param boundTime  the time of the bound
+   * @param boundOrder the order of the bound
+   */
+  static void writeOutputs(LogicalProcess[] processes, long boundTime, long boundOrder) {
+    while (true) {
+      LogicalProcess earliest = null;
+      DeferredOutput earliestOutput = null;
+      for (LogicalProcess process : processes) {
+        DeferredOutput output = process.peekDeferredOutput();
+        if (output != null && (earliestOutput == null || LogicalProcess.isBefore(
+            output.time, output.order, earliestOutput.time, earliestOutput.order))) {
+          earliest = process;
+          earliestOutput = output;
+        }
+      }
+      if (earliestOutput == null || !LogicalProcess.isBefore(
+          earliestOutput.time, earliestOutput.order, boundTime, boundOrder)) {
+        break;
+      }
+      earliest.pollDeferredOutput();
+      if (earliestOutput.actions != null) {
+        for (Runnable action : earliestOutput.actions) {
+          action.run();
+        }
+      }
+    }
+  }
+}
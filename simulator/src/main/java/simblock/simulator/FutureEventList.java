@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.util.function.Predicate;
+import simblock.task.Task;
+
+/**
+ * The interface Future event list (FEL) keeps the scheduled {@link Task} instances ordered by
+ * their scheduled time. Tasks scheduled for the same time are ordered by the order provided when
+ * they were added.
+ */
+public interface FutureEventList {
+  /**
+   * Schedules the task at the provided absolute time.
+   *
+   * @param task  the task
+   * @param time  the scheduled time in milliseconds
+   * @param order the order among the tasks scheduled for the same time, unique per task
+   */
+  void add(Task task, long time, long order);
+
+  /**
+   * Removes the task from the list.
+   *
+   * @param task the task
+   * @return true if the task was scheduled, false otherwise
+   */
+  boolean remove(Task task);
+
+  /**
+   * Removes all tasks matching the filter at once.
+   *
+   * @param filter the filter
+   * @return the number of removed tasks
+   */
+  int removeIf(Predicate<? super Task> filter);
+
+  /**
+   * Gets the task to be executed next without removing it.
+   *
+   * @return the task or null if the list is empty
+   */
+  Task peek();
+
+  /**
+   * Gets the scheduled time of the task to be executed next.
+   *
+   * @return the scheduled time, undefined if the list is empty
+   */
+  long peekTime();
+
+  /**
+   * Gets the order of the task to be executed next.
+   *
+   * @return the order, undefined if the list is empty
+   */
+  long peekOrder();
+
+  /**
+   * Removes and returns the task to be executed next.
+   *
+   * @return the task or null if the list is empty
+   */
+  Task poll();
+
+  /**
+   * Gets the number of scheduled tasks.
+   *
+   * @return the size
+   */
+  int size();
+}
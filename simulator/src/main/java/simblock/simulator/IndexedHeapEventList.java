@@ -0,0 +1,296 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import simblock.task.AbstractTask;
+import simblock.task.Task;
+
+/**
+ * The type Indexed heap event list implements the {@link FutureEventList} as an indexed d-ary
+ * min-heap. Scheduled times and orders are kept in primitive arrays parallel to the
+ * heap, so adding a task does not allocate a wrapper object. Every entry occupies a slot whose
+ * number is stored as the handle of the {@link AbstractTask}, which allows removing a task in
+ * O(log n) without a task to entry map.
+ */
+public class IndexedHeapEventList implements FutureEventList {
+  /**
+   * The number of children of a heap node.
+   */
+  private static final int ARITY = 4;
+
+  /**
+   * The initial capacity of the heap.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * The slots in heap order.
+   */
+  private int[] heap = new int[INITIAL_CAPACITY];
+
+  /**
+   * The scheduled times in heap order.
+   */
+  private long[] times = new long[INITIAL_CAPACITY];
+
+  /**
+   * The orders in heap order, used to break ties between equal scheduled times.
+   */
+  private long[] orders = new long[INITIAL_CAPACITY];
+
+  /**
+   * The tasks indexed by slot.
+   */
+  private Task[] tasks = new Task[INITIAL_CAPACITY];
+
+  /**
+   * The heap positions indexed by slot.
+   */
+  private int[] positions = new int[INITIAL_CAPACITY];
+
+  /**
+   * The stack of unused slots below {@link #slotLimit}.
+   */
+  private int[] freeSlots = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of unused slots on the stack.
+   */
+  private int freeCount = 0;
+
+  /**
+   * Slots from this number on have never been used.
+   */
+  private int slotLimit = 0;
+
+  /**
+   * The number of scheduled tasks.
+   */
+  private int size = 0;
+
+  @Override
+  public void add(Task task, long time, long order) {
+    if (this.size == this.heap.length) {
+      this.grow();
+    }
+    int slot = this.freeCount > 0 ? this.freeSlots[--this.freeCount] : this.slotLimit++;
+    this.tasks[slot] = task;
+    if (task instanceof AbstractTask) {
+      ((AbstractTask) task).setHandle(slot);
+    }
+    this.siftUp(this.size++, slot, time, order);
+  }
+
+  @Override
+  public boolean remove(Task task) {
+    int slot = this.findSlot(task);
+    if (slot < 0) {
+      return false;
+    }
+    this.removeAt(this.positions[slot]);
+    return true;
+  }
+
+  /**
+   * Removes all tasks matching the filter and rebuilds the heap in O(n).
+   *
+   * @param filter the filter
+   * @return the number of removed tasks
+   */
+  @Override
+  public int removeIf(Predicate<? super Task> filter) {
+    int kept = 0;
+    for (int position = 0; position < this.size; position++) {
+      int slot = this.heap[position];
+      Task task = this.tasks[slot];
+      if (filter.test(task)) {
+        if (task instanceof AbstractTask) {
+          ((AbstractTask) task).setHandle(-1);
+        }
+        this.tasks[slot] = null;
+        this.freeSlots[this.freeCount++] = slot;
+      } else {
+        this.setEntry(kept++, slot, this.times[position], this.orders[position]);
+      }
+    }
+    int removed = this.size - kept;
+    this.size = kept;
+    for (int position = kept > 1 ? (kept - 2) / ARITY : -1; position >= 0; position--) {
+      this.siftDown(position, this.heap[position], this.times[position], this.orders[position]);
+    }
+    return removed;
+  }
+
+  @Override
+  public Task peek() {
+    return this.size > 0 ? this.tasks[this.heap[0]] : null;
+  }
+
+  @Override
+  public long peekTime() {
+    return this.times[0];
+  }
+
+  @Override
+  public long peekOrder() {
+    return this.orders[0];
+  }
+
+  @Override
+  public Task poll() {
+    if (this.size == 0) {
+      return null;
+    }
+    Task task = this.tasks[this.heap[0]];
+    this.removeAt(0);
+    return task;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Finds the slot holding the task. Tasks extending {@link AbstractTask} are found through
+   * their handle, other tasks by a linear search.
+   *
+   * @param task the task
+   * @return the slot or -1 if the task is not scheduled
+   */
+  private int findSlot(Task task) {
+    if (task instanceof AbstractTask) {
+      int slot = ((AbstractTask) task).getHandle();
+      return slot >= 0 && slot < this.slotLimit && this.tasks[slot] == task ? slot : -1;
+    }
+    for (int slot = 0; slot < this.slotLimit; slot++) {
+      if (this.tasks[slot] == task) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes the entry at the heap position and releases its slot.
+   *
+   * @param position the heap position
+   */
+  private void removeAt(int position) {
+    int slot = this.heap[position];
+    Task task = this.tasks[slot];
+    if (task instanceof AbstractTask) {
+      ((AbstractTask) task).setHandle(-1);
+    }
+    this.tasks[slot] = null;
+    this.freeSlots[this.freeCount++] = slot;
+
+    int last = --this.size;
+    if (position == last) {
+      return;
+    }
+    int lastSlot = this.heap[last];
+    long lastTime = this.times[last];
+    long lastOrder = this.orders[last];
+    if (position > 0 && less(lastTime, lastOrder, this.times[(position - 1) / ARITY],
+                             this.orders[(position - 1) / ARITY])) {
+      this.siftUp(position, lastSlot, lastTime, lastOrder);
+    } else {
+      this.siftDown(position, lastSlot, lastTime, lastOrder);
+    }
+  }
+
+  /**
+   * Moves the hole at the heap position up until the entry fits and stores it there.
+   *
+   * @param position the heap position of the hole
+   * @param slot     the slot of the entry
+   * @param time     the scheduled time of the entry
+   * @param order    the order of the entry
+   */
+  private void siftUp(int position, int slot, long time, long order) {
+    while (position > 0) {
+      int parent = (position - 1) / ARITY;
+      if (!less(time, order, this.times[parent], this.orders[parent])) {
+        break;
+      }
+      this.moveEntry(parent, position);
+      position = parent;
+    }
+    this.setEntry(position, slot, time, order);
+  }
+
+  /**
+   * Moves the hole at the heap position down until the entry fits and stores it there.
+   *
+   * @param position the heap position of the hole
+   * @param slot     the slot of the entry
+   * @param time     the scheduled time of the entry
+   * @param order    the order of the entry
+   */
+  private void siftDown(int position, int slot, long time, long order) {
+    while (true) {
+      int first = position * ARITY + 1;
+      if (first >= this.size) {
+        break;
+      }
+      int end = Math.min(first + ARITY, this.size);
+      int child = first;
+      for (int i = first + 1; i < end; i++) {
+        if (less(this.times[i], this.orders[i], this.times[child], this.orders[child])) {
+          child = i;
+        }
+      }
+      if (!less(this.times[child], this.orders[child], time, order)) {
+        break;
+      }
+      this.moveEntry(child, position);
+      position = child;
+    }
+    this.setEntry(position, slot, time, order);
+  }
+
+  private void moveEntry(int from, int to) {
+    this.setEntry(to, this.heap[from], this.times[from], this.orders[from]);
+  }
+
+  private void setEntry(int position, int slot, long time, long order) {
+    this.heap[position] = slot;
+    this.times[position] = time;
+    this.orders[position] = order;
+    this.positions[slot] = position;
+  }
+
+  private static boolean less(long time1, long order1, long time2, long order2) {
+    return time1 < time2 || time1 == time2 && order1 < order2;
+  }
+
+  /**
+   * Doubles the capacity of all arrays.
+   */
+  private void grow() {
+    int capacity = this.heap.length * 2;
+    this.heap = Arrays.copyOf(this.heap, capacity);
+    this.times = Arrays.copyOf(this.times, capacity);
+    this.orders = Arrays.copyOf(this.orders, capacity);
+    this.tasks = Arrays.copyOf(this.tasks, capacity);
+    this.positions = Arrays.copyOf(this.positions, capacity);
+    this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+  }
+}
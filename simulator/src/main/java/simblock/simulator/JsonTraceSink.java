@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.simulator.TraceWriter.ADD_BLOCK;
+import static simblock.simulator.TraceWriter.ADD_LINK;
+import static simblock.simulator.TraceWriter.ADD_NODE;
+import static simblock.simulator.TraceWriter.FLOW_BLOCK;
+import static simblock.simulator.TraceWriter.REMOVE_LINK;
+import static simblock.simulator.TraceWriter.SIMULATION_END;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The type JSON trace sink writes the records as the JSON array of events read by the visualizer.
+ */
+class JsonTraceSink implements TraceSink {
+  /**
+   * The number of characters formatted before they are written.
+   */
+  private static final int BATCH_SIZE = 1 << 16;
+
+  /**
+   * The formatted records not written yet.
+   */
+  private final StringBuilder batch = new StringBuilder(BATCH_SIZE + 256);
+
+  /**
+   * The underlying writer.
+   */
+  private final Writer out;
+
+  /**
+   * Instantiates a new JSON trace sink and starts the array of events.
+   *
+   * @param out the underlying writer
+   */
+  JsonTraceSink(Writer out) {
+    this.out = out;
+    this.batch.append('[');
+  }
+
+  @Override
+  public void write(long[] records, int offset) throws IOException {
+    format(this.batch, records, offset);
+    if (this.batch.length() >= BATCH_SIZE) {
+      this.out.append(this.batch);
+      this.batch.setLength(0);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.out.append(this.batch.append(']'));
+    this.out.close();
+  }
+
+  /**
+   * Formats a record as a JSON object followed by a comma, except for the end of the simulation,
+   * which is the last element of the array.
+   *
+   * @param batch   the text to append to
+   * @param records the records
+   * @param offset  the offset of the record
+   */
+  static void format(StringBuilder batch, long[] records, int offset) {
+    switch ((int) records[offset]) {
+      case ADD_NODE:
+        batch.append("{\"kind\":\"add-node\",\"content\":{\"timestamp\":")
+            .append(records[offset + 1])
+            .append(",\"node-id\":").append(records[offset + 3])
+            .append(",\"region-id\":").append(records[offset + 4]).append("}},");
+        break;
+      case ADD_LINK:
+      case REMOVE_LINK:
+        batch.append(records[offset] == ADD_LINK ? "{\"kind\":\"add-link\""
+            : "{\"kind\":\"remove-link\"")
+            .append(",\"content\":{\"timestamp\":").append(records[offset + 1])
+            .append(",\"begin-node-id\":").append(records[offset + 3])
+            .append(",\"end-node-id\":").append(records[offset + 4]).append("}},");
+        break;
+      case ADD_BLOCK:
+        batch.append("{\"kind\":\"add-block\",\"content\":{\"timestamp\":")
+            .append(records[offset + 1])
+            .append(",\"node-id\":").append(records[offset + 3])
+            .append(",\"block-id\":").append(records[offset + 4]).append("}},");
+        break;
+      case FLOW_BLOCK:
+        batch.append("{\"kind\":\"flow-block\",\"content\":{\"transmission-timestamp\":")
+            .append(records[offset + 1])
+            .append(",\"reception-timestamp\":").append(records[offset + 2])
+            .append(",\"begin-node-id\":").append(records[offset + 3])
+            .append(",\"end-node-id\":").append(records[offset + 4])
+            .append(",\"block-id\":").append(records[offset + 5]).append("}},");
+        break;
+      case SIMULATION_END:
+        batch.append("{\"kind\":\"simulation-end\",\"content\":{\"timestamp\":")
+            .append(records[offset + 1]).append("}}");
+        break;
+      default:
+        throw new IllegalStateException("Unknown trace record kind " + records[offset]);
+    }
+  }
+}
@@ -0,0 +1,842 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.FUTURE_EVENT_LIST;
+import static simblock.settings.SimulationConfiguration.LAZY_MINTING_CANCELLATION;
+import static simblock.settings.SimulationConfiguration.TOMBSTONE_COMPACTION_RATE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Function;
+import simblock.node.Node;
+import simblock.task.AbstractMintingTask;
+import simblock.task.AbstractTask;
+import simblock.task.Task;
+
+/**
+ * The type Logical process executes the tasks of a set of nodes in the order of their scheduled
+ * time and order. The sequential simulation consists of a single logical process, the
+ * {@link ConservativeEngine} runs one logical process per region partition and the
+ * {@link TimeWarpEngine} one per node partition.
+ *
+ * <p>Minting tasks are kept in a separate Future Event List (FEL), because the engine runs them
+ * one at a time at synchronization points. Output produced while running a task can be deferred
+ * and is then written by the engine in the global order of the tasks.
+ *
+ * <p>An optimistic logical process records every task it runs together with the tasks it
+ * scheduled and an {@link UndoLog} position, so that it can roll back when a task scheduled by
+ * another logical process arrives late (a straggler) or is cancelled by an anti-message.
+ */
+class LogicalProcess {
+  /**
+   * The FEL holding all scheduled tasks but minting tasks.
+   */
+  private final FutureEventList taskQueue = createEventList(FUTURE_EVENT_LIST);
+
+  /**
+   * The FEL holding the scheduled minting tasks.
+   */
+  private final FutureEventList mintingQueue = createEventList(FUTURE_EVENT_LIST);
+
+  /**
+   * The current simulation time in milliseconds.
+   */
+  private long currentTime = 0L;
+
+  /**
+   * The owner of the task being run, which schedules new tasks.
+   */
+  private Node currentOwner = null;
+
+  /**
+   * The logical clock ordering tasks scheduled outside of any node, e.g. during the setup.
+   */
+  private long setupClock = 0L;
+
+  /**
+   * The number of tasks run so far.
+   */
+  private long executedTaskCount = 0L;
+
+  /**
+   * The number of cancelled minting tasks (tombstones) still in the minting FEL.
+   */
+  private int tombstoneCount = 0;
+
+  /**
+   * The number of tombstones skipped at the head of the FEL so far.
+   */
+  private long skippedTombstoneCount = 0L;
+
+  /**
+   * The number of tombstones removed by compacting the FEL so far.
+   */
+  private long compactedTombstoneCount = 0L;
+
+  /**
+   * The number of tasks rolled back so far.
+   */
+  private long rolledBackTaskCount = 0L;
+
+  /**
+   * Maps a node to the logical process simulating it, null if this is the only logical process.
+   */
+  private Function<Node, LogicalProcess> ownerProcesses = null;
+
+  /**
+   * Tasks scheduled for other logical processes, delivered by the engine.
+   */
+  private final ArrayList<RemoteTask> outbox = new ArrayList<>();
+
+  /**
+   * Whether output is deferred instead of written directly.
+   */
+  private boolean deferring = false;
+
+  /**
+   * The deferred output of the tasks run so far, in the order of the tasks.
+   */
+  private final ArrayDeque<DeferredOutput> deferredOutputs = new ArrayDeque<>();
+
+  /**
+   * The deferred output of the task being run, null if it has not produced any output yet.
+   */
+  private DeferredOutput currentOutput = null;
+
+  /**
+   * The order of the task being run.
+   */
+  private long currentOrder = 0L;
+
+  /**
+   * The scheduled time of the latest task run so far.
+   */
+  private long latestTime = Long.MIN_VALUE;
+
+  /**
+   * The order of the latest task run so far.
+   */
+  private long latestOrder = Long.MIN_VALUE;
+
+  /**
+   * The log recording how to undo the changes of the tasks run, null if tasks are never rolled
+   * back.
+   */
+  private UndoLog undoLog = null;
+
+  /**
+   * The tasks run but not committed yet, in the order they were run.
+   */
+  private final ArrayDeque<ProcessedTask> processedTasks = new ArrayDeque<>();
+
+  /**
+   * The record of the task being run, null if tasks are never rolled back.
+   */
+  private ProcessedTask currentRecord = null;
+
+  /**
+   * Instantiates the FEL implementation with the provided class name.
+   *
+   * @param eventListName the class name of the {@link FutureEventList} implementation
+   * @return the FEL
+   */
+  private static FutureEventList createEventList(String eventListName) {
+    try {
+      return (FutureEventList) Class.forName(eventListName).getConstructor().newInstance();
+    } catch (Exception e) {
+      e.printStackTrace();
+      return new IndexedHeapEventList();
+    }
+  }
+
+  /**
+   * Schedules the task at the provided absolute time. Tasks owned by a node of another region
+   * partition are handed to the engine instead.
+   *
+   * @param task the task
+   * @param time the time in milliseconds
+   */
+  void put(Task task, long time) {
+    long order = this.currentOwner != null ? this.currentOwner.nextTaskOrder()
+        : ++this.setupClock << Node.ORDER_NODE_ID_BITS;
+    LogicalProcess target = this.route(task);
+    if (target == this) {
+      this.schedule(task, time, order);
+      if (this.currentRecord != null) {
+        this.currentRecord.addLocalChild(task);
+      }
+    } else {
+      RemoteTask remoteTask = new RemoteTask(target, task, time, order, false);
+      this.outbox.add(remoteTask);
+      if (this.currentRecord != null) {
+        this.currentRecord.addRemoteChild(remoteTask);
+      }
+    }
+  }
+
+  /**
+   * Adds the task to the FEL it belongs to.
+   *
+   * @param task  the task
+   * @param time  the time in milliseconds
+   * @param order the order of the task
+   */
+  void schedule(Task task, long time, long order) {
+    if (task instanceof AbstractMintingTask) {
+      this.mintingQueue.add(task, time, order);
+    } else {
+      this.taskQueue.add(task, time, order);
+    }
+  }
+
+  /**
+   * Gets the logical process simulating the owner of the task.
+   *
+   * @param task the task
+   * @return the logical process
+   */
+  private LogicalProcess route(Task task) {
+    if (this.ownerProcesses == null || !(task instanceof AbstractTask)) {
+      return this;
+    }
+    Node owner = ((AbstractTask) task).getOwner();
+    return owner == null ? this : this.ownerProcesses.apply(owner);
+  }
+
+  /**
+   * Removes the task. See {@link Timer#removeTask(Task)}. Minting tasks are always cancelled
+   * lazily if tasks can be rolled back, and the tombstones are not compacted.
+   *
+   * @param task the task to be removed
+   */
+  void remove(Task task) {
+    if (task instanceof AbstractMintingTask) {
+      AbstractMintingTask mintingTask = (AbstractMintingTask) task;
+      if (!LAZY_MINTING_CANCELLATION && this.undoLog == null) {
+        this.mintingQueue.remove(task);
+      } else if (mintingTask.getHandle() >= 0 && !mintingTask.isCancelled()) {
+        mintingTask.cancel();
+        this.tombstoneCount++;
+        if (this.undoLog != null) {
+          this.undoLog.record(() -> {
+            mintingTask.restore();
+            this.tombstoneCount--;
+          });
+        } else if (this.tombstoneCount > TOMBSTONE_COMPACTION_RATE * this.mintingQueue.size()) {
+          this.compactTombstones();
+        }
+      }
+    } else {
+      this.taskQueue.remove(task);
+    }
+  }
+
+  /**
+   * Removes the task from the FEL it belongs to.
+   *
+   * @param task the task
+   */
+  private void unschedule(Task task) {
+    if (task instanceof AbstractMintingTask) {
+      this.mintingQueue.remove(task);
+    } else {
+      this.taskQueue.remove(task);
+    }
+  }
+
+  /**
+   * Removes the tombstones at the head of the minting FEL.
+   */
+  private void skipTombstones() {
+    while (this.tombstoneCount > 0 && isTombstone(this.mintingQueue.peek())) {
+      long time = this.mintingQueue.peekTime();
+      long order = this.mintingQueue.peekOrder();
+      Task task = this.mintingQueue.poll();
+      this.tombstoneCount--;
+      this.skippedTombstoneCount++;
+      if (this.undoLog != null) {
+        this.undoLog.record(() -> {
+          this.mintingQueue.add(task, time, order);
+          this.tombstoneCount++;
+          this.skippedTombstoneCount--;
+        });
+      }
+    }
+  }
+
+  /**
+   * Removes all tombstones from the minting FEL at once.
+   */
+  private void compactTombstones() {
+    int removed = this.mintingQueue.removeIf(LogicalProcess::isTombstone);
+    this.tombstoneCount -= removed;
+    this.compactedTombstoneCount += removed;
+  }
+
+  private static boolean isTombstone(Task task) {
+    return task instanceof AbstractMintingTask && ((AbstractMintingTask) task).isCancelled();
+  }
+
+  /**
+   * Gets the FEL holding the task to be run next.
+   *
+   * @return the FEL, or null if no task is scheduled
+   */
+  private FutureEventList nextQueue() {
+    this.skipTombstones();
+    if (this.mintingQueue.size() == 0) {
+      return this.taskQueue.size() == 0 ? null : this.taskQueue;
+    }
+    if (this.taskQueue.size() == 0) {
+      return this.mintingQueue;
+    }
+    return isBefore(this.mintingQueue.peekTime(), this.mintingQueue.peekOrder(),
+                    this.taskQueue.peekTime(), this.taskQueue.peekOrder())
+        ? this.mintingQueue : this.taskQueue;
+  }
+
+  /**
+   * Gets the task to be run next.
+   *
+   * @return the task, or null if no task is scheduled
+   */
+  Task peek() {
+    FutureEventList queue = this.nextQueue();
+    return queue == null ? null : queue.peek();
+  }
+
+  /**
+   * Gets the scheduled time of the task to be run next.
+   *
+   * @return the time, undefined if no task is scheduled
+   */
+  long peekTime() {
+    return this.nextQueue().peekTime();
+  }
+
+  /**
+   * Gets the order of the task to be run next.
+   *
+   * @return the order, undefined if no task is scheduled
+   */
+  long peekOrder() {
+    return this.nextQueue().peekOrder();
+  }
+
+  /**
+   * Checks whether a minting task is scheduled.
+   *
+   * @return true if a minting task is scheduled, false otherwise
+   */
+  boolean hasMintingTask() {
+    this.skipTombstones();
+    return this.mintingQueue.size() > 0;
+  }
+
+  /**
+   * Gets the scheduled time of the next minting task.
+   *
+   * @return the time, undefined if no minting task is scheduled
+   */
+  long peekMintingTime() {
+    return this.mintingQueue.peekTime();
+  }
+
+  /**
+   * Gets the order of the next minting task.
+   *
+   * @return the order, undefined if no minting task is scheduled
+   */
+  long peekMintingOrder() {
+    return this.mintingQueue.peekOrder();
+  }
+
+  /**
+   * Runs the next scheduled task.
+   */
+  void runNext() {
+    FutureEventList queue = this.nextQueue();
+    if (queue != null) {
+      this.run(queue);
+    }
+  }
+
+  /**
+   * Runs the scheduled tasks but minting tasks before the bound. Stops at a minting task, which
+   * the engine has to run.
+   *
+   * @param boundTime  the time of the bound
+   * @param boundOrder the order of the bound
+   */
+  void runUntil(long boundTime, long boundOrder) {
+    while (this.taskQueue.size() > 0) {
+      long time = this.taskQueue.peekTime();
+      long order = this.taskQueue.peekOrder();
+      if (!isBefore(time, order, boundTime, boundOrder)) {
+        break;
+      }
+      if (this.hasMintingTask() && isBefore(this.mintingQueue.peekTime(),
+                                            this.mintingQueue.peekOrder(), time, order)) {
+        break;
+      }
+      this.run(this.taskQueue);
+    }
+  }
+
+  /**
+   * Advances the time to the head of the FEL, removes the task and runs it.
+   *
+   * @param queue the FEL
+   */
+  private void run(FutureEventList queue) {
+    if (this.undoLog != null) {
+      this.currentRecord = new ProcessedTask(queue.peek(), queue.peekTime(), queue.peekOrder(),
+                                             this.undoLog.getPosition(), this.currentTime,
+                                             this.latestTime, this.latestOrder);
+      this.processedTasks.add(this.currentRecord);
+    }
+    this.currentTime = queue.peekTime();
+    this.currentOrder = queue.peekOrder();
+    Task task = queue.poll();
+    this.executedTaskCount++;
+    if (isBefore(this.latestTime, this.latestOrder, this.currentTime, this.currentOrder)) {
+      this.latestTime = this.currentTime;
+      this.latestOrder = this.currentOrder;
+    }
+    this.currentOwner = task instanceof AbstractTask ? ((AbstractTask) task).getOwner() : null;
+    if (this.currentOwner != null) {
+      this.currentOwner.observeTaskOrder(this.currentOrder);
+    }
+    this.currentOutput = null;
+    task.run();
+    this.currentRecord = null;
+  }
+
+  /**
+   * Moves all scheduled tasks to the logical processes simulating their owners, dropping
+   * tombstones.
+   *
+   * @param ownerProcesses maps a node to the logical process simulating it
+   */
+  void transferTo(Function<Node, LogicalProcess> ownerProcesses) {
+    for (FutureEventList queue : new FutureEventList[]{this.taskQueue, this.mintingQueue}) {
+      while (queue.size() > 0) {
+        long time = queue.peekTime();
+        long order = queue.peekOrder();
+        Task task = queue.poll();
+        if (!isTombstone(task)) {
+          ownerProcesses.apply(((AbstractTask) task).getOwner()).schedule(task, time, order);
+        }
+      }
+    }
+    this.tombstoneCount = 0;
+  }
+
+  /**
+   * Starts running as one of several logical processes, deferring all output.
+   *
+   * @param ownerProcesses maps a node to the logical process simulating it
+   * @param optimistic     whether tasks are run speculatively and can be rolled back
+   */
+  void startPartition(Function<Node, LogicalProcess> ownerProcesses, boolean optimistic) {
+    this.ownerProcesses = ownerProcesses;
+    this.deferring = true;
+    this.undoLog = optimistic ? new UndoLog() : null;
+  }
+
+  /**
+   * Gets the log recording how to undo the changes of the tasks run.
+   *
+   * @return the undo log, null if tasks are never rolled back
+   */
+  UndoLog getUndoLog() {
+    return this.undoLog;
+  }
+
+  /**
+   * Delivers the tasks scheduled for other logical processes and the anti-messages cancelling
+   * them. Receivers roll back if they have already run a task after a delivered one.
+   *
+   * @return true if anything was delivered, false if the outbox was empty
+   */
+  boolean deliverOutbox() {
+    if (this.outbox.isEmpty()) {
+      return false;
+    }
+    for (RemoteTask remoteTask : this.outbox) {
+      if (remoteTask.cancelled) {
+        continue;
+      }
+      LogicalProcess target = remoteTask.target;
+      if (target.undoLog != null) {
+        target.rollback(remoteTask.time, remoteTask.order);
+      }
+      if (remoteTask.anti) {
+        target.unschedule(remoteTask.task);
+      } else {
+        target.schedule(remoteTask.task, remoteTask.time, remoteTask.order);
+        remoteTask.delivered = true;
+      }
+    }
+    this.outbox.clear();
+    return true;
+  }
+
+  /**
+   * Rolls back all tasks run at or after the bound, the latest first. The changes of a task are
+   * undone, the tasks it scheduled are removed or cancelled by anti-messages, its deferred output
+   * is discarded and the task is scheduled again.
+   *
+   * @param boundTime  the time of the bound
+   * @param boundOrder the order of the bound
+   */
+  void rollback(long boundTime, long boundOrder) {
+    while (!this.processedTasks.isEmpty()) {
+      ProcessedTask record = this.processedTasks.peekLast();
+      if (isBefore(record.time, record.order, boundTime, boundOrder)) {
+        break;
+      }
+      this.processedTasks.pollLast();
+      this.undoLog.undoTo(record.undoPosition);
+      if (record.localChildren != null) {
+        for (Task child : record.localChildren) {
+          this.unschedule(child);
+        }
+      }
+      if (record.remoteChildren != null) {
+        for (RemoteTask child : record.remoteChildren) {
+          if (child.delivered) {
+            this.outbox.add(
+                new RemoteTask(child.target, child.task, child.time, child.order, true));
+          } else {
+            child.cancelled = true;
+          }
+        }
+      }
+      if (record.output != null) {
+        this.deferredOutputs.pollLast();
+      }
+      this.schedule(record.task, record.time, record.order);
+      this.currentTime = record.previousTime;
+      this.latestTime = record.previousLatestTime;
+      this.latestOrder = record.previousLatestOrder;
+      this.executedTaskCount--;
+      this.rolledBackTaskCount++;
+    }
+  }
+
+  /**
+   * Commits the tasks run before the bound, which can no longer be rolled back, and frees the
+   * memory needed to roll them back (fossil collection).
+   *
+   * @param boundTime  the time of the bound, at most the Global Virtual Time
+   * @param boundOrder the order of the bound
+   */
+  void commit(long boundTime, long boundOrder) {
+    while (!this.processedTasks.isEmpty()) {
+      ProcessedTask record = this.processedTasks.peekFirst();
+      if (!isBefore(record.time, record.order, boundTime, boundOrder)) {
+        break;
+      }
+      this.processedTasks.pollFirst();
+    }
+    this.undoLog.discardBefore(this.processedTasks.isEmpty() ? this.undoLog.getPosition()
+                                   : this.processedTasks.peekFirst().undoPosition);
+  }
+
+  /**
+   * Checks whether a task after the bound has been run.
+   *
+   * @param boundTime  the time of the bound
+   * @param boundOrder the order of the bound
+   * @return true if a task after the bound has been run, false otherwise
+   */
+  boolean hasRunAfter(long boundTime, long boundOrder) {
+    return isBefore(boundTime, boundOrder, this.latestTime, this.latestOrder);
+  }
+
+  /**
+   * Checks whether output is deferred.
+   *
+   * @return true if output is deferred, false if it is written directly
+   */
+  boolean isDeferring() {
+    return this.deferring;
+  }
+
+  /**
+   * Gets the deferred output of the task being run.
+   *
+   * @return the deferred output
+   */
+  private DeferredOutput getCurrentOutput() {
+    if (this.currentOutput == null) {
+      this.currentOutput = new DeferredOutput(this.currentTime, this.currentOrder);
+      this.deferredOutputs.add(this.currentOutput);
+      if (this.currentRecord != null) {
+        this.currentRecord.output = this.currentOutput;
+      }
+    }
+    return this.currentOutput;
+  }
+
+  /**
+   * Defers the action writing output or changing shared state.
+   *
+   * @param action the action
+   */
+  void deferAction(Runnable action) {
+    DeferredOutput output = this.getCurrentOutput();
+    if (output.actions == null) {
+      output.actions = new ArrayList<>();
+    }
+    output.actions.add(action);
+  }
+
+  /**
+   * Gets the deferred output of the earliest task, without removing it.
+   *
+   * @return the deferred output, or null if there is none
+   */
+  DeferredOutput peekDeferredOutput() {
+    return this.deferredOutputs.peek();
+  }
+
+  /**
+   * Removes the deferred output of the earliest task.
+   *
+   * @return the deferred output
+   */
+  DeferredOutput pollDeferredOutput() {
+    return this.deferredOutputs.poll();
+  }
+
+  /**
+   * Discards the deferred output of all tasks.
+   */
+  void discardDeferredOutputs() {
+    this.deferredOutputs.clear();
+    this.currentOutput = null;
+  }
+
+  /**
+   * Gets current time in milliseconds.
+   *
+   * @return the time
+   */
+  long getCurrentTime() {
+    return this.currentTime;
+  }
+
+  /**
+   * Sets the current time in milliseconds.
+   *
+   * @param currentTime the time
+   */
+  void setCurrentTime(long currentTime) {
+    this.currentTime = currentTime;
+  }
+
+  /**
+   * Gets the number of tasks run so far.
+   *
+   * @return the number of executed tasks
+   */
+  long getExecutedTaskCount() {
+    return this.executedTaskCount;
+  }
+
+  /**
+   * Gets the number of tombstones skipped so far.
+   *
+   * @return the number of skipped tombstones
+   */
+  long getSkippedTombstoneCount() {
+    return this.skippedTombstoneCount;
+  }
+
+  /**
+   * Gets the number of tombstones removed by compaction so far.
+   *
+   * @return the number of compacted tombstones
+   */
+  long getCompactedTombstoneCount() {
+    return this.compactedTombstoneCount;
+  }
+
+  /**
+   * Gets the number of tasks rolled back so far.
+   *
+   * @return the number of rolled back tasks
+   */
+  long getRolledBackTaskCount() {
+    return this.rolledBackTaskCount;
+  }
+
+  /**
+   * Adds the counters of another logical process to the counters of this one.
+   *
+   * @param process the other logical process
+   */
+  void addCounters(LogicalProcess process) {
+    this.executedTaskCount += process.executedTaskCount;
+    this.skippedTombstoneCount += process.skippedTombstoneCount;
+    this.compactedTombstoneCount += process.compactedTombstoneCount;
+    this.rolledBackTaskCount += process.rolledBackTaskCount;
+  }
+
+  /**
+   * Compares two tasks by scheduled time and order.
+   *
+   * @param time1  the time of the first task
+   * @param order1 the order of the first task
+   * @param time2  the time of the second task
+   * @param order2 the order of the second task
+   * @return true if the first task is run before the second one
+   */
+  static boolean isBefore(long time1, long order1, long time2, long order2) {
+    return time1 < time2 || time1 == time2 && order1 < order2;
+  }
+
+  /**
+   * A task scheduled for another logical process, or an anti-message cancelling it.
+   */
+  private static final class RemoteTask {
+    private final LogicalProcess target;
+    private final Task task;
+    private final long time;
+    private final long order;
+
+    /**
+     * Whether the task is cancelled instead of scheduled.
+     */
+    private final boolean anti;
+
+    /**
+     * Whether the task has been delivered.
+     */
+    private boolean delivered = false;
+
+    /**
+     * Whether the task was rolled back before it was delivered.
+     */
+    private boolean cancelled = false;
+
+    private RemoteTask(LogicalProcess target, Task task, long time, long order, boolean anti) {
+      this.target = target;
+      this.task = task;
+      this.time = time;
+      this.order = order;
+      this.anti = anti;
+    }
+  }
+
+  /**
+   * A task run by an optimistic logical process, kept until it is committed.
+   */
+  private static final class ProcessedTask {
+    private final Task task;
+    private final long time;
+    private final long order;
+
+    /**
+     * The position of the undo log before the task was run.
+     */
+    private final long undoPosition;
+
+    /**
+     * The current time before the task was run.
+     */
+    private final long previousTime;
+
+    /**
+     * The scheduled time of the latest task run before this task.
+     */
+    private final long previousLatestTime;
+
+    /**
+     * The order of the latest task run before this task.
+     */
+    private final long previousLatestOrder;
+
+    /**
+     * The tasks scheduled for this logical process, null if there are none.
+     */
+    private ArrayList<Task> localChildren = null;
+
+    /**
+     * The tasks scheduled for other logical processes, null if there are none.
+     */
+    private ArrayList<RemoteTask> remoteChildren = null;
+
+    /**
+     * The deferred output of the task, null if it has not produced any output.
+     */
+    private DeferredOutput output = null;
+
+    private ProcessedTask(Task task, long time, long order, long undoPosition, long previousTime,
+                          long previousLatestTime, long previousLatestOrder) {
+      this.task = task;
+      this.time = time;
+      this.order = order;
+      this.undoPosition = undoPosition;
+      this.previousTime = previousTime;
+      this.previousLatestTime = previousLatestTime;
+      this.previousLatestOrder = previousLatestOrder;
+    }
+
+    private void addLocalChild(Task task) {
+      if (this.localChildren == null) {
+        this.localChildren = new ArrayList<>();
+      }
+      this.localChildren.add(task);
+    }
+
+    private void addRemoteChild(RemoteTask task) {
+      if (this.remoteChildren == null) {
+        this.remoteChildren = new ArrayList<>();
+      }
+      this.remoteChildren.add(task);
+    }
+  }
+
+  /**
+   * The output deferred while running a task.
+   */
+  static final class DeferredOutput {
+    /**
+     * The scheduled time of the task.
+     */
+    final long time;
+
+    /**
+     * The order of the task.
+     */
+    final long order;
+
+    /**
+     * The actions writing output or changing shared state, null if there are none.
+     */
+    ArrayList<Runnable> actions = null;
+
+    private DeferredOutput(long time, long order) {
+      this.time = time;
+      this.order = order;
+    }
+  }
+}
@@ -20,38 +20,26 @@ package simblock.simulator;
 import static simblock.settings.SimulationConfiguration.ALGO;
 import static simblock.settings.SimulationConfiguration.AVERAGE_MINING_POWER;
 import static simblock.settings.SimulationConfiguration.END_BLOCK_HEIGHT;
-import static simblock.settings.SimulationConfiguration.INTERVAL;
-import static simblock.settings.SimulationConfiguration.NUM_OF_NODES;
+import static simblock.settings.SimulationConfiguration.GLOBAL_MINING_SAMPLER;
+import static simblock.settings.SimulationConfiguration.NUM_OF_LOGICAL_PROCESSES;
+import static simblock.settings.SimulationConfiguration.STAKE_WEIGHTED_SAMPLER;
 import static simblock.settings.SimulationConfiguration.STDEV_OF_MINING_POWER;
 import static simblock.settings.SimulationConfiguration.TABLE;
-import static simblock.settings.SimulationConfiguration.CBR_USAGE_RATE;
-import static simblock.settings.SimulationConfiguration.CHURN_NODE_RATE;
+import static simblock.settings.SimulationConfiguration.TIME_WARP;
 import static simblock.simulator.Network.getDegreeDistribution;
 import static simblock.simulator.Network.getRegionDistribution;
 import static simblock.simulator.Network.printRegion;
-import static simblock.simulator.Simulator.addNode;
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.printAllPropagation;
-import static simblock.simulator.Simulator.setTargetInterval;
-import static simblock.simulator.Timer.getCurrentTime;
-import static simblock.simulator.Timer.getTask;
-import static simblock.simulator.Timer.runTask;
-
-import java.io.BufferedWriter;
+
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import simblock.block.Block;
 import simblock.node.Node;
+import simblock.settings.SimulationParameters;
 import simblock.task.AbstractMintingTask;
 
 
@@ -62,12 +50,13 @@ public class Main {
   /**
    * The constant to be used as the simulation seed.
    */
-  public static Random random = new Random(10);
+  public static final long SEED = 10;
 
   /**
    * The initial simulation time.
    */
   public static long simulationTime = 0;
+
   /**
    * Path to config file.
    */
@@ -87,161 +76,165 @@ public class Main {
   }
 
   /**
-   * The output writer.
+   * The entry point. Runs a single simulation, the {@link ParameterSweep} of simulator.conf if
+   * the first argument is "sweep", or else the number of replications given as the first
+   * argument. The second argument is the number of threads (by default the number of available
+   * processors).
+   *
+   * @param args the input arguments
    */
-  //TODO use logger
-  public static PrintWriter OUT_JSON_FILE;
+  public static void main(String[] args) {
+    if (args.length > 0) {
+      int threadCount = args.length > 1 ? Integer.parseInt(args[1])
+          : Runtime.getRuntime().availableProcessors();
+      if (args[0].equals("sweep")) {
+        try {
+          new ParameterSweep(new File(CONF_FILE_URI)).run(threadCount, SEED);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      } else {
+        new ReplicationRunner(Integer.parseInt(args[0]), threadCount, SEED).run();
+      }
+      return;
+    }
 
-  /**
-   * The constant STATIC_JSON_FILE.
-   */
-  //TODO use logger
-  public static PrintWriter STATIC_JSON_FILE;
+    final long start = System.currentTimeMillis();
+    SimulationContext context = new SimulationContext(SEED, OUT_FILE_URI);
+    SimulationContext.setCurrent(context);
+    simulate(context);
+    LogicalProcess mainProcess = context.getMainProcess();
 
-  static {
-    try {
-      OUT_JSON_FILE = new PrintWriter(
-          new BufferedWriter(new FileWriter(new File(OUT_FILE_URI.resolve("./output.json")))));
-      STATIC_JSON_FILE = new PrintWriter(
-          new BufferedWriter(new FileWriter(new File(OUT_FILE_URI.resolve("./static.json")))));
-    } catch (IOException e) {
-      e.printStackTrace();
+    long end = System.currentTimeMillis();
+    simulationTime += end - start;
+    // Log simulation time in milliseconds
+    System.out.println(simulationTime);
+    // Log the number of executed tasks and the task throughput
+    System.out.println(
+        mainProcess.getExecutedTaskCount() + " tasks, "
+            + mainProcess.getExecutedTaskCount() * 1000 / Math.max(simulationTime, 1)
+            + " tasks/s");
+    // Log the number of cancelled minting tasks skipped and compacted away
+    System.out.println(
+        mainProcess.getSkippedTombstoneCount() + " tombstones skipped, "
+            + mainProcess.getCompactedTombstoneCount() + " tombstones compacted");
+    // Log the number of tasks rolled back by the Time Warp engine
+    if (TIME_WARP) {
+      System.out.println(mainProcess.getRolledBackTaskCount() + " tasks rolled back");
     }
+
   }
 
   /**
-   * The entry point.
+   * Runs the simulation of the context, which has to be bound to the calling thread, and
+   * analyzes the resulting chain and orphans. Text output goes to the log of the context.
    *
-   * @param args the input arguments
+   * @param context the simulation context
+   * @return the result of the simulation
    */
-  public static void main(String[] args) {
-    final long start = System.currentTimeMillis();
-    setTargetInterval(INTERVAL);
-
-    //start json format
-    OUT_JSON_FILE.print("[");
-    OUT_JSON_FILE.flush();
+  public static SimulationResult simulate(SimulationContext context) {
+    PrintStream log = context.getLog();
+    SimulationParameters parameters = context.getParameters();
+    context.setTargetInterval(parameters.getInterval());
 
     // Log regions
-    printRegion();
+    printRegion(context);
 
     // Setup network
-    constructNetworkWithAllNodes(NUM_OF_NODES);
-
-    // Initial block height, we stop at END_BLOCK_HEIGHT
-    int currentBlockHeight = 1;
-
-    // Iterate over tasks and handle
-    while (getTask() != null) {
-      if (getTask() instanceof AbstractMintingTask) {
-        AbstractMintingTask task = (AbstractMintingTask) getTask();
-        if (task.getParent().getHeight() == currentBlockHeight) {
-          currentBlockHeight++;
-        }
-        if (currentBlockHeight > END_BLOCK_HEIGHT) {
+    constructNetworkWithAllNodes(context, parameters.getNumOfNodes());
+
+    if (NUM_OF_LOGICAL_PROCESSES > 1 && !GLOBAL_MINING_SAMPLER && !STAKE_WEIGHTED_SAMPLER) {
+      // Run the logical processes in parallel
+      if (TIME_WARP) {
+        new TimeWarpEngine(context, NUM_OF_LOGICAL_PROCESSES).run(
+            task -> checkMintingTask(context, task));
+      } else {
+        new ConservativeEngine(context, NUM_OF_LOGICAL_PROCESSES).run(
+            task -> checkMintingTask(context, task));
+      }
+    } else {
+      // Iterate over tasks and handle
+      LogicalProcess mainProcess = context.getMainProcess();
+      while (mainProcess.peek() != null) {
+        if (mainProcess.peek() instanceof AbstractMintingTask && !checkMintingTask(
+            context, (AbstractMintingTask) mainProcess.peek())) {
           break;
         }
-        // Log every 100 blocks and at the second block
-        // TODO use constants here
-        if (currentBlockHeight % 100 == 0 || currentBlockHeight == 2) {
-          writeGraph(currentBlockHeight);
-        }
+        // Execute task
+        mainProcess.runNext();
       }
-      // Execute task
-      runTask();
     }
 
-    // Print propagation information about all blocks
-    printAllPropagation();
+    // Write propagation information about all blocks
+    context.printAllPropagation();
 
-    //TODO logger
-    System.out.println();
+    // Log the propagation time percentiles of all blocks
+    PropagationHistogram propagation = context.getPropagationHistogram();
+    log.println(
+        "propagation time: " + propagation.getValueAtPercentile(0.5) + " ms (p50), "
+            + propagation.getValueAtPercentile(0.9) + " ms (p90), " + propagation.getMax()
+            + " ms (p100), " + propagation.getCount() + " arrivals");
 
-    Set<Block> blocks = new HashSet<>();
+    //TODO logger
+    log.println();
 
-    // Get the latest block from the first simulated node
-    Block block = getSimulatedNodes().get(0).getBlock();
+    // Get the height of the chain of the first simulated node
+    List<Node> simulatedNodes = context.getSimulatedNodes();
+    int blockHeight = simulatedNodes.get(0).getBlock().getHeight();
 
-    //Update the list of known blocks by adding the parents of the aforementioned block
-    while (block.getParent() != null) {
-      blocks.add(block);
-      block = block.getParent();
+    int orphanCount = 0;
+    for (Node node : simulatedNodes) {
+      orphanCount += node.getOrphanCount();
     }
+    double averageOrphanCount = (double) orphanCount / simulatedNodes.size();
 
-    Set<Block> orphans = new HashSet<>();
-    int averageOrphansSize = 0;
-    // Gather all known orphans
-    for (Node node : getSimulatedNodes()) {
-      orphans.addAll(node.getOrphans());
-      averageOrphansSize += node.getOrphans().size();
-    }
-    averageOrphansSize = averageOrphansSize / getSimulatedNodes().size();
+    // Log the stale blocks, forks and reorganizations
+    BlockTree blockTree = context.getBlockTree();
+    blockTree.report(log);
+    // Log the average number of orphans known to a node
+    log.println(averageOrphanCount);
 
-    // Record orphans to the list of all known blocks
-    blocks.addAll(orphans);
+    // Log all blocks with their fork information
+    blockTree.writeBlockList(context.getOutputUri().resolve("./blockList.txt"));
 
-    ArrayList<Block> blockList = new ArrayList<>(blocks);
+    // Archive the blocks still kept in memory
+    context.archiveAllBlocks();
 
-    //Sort the blocks first by time, then by hash code
-    blockList.sort((a, b) -> {
-      int order = Long.signum(a.getTime() - b.getTime());
-      if (order != 0) {
-        return order;
-      }
-      order = System.identityHashCode(a) - System.identityHashCode(b);
-      return order;
-    });
-
-    //Log all orphans
-    // TODO move to method and use logger
-    for (Block orphan : orphans) {
-      System.out.println(orphan + ":" + orphan.getHeight());
-    }
-    System.out.println(averageOrphansSize);
-
-    /*
-    Log in format:
-     ＜fork_information, block height, block ID＞
-    fork_information: One of "OnChain" and "Orphan". "OnChain" denote block is on Main chain.
-    "Orphan" denote block is an orphan block.
-     */
-    // TODO move to method and use logger
-    try {
-      FileWriter fw = new FileWriter(new File(OUT_FILE_URI.resolve("./blockList.txt")), false);
-      PrintWriter pw = new PrintWriter(new BufferedWriter(fw));
-
-      for (Block b : blockList) {
-        if (!orphans.contains(b)) {
-          pw.println("OnChain : " + b.getHeight() + " : " + b);
-        } else {
-          pw.println("Orphan : " + b.getHeight() + " : " + b);
-        }
-      }
-      pw.close();
+    context.getTrace().close(context.getCurrentTime());
+    context.getTopologyLog().close();
 
-    } catch (IOException ex) {
-      ex.printStackTrace();
-    }
-
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"simulation-end\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("}");
-    //end json format
-    OUT_JSON_FILE.print("]");
-    OUT_JSON_FILE.close();
+    return new SimulationResult(
+        context.getSeed(), blockHeight, blockTree.getStaleBlockCount(), averageOrphanCount,
+        SimulationResult.getPercentiles(propagation),
+        context.getMainProcess().getExecutedTaskCount());
+  }
 
 
-    long end = System.currentTimeMillis();
-    simulationTime += end - start;
-    // Log simulation time in milliseconds
-    System.out.println(simulationTime);
-
+  /**
+   * Updates the block height with the minting task to be run next and logs the network.
+   *
+   * @param context the simulation
+   * @param task    the minting task
+   * @return false if the simulation ends at the task, true otherwise
+   */
+  private static boolean checkMintingTask(SimulationContext context, AbstractMintingTask task) {
+    int currentBlockHeight = context.getCurrentBlockHeight();
+    boolean reached = false;
+    if (task.getParent() != null && task.getParent().getHeight() == currentBlockHeight) {
+      currentBlockHeight++;
+      context.setCurrentBlockHeight(currentBlockHeight);
+      reached = true;
+    }
+    if (currentBlockHeight > END_BLOCK_HEIGHT) {
+      return false;
+    }
+    // Log the network at every new block height, from the second block
+    if (reached) {
+      context.getTopologyLog().mark(currentBlockHeight, context.getSimulatedNodes());
+    }
+    return true;
   }
 
-
   //TODO　以下の初期生成はシナリオを読み込むようにする予定
   //ノードを参加させるタスクを作る(ノードの参加と，リンクの貼り始めるタスクは分ける)
   //シナリオファイルで上の参加タスクをTimer入れていく．
@@ -255,64 +248,70 @@ public class Main {
   /**
    * Populate the list using the distribution.
    *
+   * @param context      the simulation whose nodes the list is for
    * @param distribution the distribution
    * @param facum        whether the distribution is cumulative distribution
    * @return array list
    */
   //TODO explanation on facum etc.
-  public static ArrayList<Integer> makeRandomListFollowDistribution(double[] distribution, boolean facum) {
+  public static ArrayList<Integer> makeRandomListFollowDistribution(
+      SimulationContext context, double[] distribution, boolean facum) {
     ArrayList<Integer> list = new ArrayList<>();
+    int numOfNodes = context.getParameters().getNumOfNodes();
     int index = 0;
 
     if (facum) {
       for (; index < distribution.length; index++) {
-        while (list.size() <= NUM_OF_NODES * distribution[index]) {
+        while (list.size() <= numOfNodes * distribution[index]) {
           list.add(index);
         }
       }
-      while (list.size() < NUM_OF_NODES) {
+      while (list.size() < numOfNodes) {
         list.add(index);
       }
     } else {
       double acumulative = 0.0;
       for (; index < distribution.length; index++) {
         acumulative += distribution[index];
-        while (list.size() <= NUM_OF_NODES * acumulative) {
+        while (list.size() <= numOfNodes * acumulative) {
           list.add(index);
         }
       }
-      while (list.size() < NUM_OF_NODES) {
+      while (list.size() < numOfNodes) {
         list.add(index);
       }
     }
 
-    Collections.shuffle(list, random);
+    Collections.shuffle(list, context.getRandom());
     return list;
   }
 
   /**
    * Populate the list using the rate.
    *
-   * @param rate the rate of true
+   * @param context the simulation whose nodes the list is for
+   * @param rate    the rate of true
    * @return array list
    */
-  public static ArrayList<Boolean> makeRandomList(float rate){
-		ArrayList<Boolean> list = new ArrayList<Boolean>();
-		for(int i=0; i < NUM_OF_NODES; i++){
-			list.add(i < NUM_OF_NODES*rate);
-		}
-		Collections.shuffle(list, random);
-		return list;
-	}
+  public static ArrayList<Boolean> makeRandomList(SimulationContext context, float rate) {
+    ArrayList<Boolean> list = new ArrayList<Boolean>();
+    int numOfNodes = context.getParameters().getNumOfNodes();
+    for (int i = 0; i < numOfNodes; i++) {
+      list.add(i < numOfNodes * rate);
+    }
+    Collections.shuffle(list, context.getRandom());
+    return list;
+  }
 
   /**
    * Generates a random mining power expressed as Hash Rate, and is the number of mining (hash
    * calculation) executed per millisecond.
    *
+   * @param context the simulation whose random number generator is used
    * @return the number of hash  calculations executed per millisecond.
    */
-  public static int genMiningPower() {
-    double r = random.nextGaussian();
+  public static int genMiningPower(SimulationContext context) {
+    double r = context.getRandom().nextGaussian();
 
     return Math.max((int) (r * STDEV_OF_MINING_POWER + AVERAGE_MINING_POWER), 1);
   }
@@ -320,83 +319,52 @@ public class Main {
   /**
    * Construct network with the provided number of nodes.
    *
+   * @param context  the simulation the nodes belong to
    * @param numNodes the num nodes
    */
-  public static void constructNetworkWithAllNodes(int numNodes) {
+  public static void constructNetworkWithAllNodes(SimulationContext context, int numNodes) {
 
     // Random distribution of nodes per region
     double[] regionDistribution = getRegionDistribution();
-    List<Integer> regionList = makeRandomListFollowDistribution(regionDistribution, false);
+    List<Integer> regionList = makeRandomListFollowDistribution(
+        context, regionDistribution, false);
 
     // Random distribution of node degrees
     double[] degreeDistribution = getDegreeDistribution();
-    List<Integer> degreeList = makeRandomListFollowDistribution(degreeDistribution, true);
+    List<Integer> degreeList = makeRandomListFollowDistribution(
+        context, degreeDistribution, true);
+
+    SimulationParameters parameters = context.getParameters();
 
     // List of nodes using compact block relay.
-    List<Boolean> useCBRNodes = makeRandomList(CBR_USAGE_RATE);
+    List<Boolean> useCBRNodes = makeRandomList(context, parameters.getCbrUsageRate());
 
     // List of churn nodes.
-		List<Boolean> churnNodes = makeRandomList(CHURN_NODE_RATE);
+    List<Boolean> churnNodes = makeRandomList(context, parameters.getChurnNodeRate());
 
     for (int id = 1; id <= numNodes; id++) {
       // Each node gets assigned a region, its degree, mining power, routing table and
       // consensus algorithm
       Node node = new Node(
-          id, degreeList.get(id - 1) + 1, regionList.get(id - 1), genMiningPower(), TABLE,
-          ALGO, useCBRNodes.get(id - 1), churnNodes.get(id - 1)
+          context, id, degreeList.get(id - 1) + 1, regionList.get(id - 1),
+          genMiningPower(context), TABLE, ALGO, useCBRNodes.get(id - 1), churnNodes.get(id - 1)
       );
       // Add the node to the list of simulated nodes
-      addNode(node);
-
-      OUT_JSON_FILE.print("{");
-      OUT_JSON_FILE.print("\"kind\":\"add-node\",");
-      OUT_JSON_FILE.print("\"content\":{");
-      OUT_JSON_FILE.print("\"timestamp\":0,");
-      OUT_JSON_FILE.print("\"node-id\":" + id + ",");
-      OUT_JSON_FILE.print("\"region-id\":" + regionList.get(id - 1));
-      OUT_JSON_FILE.print("}");
-      OUT_JSON_FILE.print("},");
-      OUT_JSON_FILE.flush();
+      context.getSimulatedNodes().add(node);
 
+      TraceWriter trace = context.getTrace();
+      if (trace.tracesBlocks()) {
+        trace.addNode(0, id, regionList.get(id - 1));
+      }
     }
 
     // Link newly generated nodes
-    for (Node node : getSimulatedNodes()) {
+    for (Node node : context.getSimulatedNodes()) {
       node.joinNetwork();
     }
 
     // Designates a random node (nodes in list are randomized) to mint the genesis block
-    getSimulatedNodes().get(0).genesisBlock();
-  }
-
-  /**
-   * Network information when block height is <em>blockHeight</em>, in format:
-   *
-   * <p><em>nodeID_1</em>, <em>nodeID_2</em>
-   *
-   * <p>meaning there is a connection from nodeID_1 to right nodeID_1.
-   *
-   * @param blockHeight the index of the graph and the current block height
-   */
-  //TODO use logger
-  public static void writeGraph(int blockHeight) {
-    try {
-      FileWriter fw = new FileWriter(
-          new File(OUT_FILE_URI.resolve("./graph/" + blockHeight + ".txt")), false);
-      PrintWriter pw = new PrintWriter(new BufferedWriter(fw));
-
-      for (int index = 1; index <= getSimulatedNodes().size(); index++) {
-        Node node = getSimulatedNodes().get(index - 1);
-        for (int i = 0; i < node.getNeighbors().size(); i++) {
-          Node neighbor = node.getNeighbors().get(i);
-          pw.println(node.getNodeID() + " " + neighbor.getNodeID());
-        }
-      }
-      pw.close();
-
-    } catch (IOException ex) {
-      ex.printStackTrace();
-    }
+    context.getSimulatedNodes().get(0).genesisBlock();
   }
 
 }
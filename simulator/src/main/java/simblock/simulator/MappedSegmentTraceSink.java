@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.simulator.TraceWriter.ADD_BLOCK;
+import static simblock.simulator.TraceWriter.FLOW_BLOCK;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The type Mapped segment trace sink writes the records in the binary trace format into rolling
+ * segment files, which are preallocated and written through a memory mapping, so that writing a
+ * record is a copy into memory without a system call. Every segment is a binary trace of its own,
+ * followed by a {@link TraceSegment} footer indexing the times and block ids it covers, so that
+ * analysis tools can read only the segments of interest.
+ */
+class MappedSegmentTraceSink implements TraceSink {
+  /**
+   * The directory of the segment files.
+   */
+  private final URI directory;
+
+  /**
+   * The size of a segment file in bytes before it is truncated to its content.
+   */
+  private final int segmentSize;
+
+  /**
+   * The encoder of the records, reset for every segment.
+   */
+  private final BinaryTraceEncoder encoder = new BinaryTraceEncoder();
+
+  /**
+   * The number of the current segment.
+   */
+  private int segmentNumber = -1;
+
+  /**
+   * The channel of the current segment file.
+   */
+  private FileChannel channel = null;
+
+  /**
+   * The mapping of the current segment file.
+   */
+  private MappedByteBuffer buffer = null;
+
+  /**
+   * The index of the current segment.
+   */
+  private TraceSegment segment = null;
+
+  /**
+   * Instantiates a new Mapped segment trace sink.
+   *
+   * @param directory   the directory of the segment files, which has to exist
+   * @param segmentSize the size of a segment file in bytes before it is truncated to its content
+   */
+  MappedSegmentTraceSink(URI directory, int segmentSize) {
+    if (segmentSize < 1024) {
+      throw new IllegalArgumentException("Trace segments need at least 1024 bytes");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Gets the path of a segment file.
+   *
+   * @param directory the directory of the segment files
+   * @param number    the number of the segment
+   * @return the path
+   */
+  static Path getSegmentPath(URI directory, int number) {
+    return Paths.get(directory.resolve(String.format("./segment-%05d.bin", number)));
+  }
+
+  @Override
+  public void write(long[] records, int offset) throws IOException {
+    if (this.buffer == null || this.buffer.remaining()
+        < BinaryTraceEncoder.MAX_RECORD_SIZE + TraceSegment.FOOTER_SIZE) {
+      this.finishSegment();
+      this.startSegment();
+    }
+    this.encoder.encode(this.buffer, records, offset);
+    int kind = (int) records[offset];
+    this.segment.add(
+        records[offset + (kind == FLOW_BLOCK ? 2 : 1)],
+        kind == ADD_BLOCK ? records[offset + 4] : kind == FLOW_BLOCK ? records[offset + 5] : -1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.buffer == null) {
+      this.startSegment();
+    }
+    this.finishSegment();
+  }
+
+  /**
+   * Creates, preallocates and maps the next segment file and writes its header.
+   *
+   * @throws IOException if the file cannot be created
+   */
+  private void startSegment() throws IOException {
+    this.segmentNumber++;
+    Path path = getSegmentPath(this.directory, this.segmentNumber);
+    this.channel = FileChannel.open(
+        path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+    this.buffer.put(BinaryTraceSink.MAGIC).put(BinaryTraceSink.VERSION);
+    this.encoder.reset();
+    this.segment = new TraceSegment(path);
+  }
+
+  /**
+   * Writes the footer of the current segment and truncates the file to its content.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  private void finishSegment() throws IOException {
+    if (this.buffer == null) {
+      return;
+    }
+    this.segment.writeFooter(this.buffer);
+    this.buffer.force();
+    long size = this.buffer.position();
+    this.buffer = null;
+    this.channel.truncate(size);
+    this.channel.close();
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import simblock.settings.SimulationParameters;
+
+/**
+ * The type Parameter sweep runs the simulation for every point of a design over the {@link
+ * SimulationParameters}, concurrently in one JVM. The design is read from a spec with lines of
+ * the form <em>key = value</em>, where empty lines and lines starting with # are ignored:
+ *
+ * <ul>
+ * <li><em>design</em>: <em>grid</em> (default) runs every combination of the parameter values,
+ * <em>lhs</em> draws a Latin hypercube sample of <em>points</em> points.</li>
+ * <li><em>points</em>: the number of points of a Latin hypercube sample.</li>
+ * <li><em>replications</em>: the number of replications of every point (default 1). Replication
+ * <em>r</em> uses the same seed at every point.</li>
+ * <li>a parameter name of {@link SimulationParameters#NAMES}: a comma separated list of values,
+ * or with <em>lhs</em> also a range <em>min..max</em> sampled uniformly.</li>
+ * </ul>
+ *
+ * <p>The output of replication <em>r</em> of point <em>p</em> is written to
+ * <em>output/sweep/p/r/</em>. The parameters, results, run time and task throughput of all runs
+ * are written to <em>output/sweep/results.csv</em>, one line per run.
+ */
+public class ParameterSweep {
+  /**
+   * The values of every varied parameter, either a list of values or a range of two values.
+   */
+  private final Map<String, String[]> values = new LinkedHashMap<>();
+
+  /**
+   * The varied parameters given as a range.
+   */
+  private final List<String> ranges = new ArrayList<>();
+
+  /**
+   * Whether the design is a Latin hypercube sample instead of a grid.
+   */
+  private boolean latinHypercube = false;
+
+  /**
+   * The number of points of a Latin hypercube sample.
+   */
+  private int pointCount = 0;
+
+  /**
+   * The number of replications of every point.
+   */
+  private int replicationCount = 1;
+
+  /**
+   * Instantiates a new Parameter sweep from a spec.
+   *
+   * @param spec the spec
+   * @throws IOException if the spec cannot be read
+   */
+  public ParameterSweep(File spec) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new FileReader(spec))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        int separator = line.indexOf('=');
+        if (separator < 0) {
+          throw new IllegalArgumentException("Invalid sweep spec line " + line);
+        }
+        this.parse(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+      }
+    }
+    if (this.latinHypercube && this.pointCount < 1) {
+      throw new IllegalArgumentException("A Latin hypercube design needs a positive points count");
+    }
+    if (!this.latinHypercube && !this.ranges.isEmpty()) {
+      throw new IllegalArgumentException("Ranges need the lhs design: " + this.ranges);
+    }
+  }
+
+  /**
+   * Parses a line of the spec.
+   *
+   * @param key   the key
+   * @param value the value
+   */
+  private void parse(String key, String value) {
+    switch (key) {
+      case "design":
+        if (!value.equals("grid") && !value.equals("lhs")) {
+          throw new IllegalArgumentException("Unknown sweep design " + value);
+        }
+        this.latinHypercube = value.equals("lhs");
+        break;
+      case "points":
+        this.pointCount = Integer.parseInt(value);
+        break;
+      case "replications":
+        this.replicationCount = Integer.parseInt(value);
+        if (this.replicationCount < 1) {
+          throw new IllegalArgumentException("The replication count must be positive");
+        }
+        break;
+      default:
+        // Fails for unknown names
+        new SimulationParameters().get(key);
+        int range = value.indexOf("..");
+        if (range >= 0) {
+          this.values.put(key, new String[]{
+              value.substring(0, range).trim(), value.substring(range + 2).trim()});
+          this.ranges.add(key);
+        } else {
+          String[] list = value.split(",");
+          for (int i = 0; i < list.length; i++) {
+            list[i] = list[i].trim();
+          }
+          this.values.put(key, list);
+        }
+    }
+  }
+
+  /**
+   * Generates the points of the design. A design without varied parameters has a single point
+   * with the default parameters.
+   *
+   * @param random the random number generator of a Latin hypercube sample
+   * @return the points
+   */
+  public List<SimulationParameters> getPoints(Random random) {
+    List<SimulationParameters> points = new ArrayList<>();
+    if (this.latinHypercube) {
+      List<int[]> strata = new ArrayList<>();
+      for (int j = 0; j < this.values.size(); j++) {
+        strata.add(permutation(this.pointCount, random));
+      }
+      for (int i = 0; i < this.pointCount; i++) {
+        SimulationParameters point = new SimulationParameters();
+        int j = 0;
+        for (Map.Entry<String, String[]> entry : this.values.entrySet()) {
+          // A uniform position within the stratum of the point
+          double u = (strata.get(j++)[i] + random.nextDouble()) / this.pointCount;
+          String[] values = entry.getValue();
+          if (this.ranges.contains(entry.getKey())) {
+            double min = Double.parseDouble(values[0]);
+            double max = Double.parseDouble(values[1]);
+            point.set(entry.getKey(), String.valueOf(min + u * (max - min)));
+          } else {
+            point.set(entry.getKey(), values[(int) (u * values.length)]);
+          }
+        }
+        points.add(point);
+      }
+    } else {
+      points.add(new SimulationParameters());
+      for (Map.Entry<String, String[]> entry : this.values.entrySet()) {
+        List<SimulationParameters> combinations = new ArrayList<>();
+        for (SimulationParameters point : points) {
+          for (String value : entry.getValue()) {
+            SimulationParameters combination = point.copy();
+            combination.set(entry.getKey(), value);
+            combinations.add(combination);
+          }
+        }
+        points = combinations;
+      }
+    }
+    return points;
+  }
+
+  /**
+   * Runs all replications of all points and writes the results table.
+   *
+   * @param threadCount the number of threads running simulations
+   * @param baseSeed    the seed from which the seeds of the replications and the design are drawn
+   */
+  public void run(int threadCount, long baseSeed) {
+    final long start = System.currentTimeMillis();
+    List<SimulationParameters> points = this.getPoints(new Random(baseSeed));
+    long[] seeds = ReplicationRunner.drawSeeds(baseSeed, this.replicationCount);
+    URI sweepUri = Main.OUT_FILE_URI.resolve("./sweep/");
+
+    List<Callable<String>> runs = new ArrayList<>();
+    for (int p = 0; p < points.size(); p++) {
+      for (int r = 0; r < this.replicationCount; r++) {
+        final String prefix = p + "," + r + "," + seeds[r];
+        final SimulationParameters point = points.get(p);
+        final long seed = seeds[r];
+        final URI outputUri = sweepUri.resolve("./" + p + "/" + r + "/");
+        runs.add(() -> {
+          long runStart = System.currentTimeMillis();
+          SimulationResult result = ReplicationRunner.runReplication(seed, outputUri, point);
+          long time = System.currentTimeMillis() - runStart;
+          return prefix + "," + toCsv(point, result, time);
+        });
+      }
+    }
+
+    List<String> lines = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      for (Future<String> future : executor.invokeAll(runs)) {
+        lines.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    try (PrintWriter csv = new PrintWriter(new BufferedWriter(
+        new FileWriter(new File(sweepUri.resolve("./results.csv")))))) {
+      StringBuilder header = new StringBuilder("point,replication,seed");
+      for (String name : SimulationParameters.NAMES) {
+        header.append(',').append(name);
+      }
+      header.append(",block_height,stale_blocks,average_orphans");
+      for (double percentile : SimulationResult.PROPAGATION_PERCENTILES) {
+        header.append(",propagation_p").append(Math.round(percentile * 100));
+      }
+      csv.println(header.append(",executed_tasks,time_ms,tasks_per_s"));
+      for (String line : lines) {
+        csv.println(line);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    System.out.println(
+        points.size() + " points, " + runs.size() + " runs on " + threadCount + " threads in "
+            + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * Formats the parameters and the result of a run as CSV.
+   *
+   * @param point  the parameters
+   * @param result the result
+   * @param time   the run time in milliseconds
+   * @return the CSV fields
+   */
+  private static String toCsv(SimulationParameters point, SimulationResult result, long time) {
+    StringBuilder line = new StringBuilder();
+    for (String name : SimulationParameters.NAMES) {
+      line.append(point.get(name)).append(',');
+    }
+    line.append(result.getBlockHeight())
+        .append(',').append(result.getStaleBlockCount())
+        .append(',').append(result.getAverageOrphanCount());
+    result.appendPropagationPercentiles(line);
+    return line.append(',').append(result.getExecutedTaskCount())
+        .append(',').append(time)
+        .append(',').append(result.getExecutedTaskCount() * 1000 / Math.max(time, 1))
+        .toString();
+  }
+
+  /**
+   * Draws a random permutation of the numbers below the count.
+   *
+   * @param count  the count
+   * @param random the random number generator
+   * @return the permutation
+   */
+  private static int[] permutation(int count, Random random) {
+    int[] permutation = new int[count];
+    Arrays.setAll(permutation, i -> i);
+    for (int i = count - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = swap;
+    }
+    return permutation;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.util.Arrays;
+
+/**
+ * The type Propagation histogram counts propagation times in logarithmic buckets that are
+ * subdivided linearly, like an HdrHistogram. Times below {@link #SUB_BUCKET_COUNT} milliseconds
+ * are counted exactly, larger times with a relative error below 1 %.
+ * The histogram needs a few kilobytes regardless of the number of recorded times, and histograms
+ * can be merged, e.g. the histograms of single blocks into the histogram of all blocks.
+ */
+public class PropagationHistogram {
+  /**
+   * The number of linear sub-buckets of the smallest bucket.
+   */
+  static final int SUB_BUCKET_COUNT = 1 << 8;
+
+  /**
+   * The number of sub-buckets added by every larger bucket.
+   */
+  private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+  /**
+   * The number of bits of the largest time counted by the smallest bucket.
+   */
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKET_COUNT);
+
+  /**
+   * The counts of the sub-buckets, grown to the largest recorded time.
+   */
+  private long[] counts = new long[SUB_BUCKET_COUNT];
+
+  /**
+   * The number of recorded times.
+   */
+  private long count = 0;
+
+  /**
+   * The largest recorded time.
+   */
+  private long max = 0;
+
+  /**
+   * Records a propagation time.
+   *
+   * @param time the propagation time in milliseconds, negative times are counted as 0
+   */
+  public void record(long time) {
+    time = Math.max(time, 0);
+    int index = getIndex(time);
+    if (index >= this.counts.length) {
+      this.counts = Arrays.copyOf(this.counts, Math.max(index + 1, this.counts.length * 2));
+    }
+    this.counts[index]++;
+    this.count++;
+    this.max = Math.max(this.max, time);
+  }
+
+  /**
+   * Adds the recorded times of another histogram.
+   *
+   * @param other the other histogram
+   */
+  public void merge(PropagationHistogram other) {
+    if (other.counts.length > this.counts.length) {
+      this.counts = Arrays.copyOf(this.counts, other.counts.length);
+    }
+    for (int i = 0; i < other.counts.length; i++) {
+      this.counts[i] += other.counts[i];
+    }
+    this.count += other.count;
+    this.max = Math.max(this.max, other.max);
+  }
+
+  /**
+   * Removes all recorded times.
+   */
+  public void clear() {
+    Arrays.fill(this.counts, 0);
+    this.count = 0;
+    this.max = 0;
+  }
+
+  /**
+   * Gets the number of recorded times.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Gets the largest recorded time.
+   *
+   * @return the largest time in milliseconds
+   */
+  public long getMax() {
+    return this.max;
+  }
+
+  /**
+   * Gets the nearest rank percentile of the recorded times, rounded up to the largest time of its
+   * sub-bucket.
+   *
+   * @param percentile the percentile between 0 and 1
+   * @return the time in milliseconds, -1 if no time was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (this.count == 0) {
+      return -1;
+    }
+    long rank = Math.max((long) Math.ceil(percentile * this.count), 1);
+    long seen = 0;
+    for (int i = 0; i < this.counts.length; i++) {
+      seen += this.counts[i];
+      if (seen >= rank) {
+        return Math.min(getHighestValue(i), this.max);
+      }
+    }
+    return this.max;
+  }
+
+  /**
+   * Gets the sub-bucket of a time.
+   *
+   * @param time the time
+   * @return the index of the sub-bucket
+   */
+  private static int getIndex(long time) {
+    if (time < SUB_BUCKET_COUNT) {
+      return (int) time;
+    }
+    int shift = 64 - Long.numberOfLeadingZeros(time) - SUB_BUCKET_BITS;
+    return shift * HALF_COUNT + (int) (time >>> shift);
+  }
+
+  /**
+   * Gets the largest time counted by a sub-bucket.
+   *
+   * @param index the index of the sub-bucket
+   * @return the time
+   */
+  private static long getHighestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / HALF_COUNT - 1;
+    return ((long) (index - shift * HALF_COUNT + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import simblock.block.Block;
+
+/**
+ * The type Propagation recorder keeps the propagation of the most recently observed blocks and
+ * writes the propagation of the blocks leaving the window. For every block, a summary is written
+ * to <em>propagation_summary.csv</em> in the format:
+ *
+ * <p><em>block_ID, block_height, arrivals, p50, p90, p100</em>
+ *
+ * <p>where <em>p50</em>, <em>p90</em> and <em>p100</em> are percentiles of the propagation times
+ * of the block, taken from a {@link PropagationHistogram}. If the arrival times are kept, they are
+ * also written to <em>propagation.csv</em> in the format:
+ *
+ * <p><em>block_ID, block_height, node_ID, propagation_time</em>
+ *
+ * <p><em>propagation_time</em>: The time from when the block of the block ID is generated to when
+ * the node of the <em>node_ID</em> is reached.
+ *
+ * <p>The arrival times of a block are kept in a dense array indexed by node id - 1, and the
+ * blocks are found by their id in an open addressing hash index. The arrays and histograms of
+ * evicted blocks are reused, so recording an arrival does not allocate. The histograms of the
+ * evicted blocks are merged into the histogram of all blocks.
+ */
+public class PropagationRecorder {
+  /**
+   * The percentiles of the propagation times of a block that are written to the summary.
+   */
+  private static final double[] SUMMARY_PERCENTILES = {0.5, 0.9, 1.0};
+
+  /**
+   * The number of characters formatted before they are written.
+   */
+  private static final int BATCH_SIZE = 1 << 16;
+
+  /**
+   * The arrival time of a node that has not seen the block.
+   */
+  private static final long NOT_ARRIVED = -1;
+
+  /**
+   * The observed blocks in the order they were first seen, starting at the head.
+   */
+  private final Block[] blocks;
+
+  /**
+   * The propagation times of the observed blocks, indexed by node id - 1, null if the arrival
+   * times are not kept.
+   */
+  private final long[][] arrivals;
+
+  /**
+   * The histograms of the propagation times of the observed blocks.
+   */
+  private final PropagationHistogram[] histograms;
+
+  /**
+   * The histogram of the propagation times of all evicted blocks.
+   */
+  private final PropagationHistogram total = new PropagationHistogram();
+
+  /**
+   * The slot of the oldest observed block.
+   */
+  private int head = 0;
+
+  /**
+   * The number of observed blocks.
+   */
+  private int count = 0;
+
+  /**
+   * The block ids of the hash index, -1 for free entries.
+   */
+  private final int[] indexKeys;
+
+  /**
+   * The slots of the blocks in the hash index.
+   */
+  private final int[] indexSlots;
+
+  /**
+   * The formatted summaries not written yet.
+   */
+  private final StringBuilder summaryBatch = new StringBuilder(BATCH_SIZE + 256);
+
+  /**
+   * The writer of the summaries.
+   */
+  private final Writer summaryOut;
+
+  /**
+   * The formatted arrival times not written yet.
+   */
+  private final StringBuilder arrivalBatch = new StringBuilder(BATCH_SIZE + 256);
+
+  /**
+   * The writer of the arrival times, null if the arrival times are not kept.
+   */
+  private final Writer arrivalOut;
+
+  /**
+   * Instantiates a new Propagation recorder and writes the CSV headers.
+   *
+   * @param summaryOut the writer of the summaries
+   * @param arrivalOut the writer of the arrival times, null to keep no arrival times
+   * @param window     the maximum number of blocks whose propagation is kept, at least 1
+   * @throws IllegalArgumentException if the window is smaller than 1
+   */
+  public PropagationRecorder(Writer summaryOut, Writer arrivalOut, int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("The propagation window must be positive: " + window);
+    }
+    this.summaryOut = summaryOut;
+    this.arrivalOut = arrivalOut;
+    this.blocks = new Block[window];
+    this.arrivals = arrivalOut == null ? null : new long[window][];
+    this.histograms = new PropagationHistogram[window];
+    for (int i = 0; i < window; i++) {
+      this.histograms[i] = new PropagationHistogram();
+    }
+    int capacity = Integer.highestOneBit(window * 4 - 1) << 1;
+    this.indexKeys = new int[capacity];
+    this.indexSlots = new int[capacity];
+    Arrays.fill(this.indexKeys, -1);
+    this.summaryBatch.append("block_id,block_height,arrivals,p50,p90,p100\n");
+    this.arrivalBatch.append("block_id,block_height,node_id,propagation_time\n");
+  }
+
+  /**
+   * Records the propagation time of the block to the node. A block not observed yet evicts the
+   * oldest observed block if the window is full.
+   *
+   * @param block           the block
+   * @param nodeID          the node id
+   * @param propagationTime the propagation time in milliseconds
+   * @param numOfNodes      the number of simulated nodes
+   */
+  public void record(Block block, int nodeID, long propagationTime, int numOfNodes) {
+    int slot = this.find(block.getId());
+    if (slot < 0) {
+      if (this.count == this.blocks.length) {
+        this.evict();
+      }
+      slot = (this.head + this.count++) % this.blocks.length;
+      this.blocks[slot] = block;
+      this.insert(block.getId(), slot);
+    }
+    this.histograms[slot].record(propagationTime);
+    if (this.arrivals == null) {
+      return;
+    }
+    long[] times = this.arrivals[slot];
+    if (times == null || times.length < nodeID) {
+      long[] grown = new long[Math.max(numOfNodes, nodeID)];
+      Arrays.fill(grown, NOT_ARRIVED);
+      if (times != null) {
+        System.arraycopy(times, 0, grown, 0, times.length);
+      }
+      times = this.arrivals[slot] = grown;
+    }
+    times[nodeID - 1] = propagationTime;
+  }
+
+  /**
+   * Gets the histogram of the propagation times of all blocks that left the window. After
+   * {@link #close()}, these are all blocks.
+   *
+   * @return the histogram
+   */
+  public PropagationHistogram getTotal() {
+    return this.total;
+  }
+
+  /**
+   * Writes the propagation of all observed blocks and closes the underlying writers.
+   *
+   * @throws IOException if the propagation cannot be written
+   */
+  public void close() throws IOException {
+    while (this.count > 0) {
+      this.evict();
+    }
+    this.summaryOut.append(this.summaryBatch);
+    this.summaryOut.close();
+    if (this.arrivalOut != null) {
+      this.arrivalOut.append(this.arrivalBatch);
+      this.arrivalOut.close();
+    }
+  }
+
+  /**
+   * Removes the oldest observed block and formats its propagation.
+   */
+  private void evict() {
+    Block block = this.blocks[this.head];
+    PropagationHistogram histogram = this.histograms[this.head];
+    this.summaryBatch.append(block.getId()).append(',').append(block.getHeight()).append(',')
+        .append(histogram.getCount());
+    for (double percentile : SUMMARY_PERCENTILES) {
+      this.summaryBatch.append(',').append(histogram.getValueAtPercentile(percentile));
+    }
+    this.summaryBatch.append('\n');
+    this.total.merge(histogram);
+    histogram.clear();
+    if (this.arrivals != null) {
+      long[] times = this.arrivals[this.head];
+      for (int i = 0; i < times.length; i++) {
+        if (times[i] != NOT_ARRIVED) {
+          this.arrivalBatch.append(block.getId()).append(',').append(block.getHeight())
+              .append(',').append(i + 1).append(',').append(times[i]).append('\n');
+          times[i] = NOT_ARRIVED;
+        }
+      }
+    }
+    this.remove(block.getId());
+    this.blocks[this.head] = null;
+    this.head = (this.head + 1) % this.blocks.length;
+    this.count--;
+    try {
+      if (this.summaryBatch.length() >= BATCH_SIZE) {
+        this.summaryOut.append(this.summaryBatch);
+        this.summaryBatch.setLength(0);
+      }
+      if (this.arrivalBatch.length() >= BATCH_SIZE) {
+        this.arrivalOut.append(this.arrivalBatch);
+        this.arrivalBatch.setLength(0);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Finds the slot of the block in the hash index.
+   *
+   * @param blockID the block id
+   * @return the slot, -1 if the block is not observed
+   */
+  private int find(int blockID) {
+    int mask = this.indexKeys.length - 1;
+    for (int i = hash(blockID) & mask; this.indexKeys[i] != -1; i = (i + 1) & mask) {
+      if (this.indexKeys[i] == blockID) {
+        return this.indexSlots[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the block to the hash index.
+   *
+   * @param blockID the block id
+   * @param slot    the slot of the block
+   */
+  private void insert(int blockID, int slot) {
+    int mask = this.indexKeys.length - 1;
+    int i = hash(blockID) & mask;
+    while (this.indexKeys[i] != -1) {
+      i = (i + 1) & mask;
+    }
+    this.indexKeys[i] = blockID;
+    this.indexSlots[i] = slot;
+  }
+
+  /**
+   * Removes the block from the hash index, moving back the entries of its probe sequence.
+   *
+   * @param blockID the block id
+   */
+  private void remove(int blockID) {
+    int mask = this.indexKeys.length - 1;
+    int i = hash(blockID) & mask;
+    while (this.indexKeys[i] != blockID) {
+      i = (i + 1) & mask;
+    }
+    for (int j = (i + 1) & mask; this.indexKeys[j] != -1; j = (j + 1) & mask) {
+      int home = hash(this.indexKeys[j]) & mask;
+      // Move the entry back unless its home lies cyclically in (i, j]
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+        this.indexKeys[i] = this.indexKeys[j];
+        this.indexSlots[i] = this.indexSlots[j];
+        i = j;
+      }
+    }
+    this.indexKeys[i] = -1;
+  }
+
+  /**
+   * Spreads the bits of the block id.
+   *
+   * @param blockID the block id
+   * @return the hash
+   */
+  private static int hash(int blockID) {
+    int h = blockID * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
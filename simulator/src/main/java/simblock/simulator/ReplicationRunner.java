@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToDoubleFunction;
+import simblock.settings.SimulationParameters;
+
+/**
+ * The type Replication runner runs independent replications of the simulation on a thread pool
+ * and aggregates their results. Every replication has its own {@link SimulationContext} with a
+ * seed drawn from a base seed, so the replications and their summary are reproducible regardless
+ * of the number of threads.
+ *
+ * <p>The output of replication <em>i</em> is written to <em>output/replications/i/</em>, where
+ * the text output goes to <em>log.txt</em>. The results of all replications are written to
+ * <em>output/replications/summary.csv</em> and the mean of every figure with its 95% confidence
+ * interval is printed.
+ */
+public class ReplicationRunner {
+  /**
+   * The two sided 97.5% quantiles of the Student's t distribution for 1 to 30 degrees of freedom.
+   */
+  private static final double[] T_QUANTILES = {
+      12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+      2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+      2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+  };
+
+  /**
+   * The 97.5% quantile of the standard normal distribution, used beyond 30 degrees of freedom.
+   */
+  private static final double Z_QUANTILE = 1.960;
+
+  /**
+   * The number of replications.
+   */
+  private final int replicationCount;
+
+  /**
+   * The number of threads running replications.
+   */
+  private final int threadCount;
+
+  /**
+   * The seeds of the replications.
+   */
+  private final long[] seeds;
+
+  /**
+   * Instantiates a new Replication runner.
+   *
+   * @param replicationCount the number of replications
+   * @param threadCount      the number of threads running replications
+   * @param baseSeed         the seed from which the seeds of the replications are drawn
+   */
+  public ReplicationRunner(int replicationCount, int threadCount, long baseSeed) {
+    if (replicationCount < 1 || threadCount < 1) {
+      throw new IllegalArgumentException("The replication and thread counts must be positive");
+    }
+    this.replicationCount = replicationCount;
+    this.threadCount = threadCount;
+    this.seeds = drawSeeds(baseSeed, replicationCount);
+  }
+
+  /**
+   * Draws the seeds of replications from a base seed.
+   *
+   * @param baseSeed         the base seed
+   * @param replicationCount the number of replications
+   * @return the seeds
+   */
+  static long[] drawSeeds(long baseSeed, int replicationCount) {
+    long[] seeds = new long[replicationCount];
+    SplittableRandom seedRandom = new SplittableRandom(baseSeed);
+    for (int i = 0; i < replicationCount; i++) {
+      seeds[i] = seedRandom.nextLong();
+    }
+    return seeds;
+  }
+
+  /**
+   * Runs all replications, writes their results and prints the summary.
+   *
+   * @return the results in the order of the replications
+   */
+  public List<SimulationResult> run() {
+    final long start = System.currentTimeMillis();
+    URI replicationsUri = Main.OUT_FILE_URI.resolve("./replications/");
+    List<Callable<SimulationResult>> replications = new ArrayList<>();
+    for (int i = 0; i < this.replicationCount; i++) {
+      final long seed = this.seeds[i];
+      final URI outputUri = replicationsUri.resolve("./" + i + "/");
+      replications.add(() -> runReplication(seed, outputUri, new SimulationParameters()));
+    }
+
+    List<SimulationResult> results = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(this.threadCount);
+    try {
+      for (Future<SimulationResult> future : executor.invokeAll(replications)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+
+    writeResults(results, replicationsUri);
+    printSummary(results);
+    System.out.println(
+        this.replicationCount + " replications on " + this.threadCount + " threads in "
+            + (System.currentTimeMillis() - start) + " ms");
+    return results;
+  }
+
+  /**
+   * Runs a single replication in a new context bound to the calling thread.
+   *
+   * @param seed       the simulation seed
+   * @param outputUri  the output directory of the replication
+   * @param parameters the configuration values of the replication
+   * @return the result of the replication
+   * @throws IOException if the output directory or the log cannot be created
+   */
+  static SimulationResult runReplication(
+      long seed, URI outputUri, SimulationParameters parameters) throws IOException {
+    Files.createDirectories(Paths.get(outputUri.resolve("./graph/")));
+    try (PrintStream log = new PrintStream(
+        new FileOutputStream(new File(outputUri.resolve("./log.txt"))), false, "UTF-8")) {
+      SimulationContext context = new SimulationContext(seed, outputUri, parameters);
+      context.setLog(log);
+      SimulationContext.setCurrent(context);
+      return Main.simulate(context);
+    }
+  }
+
+  /**
+   * Writes the results of all replications as CSV.
+   *
+   * @param results         the results
+   * @param replicationsUri the directory of the replications
+   */
+  private static void writeResults(List<SimulationResult> results, URI replicationsUri) {
+    try (PrintWriter csv = new PrintWriter(new BufferedWriter(
+        new FileWriter(new File(replicationsUri.resolve("./summary.csv")))))) {
+      StringBuilder header = new StringBuilder(
+          "replication,seed,block_height,stale_blocks,average_orphans");
+      for (double percentile : SimulationResult.PROPAGATION_PERCENTILES) {
+        header.append(",propagation_p").append(Math.round(percentile * 100));
+      }
+      csv.println(header.append(",executed_tasks"));
+      for (int i = 0; i < results.size(); i++) {
+        SimulationResult result = results.get(i);
+        StringBuilder line = new StringBuilder();
+        line.append(i).append(',').append(result.getSeed())
+            .append(',').append(result.getBlockHeight())
+            .append(',').append(result.getStaleBlockCount())
+            .append(',').append(result.getAverageOrphanCount());
+        result.appendPropagationPercentiles(line);
+        csv.println(line.append(',').append(result.getExecutedTaskCount()));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Prints the mean, the 95% confidence interval, the minimum, the maximum and the number of
+   * aggregated replications of every figure. Replications without a value of the figure, like
+   * the propagation times if no block arrived, are left out.
+   *
+   * @param results the results
+   */
+  private static void printSummary(List<SimulationResult> results) {
+    System.out.println("figure,mean,ci95,min,max,count");
+    printStatistic("stale_blocks", results, SimulationResult::getStaleBlockCount);
+    printStatistic("average_orphans", results, SimulationResult::getAverageOrphanCount);
+    for (int i = 0; i < SimulationResult.PROPAGATION_PERCENTILES.length; i++) {
+      final int index = i;
+      printStatistic(
+          "propagation_p" + Math.round(SimulationResult.PROPAGATION_PERCENTILES[i] * 100),
+          results, result -> result.getPropagationPercentile(index));
+    }
+  }
+
+  /**
+   * Prints the statistic of a figure over all replications.
+   *
+   * @param name    the name of the figure
+   * @param results the results
+   * @param figure  the function extracting the figure from a result
+   */
+  private static void printStatistic(
+      String name, List<SimulationResult> results, ToDoubleFunction<SimulationResult> figure) {
+    Statistic statistic = new Statistic();
+    for (SimulationResult result : results) {
+      statistic.add(figure.applyAsDouble(result));
+    }
+    if (statistic.getCount() == 0) {
+      System.out.println(name + ",,,,,0");
+      return;
+    }
+    System.out.println(
+        name + "," + statistic.getMean() + "," + statistic.getConfidenceHalfWidth() + ","
+            + statistic.getMin() + "," + statistic.getMax() + "," + statistic.getCount());
+  }
+
+  /**
+   * The type Statistic accumulates the mean and the variance of a figure with Welford's
+   * algorithm. Missing values, given as NaN, are ignored.
+   */
+  private static class Statistic {
+    private long count = 0;
+    private double mean = 0;
+    private double squaredDeviations = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+      if (Double.isNaN(value)) {
+        return;
+      }
+      this.count++;
+      double delta = value - this.mean;
+      this.mean += delta / this.count;
+      this.squaredDeviations += delta * (value - this.mean);
+      this.min = Math.min(this.min, value);
+      this.max = Math.max(this.max, value);
+    }
+
+    long getCount() {
+      return this.count;
+    }
+
+    double getMean() {
+      return this.mean;
+    }
+
+    double getMin() {
+      return this.min;
+    }
+
+    double getMax() {
+      return this.max;
+    }
+
+    /**
+     * Gets the half width of the 95% confidence interval of the mean.
+     *
+     * @return the half width, 0 for a single value
+     */
+    double getConfidenceHalfWidth() {
+      if (this.count < 2) {
+        return 0;
+      }
+      long degrees = this.count - 1;
+      double quantile = degrees <= T_QUANTILES.length ? T_QUANTILES[(int) degrees - 1]
+          : Z_QUANTILE;
+      return quantile * Math.sqrt(this.squaredDeviations / degrees / this.count);
+    }
+  }
+}
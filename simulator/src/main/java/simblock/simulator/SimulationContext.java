@@ -0,0 +1,512 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import simblock.block.Block;
+import simblock.block.BlockTable;
+import simblock.node.Node;
+import simblock.node.consensus.BlockWinnerSampler;
+import simblock.node.consensus.StakeWinnerSampler;
+import simblock.settings.SimulationParameters;
+import simblock.task.Task;
+
+/**
+ * The type Simulation context owns the state of one simulation: the Future Event List (FEL) of
+ * the main {@link LogicalProcess}, the simulated nodes, the random number generator, the block
+ * table, the observed block propagations, the recent blocks and the output files.
+ * Independent simulations in the same JVM use separate contexts.
+ *
+ * <p>Nodes keep the context they were created in, blocks and tasks reach it through their nodes.
+ * The static facades {@link Timer} and {@link Simulator} refer to the context bound to the
+ * calling thread with {@link #setCurrent(SimulationContext)}.
+ */
+public class SimulationContext {
+  /**
+   * The context bound to the calling thread.
+   */
+  private static final ThreadLocal<SimulationContext> current = new ThreadLocal<>();
+
+  /**
+   * The logical process used by the sequential simulation and during the setup.
+   */
+  private final LogicalProcess mainProcess = new LogicalProcess();
+
+  /**
+   * The simulation seed.
+   */
+  private final long seed;
+
+  /**
+   * The random number generator used during the setup and by the global samplers.
+   */
+  private final Random random;
+
+  /**
+   * The configuration values of the simulation.
+   */
+  private final SimulationParameters parameters;
+
+  /**
+   * The output directory.
+   */
+  private final URI outputUri;
+
+  /**
+   * The output writer of the simulation events.
+   */
+  private TraceWriter trace;
+
+  /**
+   * The output writer of the static network information.
+   */
+  private PrintWriter staticJsonFile;
+
+  /**
+   * The log of the network topology.
+   */
+  private final TopologyLog topologyLog;
+
+  /**
+   * The stream the text output of the simulation is printed to.
+   */
+  private PrintStream log = System.out;
+
+  /**
+   * A list of nodes that will be used in a simulation.
+   */
+  private final ArrayList<Node> simulatedNodes = new ArrayList<>();
+
+  /**
+   * The target block interval in milliseconds.
+   */
+  private long targetInterval;
+
+  /**
+   * The table of all blocks, which allocates their ids.
+   */
+  private final BlockTable blockTable = new BlockTable();
+
+  /**
+   * The current block height, the simulation stops at END_BLOCK_HEIGHT.
+   */
+  private int currentBlockHeight = 1;
+
+  /**
+   * The index of all adopted blocks.
+   */
+  private final BlockTree blockTree = new BlockTree(this.blockTable);
+
+  /**
+   * The store of the blocks of the most recent heights.
+   */
+  private BlockStore blockStore;
+
+  /**
+   * The recorder of the propagation times of the most recently observed blocks.
+   */
+  private PropagationRecorder propagationRecorder;
+
+  /**
+   * The global sampler of Proof of Work mining, created on first use.
+   */
+  private BlockWinnerSampler blockWinnerSampler = null;
+
+  /**
+   * The global sampler of Proof of Stake staking, created on first use.
+   */
+  private StakeWinnerSampler stakeWinnerSampler = null;
+
+  /**
+   * Instantiates a new Simulation context with the default parameters and opens its output files.
+   *
+   * @param seed      the simulation seed
+   * @param outputUri the output directory, which has to exist
+   */
+  public SimulationContext(long seed, URI outputUri) {
+    this(seed, outputUri, new SimulationParameters());
+  }
+
+  /**
+   * Instantiates a new Simulation context and opens its output files.
+   *
+   * @param seed       the simulation seed
+   * @param outputUri  the output directory, which has to exist
+   * @param parameters the configuration values of the simulation
+   */
+  public SimulationContext(long seed, URI outputUri, SimulationParameters parameters) {
+    this.seed = seed;
+    this.parameters = parameters;
+    this.random = new Random(seed);
+    this.outputUri = outputUri;
+    this.topologyLog = new TopologyLog(this);
+    TraceLevel level = TraceLevel.valueOf(parameters.getTraceLevel().toUpperCase(Locale.ROOT));
+    try {
+      TraceSink sink;
+      if (parameters.getTraceFormat().equals("segmented")) {
+        URI traceUri = outputUri.resolve("./trace/");
+        Files.createDirectories(Paths.get(traceUri));
+        sink = new MappedSegmentTraceSink(traceUri, parameters.getTraceSegmentSize());
+      } else if (parameters.getTraceFormat().equals("binary")) {
+        sink = new BinaryTraceSink(FileChannel.open(
+            Paths.get(outputUri.resolve("./output.bin")), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+      } else {
+        sink = new JsonTraceSink(
+            new BufferedWriter(new FileWriter(new File(outputUri.resolve("./output.json")))));
+      }
+      this.trace = new TraceWriter(
+          sink, level, parameters.getTraceSampledRegions(), parameters.getTraceNodeSamplingRate());
+      this.propagationRecorder = new PropagationRecorder(
+          new BufferedWriter(
+              new FileWriter(new File(outputUri.resolve("./propagation_summary.csv")))),
+          parameters.isPropagationArrivalTimes() ? new BufferedWriter(
+              new FileWriter(new File(outputUri.resolve("./propagation.csv")))) : null,
+          parameters.getPropagationWindow());
+      this.blockStore = new BlockStore(
+          new BufferedWriter(new FileWriter(new File(outputUri.resolve("./block_archive.csv")))),
+          parameters.getBlockStoreDepth(), this.blockTree);
+      this.staticJsonFile = new PrintWriter(
+          new BufferedWriter(new FileWriter(new File(outputUri.resolve("./static.json")))));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Gets the context bound to the calling thread.
+   *
+   * @return the context, null if none is bound
+   */
+  public static SimulationContext getCurrent() {
+    return current.get();
+  }
+
+  /**
+   * Binds the context to the calling thread, together with its main logical process.
+   *
+   * @param context the context
+   */
+  public static void setCurrent(SimulationContext context) {
+    current.set(context);
+    Timer.setCurrentProcess(context.getMainProcess());
+  }
+
+  /**
+   * Gets the logical process used by the sequential simulation and during the setup.
+   *
+   * @return the main logical process
+   */
+  LogicalProcess getMainProcess() {
+    return this.mainProcess;
+  }
+
+  /**
+   * Gets the current time of the logical process running the calling thread, the main logical
+   * process unless an engine runs the logical processes of this context in parallel.
+   *
+   * @return the current time in milliseconds
+   */
+  public long getCurrentTime() {
+    return Timer.getCurrentProcess().getCurrentTime();
+  }
+
+  /**
+   * Schedules the task on the logical process running the calling thread, to be executed at the
+   * current time incremented by the task duration.
+   *
+   * @param task the task
+   */
+  public void putTask(Task task) {
+    LogicalProcess process = Timer.getCurrentProcess();
+    process.put(task, process.getCurrentTime() + task.getInterval());
+  }
+
+  /**
+   * Removes the task from the execution queue of the logical process running the calling thread,
+   * see {@link Timer#removeTask(Task)}.
+   *
+   * @param task the task to be removed
+   */
+  public void removeTask(Task task) {
+    Timer.getCurrentProcess().remove(task);
+  }
+
+  /**
+   * Runs the action changing state shared by all nodes, or defers it until the engine runs the
+   * actions of all logical processes in the order of their tasks.
+   *
+   * @param action the action
+   */
+  public void runInTaskOrder(Runnable action) {
+    Timer.runInTaskOrder(action);
+  }
+
+  /**
+   * Gets the simulation seed.
+   *
+   * @return the seed
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Gets the random number generator used during the setup and by the global samplers.
+   *
+   * @return the random number generator
+   */
+  public Random getRandom() {
+    return this.random;
+  }
+
+  /**
+   * Gets the configuration values of the simulation.
+   *
+   * @return the parameters
+   */
+  public SimulationParameters getParameters() {
+    return this.parameters;
+  }
+
+  /**
+   * Gets the output directory.
+   *
+   * @return the output directory
+   */
+  public URI getOutputUri() {
+    return this.outputUri;
+  }
+
+  /**
+   * Gets the output writer of the simulation events.
+   *
+   * @return the writer
+   */
+  public TraceWriter getTrace() {
+    return this.trace;
+  }
+
+  /**
+   * Gets the output writer of the static network information.
+   *
+   * @return the writer
+   */
+  public PrintWriter getStaticJsonFile() {
+    return this.staticJsonFile;
+  }
+
+  /**
+   * Gets the log of the network topology.
+   *
+   * @return the topology log
+   */
+  public TopologyLog getTopologyLog() {
+    return this.topologyLog;
+  }
+
+  /**
+   * Gets the stream the text output of the simulation is printed to.
+   *
+   * @return the stream, {@link System#out} by default
+   */
+  public PrintStream getLog() {
+    return this.log;
+  }
+
+  /**
+   * Sets the stream the text output of the simulation is printed to.
+   *
+   * @param log the stream
+   */
+  public void setLog(PrintStream log) {
+    this.log = log;
+  }
+
+  /**
+   * Get simulated nodes list.
+   *
+   * @return the array list
+   */
+  public ArrayList<Node> getSimulatedNodes() {
+    return this.simulatedNodes;
+  }
+
+  /**
+   * Get target block interval.
+   *
+   * @return the target block interval in milliseconds
+   */
+  public long getTargetInterval() {
+    return this.targetInterval;
+  }
+
+  /**
+   * Sets the target block interval.
+   *
+   * @param interval - block interval in milliseconds
+   */
+  public void setTargetInterval(long interval) {
+    this.targetInterval = interval;
+  }
+
+  /**
+   * Gets the table of all blocks.
+   *
+   * @return the block table
+   */
+  public BlockTable getBlockTable() {
+    return this.blockTable;
+  }
+
+  /**
+   * Gets the current block height.
+   *
+   * @return the current block height
+   */
+  public int getCurrentBlockHeight() {
+    return this.currentBlockHeight;
+  }
+
+  /**
+   * Sets the current block height.
+   *
+   * @param currentBlockHeight the current block height
+   */
+  public void setCurrentBlockHeight(int currentBlockHeight) {
+    this.currentBlockHeight = currentBlockHeight;
+  }
+
+  /**
+   * Gets the global sampler of Proof of Work mining.
+   *
+   * @return the sampler
+   */
+  public BlockWinnerSampler getBlockWinnerSampler() {
+    if (this.blockWinnerSampler == null) {
+      this.blockWinnerSampler = new BlockWinnerSampler(this);
+    }
+    return this.blockWinnerSampler;
+  }
+
+  /**
+   * Gets the global sampler of Proof of Stake staking.
+   *
+   * @return the sampler
+   */
+  public StakeWinnerSampler getStakeWinnerSampler() {
+    if (this.stakeWinnerSampler == null) {
+      this.stakeWinnerSampler = new StakeWinnerSampler(this);
+    }
+    return this.stakeWinnerSampler;
+  }
+
+  /**
+   * Gets the histogram of the propagation times of all block arrivals, which is complete once
+   * the propagation of all blocks is written by {@link #printAllPropagation()}.
+   *
+   * @return the histogram
+   */
+  public PropagationHistogram getPropagationHistogram() {
+    return this.propagationRecorder.getTotal();
+  }
+
+  /**
+   * Gets the index of all adopted blocks.
+   *
+   * @return the block tree
+   */
+  public BlockTree getBlockTree() {
+    return this.blockTree;
+  }
+
+  /**
+   * Records that the node adopted the block, replacing its previous block.
+   *
+   * @param block    the adopted block
+   * @param previous the previous block of the node, may be null
+   */
+  public void adoptBlock(Block block, Block previous) {
+    // The block tree and the block store are shared by all nodes
+    this.runInTaskOrder(() -> {
+      if (this.blockTree.adopt(block, previous)) {
+        this.blockStore.add(block);
+      }
+    });
+  }
+
+  /**
+   * Handle the arrival of a new block. For every observed block, propagation information is
+   * updated, and for a new block propagation information is created.
+   *
+   * @param block the block
+   * @param node  the node
+   */
+  public void arriveBlock(Block block, Node node) {
+    int nodeID = node.getNodeID();
+    long propagationTime = this.getCurrentTime() - block.getTime();
+    // The observed blocks are shared by all nodes
+    this.runInTaskOrder(() -> this.recordArrival(block, nodeID, propagationTime));
+  }
+
+  /**
+   * Records the propagation time of the block to the node.
+   *
+   * @param block           the block
+   * @param nodeID          the node id
+   * @param propagationTime the propagation time in milliseconds
+   */
+  private void recordArrival(Block block, int nodeID, long propagationTime) {
+    this.propagationRecorder.record(block, nodeID, propagationTime, this.simulatedNodes.size());
+  }
+
+  /**
+   * Writes the propagation of all blocks still observed and closes the propagation output.
+   */
+  public void printAllPropagation() {
+    try {
+      this.propagationRecorder.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Archives all blocks still kept by the block store and closes the block archive. The blocks
+   * lose their ancestors afterwards.
+   */
+  public void archiveAllBlocks() {
+    try {
+      this.blockStore.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+/**
+ * The type Simulation result holds the figures of one simulation run that are aggregated over
+ * replications by the {@link ReplicationRunner}.
+ */
+public class SimulationResult {
+  /**
+   * The percentiles of the block propagation times that are reported.
+   */
+  public static final double[] PROPAGATION_PERCENTILES = {0.5, 0.9, 0.99};
+
+  /**
+   * The simulation seed.
+   */
+  private final long seed;
+
+  /**
+   * The height of the chain of the first simulated node.
+   */
+  private final int blockHeight;
+
+  /**
+   * The number of stale blocks, i.e. blocks not in the chain of any node.
+   */
+  private final int staleBlockCount;
+
+  /**
+   * The average number of orphans per node.
+   */
+  private final double averageOrphanCount;
+
+  /**
+   * The propagation times at {@link #PROPAGATION_PERCENTILES}, null if no block arrived.
+   */
+  private final long[] propagationPercentiles;
+
+  /**
+   * The number of executed tasks.
+   */
+  private final long executedTaskCount;
+
+  /**
+   * Instantiates a new Simulation result.
+   *
+   * @param seed                   the simulation seed
+   * @param blockHeight            the height of the chain of the first simulated node
+   * @param staleBlockCount        the number of stale blocks
+   * @param averageOrphanCount     the average number of orphans per node
+   * @param propagationPercentiles the propagation times at {@link #PROPAGATION_PERCENTILES}, may
+   *                               be null
+   * @param executedTaskCount      the number of executed tasks
+   */
+  public SimulationResult(
+      long seed, int blockHeight, int staleBlockCount, double averageOrphanCount,
+      long[] propagationPercentiles, long executedTaskCount) {
+    this.seed = seed;
+    this.blockHeight = blockHeight;
+    this.staleBlockCount = staleBlockCount;
+    this.averageOrphanCount = averageOrphanCount;
+    this.propagationPercentiles = propagationPercentiles;
+    this.executedTaskCount = executedTaskCount;
+  }
+
+  /**
+   * Gets the nearest rank {@link #PROPAGATION_PERCENTILES} of the propagation times.
+   *
+   * @param histogram the histogram of the propagation times
+   * @return the percentiles, null if there are no propagation times
+   */
+  public static long[] getPercentiles(PropagationHistogram histogram) {
+    if (histogram.getCount() == 0) {
+      return null;
+    }
+    long[] percentiles = new long[PROPAGATION_PERCENTILES.length];
+    for (int i = 0; i < percentiles.length; i++) {
+      percentiles[i] = histogram.getValueAtPercentile(PROPAGATION_PERCENTILES[i]);
+    }
+    return percentiles;
+  }
+
+  /**
+   * Gets the simulation seed.
+   *
+   * @return the seed
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Gets the height of the chain of the first simulated node.
+   *
+   * @return the block height
+   */
+  public int getBlockHeight() {
+    return this.blockHeight;
+  }
+
+  /**
+   * Gets the number of stale blocks.
+   *
+   * @return the stale block count
+   */
+  public int getStaleBlockCount() {
+    return this.staleBlockCount;
+  }
+
+  /**
+   * Gets the average number of orphans per node.
+   *
+   * @return the average orphan count
+   */
+  public double getAverageOrphanCount() {
+    return this.averageOrphanCount;
+  }
+
+  /**
+   * Gets the propagation time at the percentile {@link #PROPAGATION_PERCENTILES}[index].
+   *
+   * @param index the index of the percentile
+   * @return the propagation time in milliseconds, NaN if no block arrived
+   */
+  public double getPropagationPercentile(int index) {
+    return this.propagationPercentiles == null ? Double.NaN : this.propagationPercentiles[index];
+  }
+
+  /**
+   * Appends the propagation times at all {@link #PROPAGATION_PERCENTILES} as CSV fields, which
+   * are empty if no block arrived.
+   *
+   * @param line the CSV line
+   */
+  public void appendPropagationPercentiles(StringBuilder line) {
+    for (int i = 0; i < PROPAGATION_PERCENTILES.length; i++) {
+      line.append(',');
+      if (this.propagationPercentiles != null) {
+        line.append(this.propagationPercentiles[i]);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of executed tasks.
+   *
+   * @return the executed task count
+   */
+  public long getExecutedTaskCount() {
+    return this.executedTaskCount;
+  }
+}
@@ -16,11 +16,7 @@
 
 package simblock.simulator;
 
-import static simblock.simulator.Timer.getCurrentTime;
-
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import simblock.block.Block;
 import simblock.node.Node;
 
@@ -28,26 +24,18 @@ import simblock.node.Node;
 /**
  * The type Simulator is tasked with maintaining the list of simulated nodes and managing the
  * block interval. It observes and manages the arrival of new blocks at the simulation level.
+ *
+ * <p>The state belongs to the {@link SimulationContext} bound to the calling thread.
  */
 public class Simulator {
 
-  /**
-   * A list of nodes that will be used in a simulation.
-   */
-  private static final ArrayList<Node> simulatedNodes = new ArrayList<>();
-
-  /**
-   * The target block interval in milliseconds.
-   */
-  private static long targetInterval;
-
   /**
    * Get simulated nodes list.
    *
    * @return the array list
    */
   public static ArrayList<Node> getSimulatedNodes() {
-    return simulatedNodes;
+    return SimulationContext.getCurrent().getSimulatedNodes();
   }
 
   /**
@@ -56,7 +44,7 @@ public class Simulator {
    * @return the target block interval in milliseconds
    */
   public static long getTargetInterval() {
-    return targetInterval;
+    return SimulationContext.getCurrent().getTargetInterval();
   }
 
   /**
@@ -65,7 +53,7 @@ public class Simulator {
    * @param interval - block interval in milliseconds
    */
   public static void setTargetInterval(long interval) {
-    targetInterval = interval;
+    SimulationContext.getCurrent().setTargetInterval(interval);
   }
 
   /**
@@ -74,7 +62,7 @@ public class Simulator {
    * @param node the node
    */
   public static void addNode(Node node) {
-    simulatedNodes.add(node);
+    getSimulatedNodes().add(node);
   }
 
   /**
@@ -84,7 +72,7 @@ public class Simulator {
    */
   @SuppressWarnings("unused")
   public static void removeNode(Node node) {
-    simulatedNodes.remove(node);
+    getSimulatedNodes().remove(node);
   }
 
   /**
@@ -98,26 +86,11 @@ public class Simulator {
   public static void addNodeWithConnection(Node node) {
     node.joinNetwork();
     addNode(node);
-    for (Node existingNode : simulatedNodes) {
+    for (Node existingNode : getSimulatedNodes()) {
       existingNode.addNeighbor(node);
     }
   }
 
-  /**
-   * A list of observed {@link Block} instances.
-   */
-  private static final ArrayList<Block> observedBlocks = new ArrayList<>();
-
-  /**
-   * A list of observed block propagation times. The map key represents the id of the node that
-   * has seen the
-   * block, the value represents the difference between the current time and the block minting
-   * time, effectively
-   * recording the absolute time it took for a node to witness the block.
-   */
-  private static final ArrayList<LinkedHashMap<Integer, Long>> observedPropagations =
-      new ArrayList<>();
-
   /**
    * Handle the arrival of a new block. For every observed block, propagation information is
    * updated, and for a new
@@ -127,63 +100,14 @@ public class Simulator {
    * @param node  the node
    */
   public static void arriveBlock(Block block, Node node) {
-    // If block is already seen by any node
-    if (observedBlocks.contains(block)) {
-      // Get the propagation information for the current block
-      LinkedHashMap<Integer, Long> propagation = observedPropagations.get(
-          observedBlocks.indexOf(block)
-      );
-      // Update information for the new block
-      propagation.put(node.getNodeID(), getCurrentTime() - block.getTime());
-    } else {
-      // If the block has not been seen by any node and there is no memory allocated
-      //TODO move magic number to constant
-      if (observedBlocks.size() > 10) {
-        // After the observed blocks limit is reached, log and remove old blocks by FIFO principle
-        printPropagation(observedBlocks.get(0), observedPropagations.get(0));
-        observedBlocks.remove(0);
-        observedPropagations.remove(0);
-      }
-      // If the block has not been seen by any node and there is additional memory
-      LinkedHashMap<Integer, Long> propagation = new LinkedHashMap<>();
-      propagation.put(node.getNodeID(), getCurrentTime() - block.getTime());
-      // Record the block as seen
-      observedBlocks.add(block);
-      // Record the propagation time
-      observedPropagations.add(propagation);
-    }
-  }
-
-  /**
-   * Print propagation information about the propagation of the provided block  in the format:
-   *
-   * <p><em>node_ID, propagation_time</em>
-   *
-   * <p><em>propagation_time</em>: The time from when the block of the block ID is generated to
-   * when the
-   * node of the <em>node_ID</em> is reached.
-   *
-   * @param block       the block
-   * @param propagation the propagation of the provided block as a list of {@link Node} IDs and
-   *                    propagation times
-   */
-  public static void printPropagation(Block block, LinkedHashMap<Integer, Long> propagation) {
-    // Print block and its height
-    //TODO block does not have a toString method, what is printed here
-    System.out.println(block + ":" + block.getHeight());
-    for (Map.Entry<Integer, Long> timeEntry : propagation.entrySet()) {
-      System.out.println(timeEntry.getKey() + "," + timeEntry.getValue());
-    }
-    System.out.println();
+    node.getContext().arriveBlock(block, node);
   }
 
   /**
-   * Print propagation information about all blocks, internally relying on
-   * {@link Simulator#printPropagation(Block, LinkedHashMap)}.
+   * Writes the propagation of all blocks still observed to the propagation output of the current
+   * simulation, see {@link PropagationRecorder}.
    */
   public static void printAllPropagation() {
-    for (int i = 0; i < observedBlocks.size(); i++) {
-      printPropagation(observedBlocks.get(i), observedPropagations.get(i));
-    }
+    SimulationContext.getCurrent().printAllPropagation();
   }
 }
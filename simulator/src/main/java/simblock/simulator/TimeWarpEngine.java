@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.TIME_WARP_WINDOW;
+import static simblock.simulator.ConservativeEngine.getEarliestProcess;
+import static simblock.simulator.ConservativeEngine.runSerially;
+import static simblock.simulator.ConservativeEngine.runWindow;
+import static simblock.simulator.ConservativeEngine.writeOutputs;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import simblock.node.Node;
+import simblock.task.AbstractMintingTask;
+import simblock.task.Task;
+
+/**
+ * The type Time warp engine runs the simulation optimistically on several threads, one
+ * {@link LogicalProcess} per partition of the nodes, and produces the same results as the
+ * sequential simulation.
+ *
+ * <p>The small latencies within a region limit the windows of the {@link ConservativeEngine}.
+ * Here the logical processes run all their tasks up to the Global Virtual Time (GVT) plus a fixed
+ * window in parallel, without waiting for the tasks of other partitions. Tasks scheduled for other
+ * partitions are delivered between the windows. A logical process that has already run a task
+ * after a delivered task rolls back: the changes of the node state are undone with the
+ * {@link UndoLog}, tasks scheduled for its own partition are removed and tasks scheduled for other
+ * partitions are cancelled by anti-messages, which may roll back further logical processes.
+ *
+ * <p>Once all tasks and anti-messages are delivered the GVT is the earliest scheduled task of all
+ * logical processes. Tasks before the GVT are committed, their deferred output is written and the
+ * memory to roll them back is freed. Minting tasks are only run at the GVT, one at a time, and
+ * when the simulation ends all logical processes roll back to the task ending it.
+ */
+public class TimeWarpEngine {
+  /**
+   * The simulation run by the engine.
+   */
+  private final SimulationContext context;
+
+  /**
+   * The logical processes.
+   */
+  private final LogicalProcess[] processes;
+
+  /**
+   * Maps a node to the logical process simulating it.
+   */
+  private final Function<Node, LogicalProcess> ownerProcesses;
+
+  /**
+   * Instantiates a new Time warp engine. Nodes are assigned to the logical processes round robin
+   * by id.
+   *
+   * @param context      the simulation
+   * @param processCount the number of logical processes
+   */
+  public TimeWarpEngine(SimulationContext context, int processCount) {
+    this.context = context;
+    this.processes = new LogicalProcess[Math.max(1, processCount)];
+    for (int i = 0; i < this.processes.length; i++) {
+      this.processes[i] = new LogicalProcess();
+    }
+    this.ownerProcesses = node -> this.processes[node.getNodeID() % this.processes.length];
+  }
+
+  /**
+   * Gets the number of logical processes.
+   *
+   * @return the number of logical processes
+   */
+  public int getProcessCount() {
+    return this.processes.length;
+  }
+
+  /**
+   * Runs the scheduled tasks until no task is left or a minting task is rejected by the filter,
+   * like the sequential simulation loop in {@link Main}.
+   *
+   * @param mintingFilter tests a minting task before it is run, the simulation ends if it fails
+   */
+  public void run(Predicate<AbstractMintingTask> mintingFilter) {
+    LogicalProcess mainProcess = this.context.getMainProcess();
+    mainProcess.transferTo(this.ownerProcesses);
+    for (LogicalProcess process : this.processes) {
+      process.startPartition(this.ownerProcesses, true);
+    }
+    for (Node node : this.context.getSimulatedNodes()) {
+      node.setUndoLog(this.ownerProcesses.apply(node).getUndoLog());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(this.processes.length);
+    long endTime = Long.MAX_VALUE;
+    long endOrder = Long.MAX_VALUE;
+    try {
+      while (true) {
+        this.deliverAll();
+        LogicalProcess next = getEarliestProcess(this.processes);
+        if (next == null) {
+          break;
+        }
+        long time = next.peekTime();
+        long order = next.peekOrder();
+        writeOutputs(this.processes, time, order);
+        for (LogicalProcess process : this.processes) {
+          process.commit(time, order);
+        }
+        Task task = next.peek();
+
+        if (task instanceof AbstractMintingTask) {
+          if (!mintingFilter.test((AbstractMintingTask) task)) {
+            endTime = time;
+            endOrder = order;
+            break;
+          }
+          runSerially(this.context, next);
+        } else {
+          runWindow(executor, this.context, this.processes, time + TIME_WARP_WINDOW);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Undo everything the sequential simulation would not have run
+    for (LogicalProcess process : this.processes) {
+      process.rollback(endTime, endOrder);
+    }
+    this.deliverAll();
+    writeOutputs(this.processes, endTime, endOrder);
+
+    long currentTime = 0L;
+    for (LogicalProcess process : this.processes) {
+      process.discardDeferredOutputs();
+      currentTime = Math.max(currentTime, process.getCurrentTime());
+      mainProcess.addCounters(process);
+    }
+    mainProcess.setCurrentTime(currentTime);
+    for (Node node : this.context.getSimulatedNodes()) {
+      node.setUndoLog(null);
+    }
+  }
+
+  /**
+   * Delivers tasks and anti-messages until no logical process has any left to deliver.
+   */
+  private void deliverAll() {
+    boolean delivered = true;
+    while (delivered) {
+      delivered = false;
+      for (LogicalProcess process : this.processes) {
+        delivered |= process.deliverOutbox();
+      }
+    }
+  }
+}
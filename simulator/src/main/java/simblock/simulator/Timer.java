@@ -16,9 +16,6 @@
 
 package simblock.simulator;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.PriorityQueue;
 import simblock.task.Task;
 
 
@@ -26,110 +23,63 @@ import simblock.task.Task;
  * The type Timer schedules the execution of simulation tasks stored in a Future Event List (FEL)
  * . Each {@link Task}
  * can be scheduled for execution. Tasks that have been run get removed from the FEL.
+ *
+ * <p>The FEL and the simulation time belong to the {@link LogicalProcess} of the calling thread,
+ * by default the main logical process of its {@link SimulationContext}.
+ * The sequential simulation uses a single logical process, the {@link ConservativeEngine} and the
+ * {@link TimeWarpEngine} run one logical process per partition.
  */
 public class Timer {
 
   /**
-   * A sorted queue of scheduled tasks.
+   * The logical process of the calling thread.
    */
-  private static final PriorityQueue<ScheduledTask> taskQueue = new PriorityQueue<>();
+  private static final ThreadLocal<LogicalProcess> currentProcess = new ThreadLocal<>();
 
   /**
-   * A map containing a mapping of all tasks to their ScheduledTask counterparts. When
-   * executed, the key - value
-   * pair is to be removed from the mapping.
+   * Gets the logical process used by the sequential simulation and during the setup.
+   *
+   * @return the main logical process of the context of the calling thread
    */
-  //TODO a bit redundant since Task is again stored in ScheduledTask. Is there a better approach?
-  private static final Map<Task, ScheduledTask> taskMap = new HashMap<>();
+  static LogicalProcess getMainProcess() {
+    return SimulationContext.getCurrent().getMainProcess();
+  }
+
   /**
-   * Initial simulation time in milliseconds.
+   * Gets the logical process of the calling thread.
+   *
+   * @return the logical process
    */
-  //TODO is it milliseconds?
-  private static long currentTime = 0L;
+  static LogicalProcess getCurrentProcess() {
+    return currentProcess.get();
+  }
 
   /**
-   * Represents a {@link Task} that is scheduled to be executed.
+   * Sets the logical process of the calling thread.
+   *
+   * @param process the logical process
    */
-  private static class ScheduledTask implements Comparable<ScheduledTask> {
-    private final Task task;
-    private final long scheduledTime;
-
-    /**
-     * Instantiates a new ScheduledTask.
-     *
-     * @param task          - the task to be executed
-     * @param scheduledTime - the simulation time at which the task is to be executed
-     */
-    private ScheduledTask(Task task, long scheduledTime) {
-      this.task = task;
-      this.scheduledTime = scheduledTime;
-    }
-
-    /**
-     * Gets the task.
-     *
-     * @return the {@link Task} instance
-     */
-    private Task getTask() {
-      return this.task;
-    }
-
-    /**
-     * Gets the scheduled time at which the task is to be executed.
-     *
-     * @return the scheduled time
-     */
-    private long getScheduledTime() {
-      return this.scheduledTime;
-    }
-
-    /**
-     * Compares the two scheduled tasks.
-     *
-     * @param o other task
-     * @return 1 if self is executed later, 0 if concurrent and -1 if self is to be executed before.
-     */
-    public int compareTo(ScheduledTask o) {
-      if (this.equals(o)) {
-        return 0;
-      }
-      int order = Long.signum(this.scheduledTime - o.scheduledTime);
-      if (order != 0) {
-        return order;
-      }
-      order = System.identityHashCode(this) - System.identityHashCode(o);
-      return order;
-    }
+  static void setCurrentProcess(LogicalProcess process) {
+    currentProcess.set(process);
   }
 
   /**
-   * Runs a {@link ScheduledTask}.
+   * Runs the next scheduled {@link Task}.
    */
   public static void runTask() {
-    // If there are any tasks
-    if (taskQueue.size() > 0) {
-      // Get the next ScheduledTask
-      ScheduledTask currentScheduledTask = taskQueue.poll();
-      Task currentTask = currentScheduledTask.getTask();
-      currentTime = currentScheduledTask.getScheduledTime();
-      // Remove the task from the mapping of all tasks
-      taskMap.remove(currentTask, currentScheduledTask);
-      // Execute
-      currentTask.run();
-    }
+    getCurrentProcess().runNext();
   }
 
   /**
-   * Remove task from the mapping of all tasks and from the execution queue.
+   * Remove task from the execution queue. If {@link
+   * simblock.settings.SimulationConfiguration#LAZY_MINTING_CANCELLATION} is set, a scheduled
+   * {@link simblock.task.AbstractMintingTask} is only marked as cancelled and stays in the queue
+   * as a tombstone until it reaches the head of the queue or the queue is compacted.
    *
    * @param task the task to be removed
    */
   public static void removeTask(Task task) {
-    if (taskMap.containsKey(task)) {
-      ScheduledTask scheduledTask = taskMap.get(task);
-      taskQueue.remove(scheduledTask);
-      taskMap.remove(task, scheduledTask);
-    }
+    getCurrentProcess().remove(task);
   }
 
   /**
@@ -138,12 +88,7 @@ public class Timer {
    * @return the task from the queue or null if task queue is empty.
    */
   public static Task getTask() {
-    if (taskQueue.size() > 0) {
-      ScheduledTask currentTask = taskQueue.peek();
-      return currentTask.getTask();
-    } else {
-      return null;
-    }
+    return getCurrentProcess().peek();
   }
 
   /**
@@ -152,9 +97,8 @@ public class Timer {
    * @param task the task
    */
   public static void putTask(Task task) {
-    ScheduledTask scheduledTask = new ScheduledTask(task, currentTime + task.getInterval());
-    taskMap.put(task, scheduledTask);
-    taskQueue.add(scheduledTask);
+    LogicalProcess process = getCurrentProcess();
+    process.put(task, process.getCurrentTime() + task.getInterval());
   }
 
   /**
@@ -165,9 +109,58 @@ public class Timer {
    */
   @SuppressWarnings("unused")
   public static void putTaskAbsoluteTime(Task task, long time) {
-    ScheduledTask scheduledTask = new ScheduledTask(task, time);
-    taskMap.put(task, scheduledTask);
-    taskQueue.add(scheduledTask);
+    getCurrentProcess().put(task, time);
+  }
+
+  /**
+   * Runs the action changing state shared by all nodes, or defers it until the engine runs the
+   * actions of all logical processes in the order of their tasks.
+   *
+   * @param action the action
+   */
+  public static void runInTaskOrder(Runnable action) {
+    LogicalProcess process = getCurrentProcess();
+    if (process.isDeferring()) {
+      process.deferAction(action);
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Gets the number of tasks run so far.
+   *
+   * @return the number of executed tasks
+   */
+  public static long getExecutedTaskCount() {
+    return getMainProcess().getExecutedTaskCount();
+  }
+
+  /**
+   * Gets the number of tombstones skipped at the head of the queue so far.
+   *
+   * @return the number of skipped tombstones
+   */
+  public static long getSkippedTombstoneCount() {
+    return getMainProcess().getSkippedTombstoneCount();
+  }
+
+  /**
+   * Gets the number of tombstones removed by compacting the queue so far.
+   *
+   * @return the number of compacted tombstones
+   */
+  public static long getCompactedTombstoneCount() {
+    return getMainProcess().getCompactedTombstoneCount();
+  }
+
+  /**
+   * Gets the number of tasks rolled back by the {@link TimeWarpEngine} so far.
+   *
+   * @return the number of rolled back tasks
+   */
+  public static long getRolledBackTaskCount() {
+    return getMainProcess().getRolledBackTaskCount();
   }
 
   /**
@@ -176,6 +169,6 @@ public class Timer {
    * @return the time
    */
   public static long getCurrentTime() {
-    return currentTime;
+    return getCurrentProcess().getCurrentTime();
   }
 }
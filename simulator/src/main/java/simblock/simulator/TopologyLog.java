@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.List;
+import simblock.node.Node;
+
+/**
+ * The type Topology log records the network topology in the graph directory as a full
+ * checkpoint followed by the changes of the links. A checkpoint <em>graph/${height}.txt</em> is
+ * written at the first logged block height and every {@link
+ * simblock.settings.SimulationParameters#getGraphCheckpointInterval()} block heights. Afterwards
+ * the routing tables report every added and removed link, which is appended to
+ * <em>graph/delta.txt</em> together with a mark for every block height. The graph at a block
+ * height can be rebuilt from the nearest checkpoint below with {@link TopologyReader}.
+ *
+ * <p>The lines of <em>delta.txt</em> are:
+ * <ul>
+ *   <li><em>+ nodeID_1 nodeID_2</em>: a connection from nodeID_1 to nodeID_2 is added</li>
+ *   <li><em>- nodeID_1 nodeID_2</em>: the connection from nodeID_1 to nodeID_2 is removed</li>
+ *   <li><em>@ height</em>: the simulation reached the block height</li>
+ * </ul>
+ */
+public class TopologyLog {
+  /**
+   * The number of characters formatted before they are written.
+   */
+  private static final int BATCH_SIZE = 1 << 16;
+
+  /**
+   * The simulation whose topology is logged.
+   */
+  private final SimulationContext context;
+
+  /**
+   * The graph directory.
+   */
+  private final URI graphUri;
+
+  /**
+   * The number of block heights between two full checkpoints.
+   */
+  private final int checkpointInterval;
+
+  /**
+   * The writer of the changes, null until the first checkpoint is written.
+   */
+  private Writer deltaFile = null;
+
+  /**
+   * The formatted changes not written yet.
+   */
+  private final StringBuilder deltaBatch = new StringBuilder(BATCH_SIZE + 64);
+
+  /**
+   * Instantiates a new Topology log.
+   *
+   * @param context the simulation, whose output directory has to contain the graph directory
+   */
+  public TopologyLog(SimulationContext context) {
+    this.context = context;
+    this.graphUri = context.getOutputUri().resolve("./graph/");
+    this.checkpointInterval = context.getParameters().getGraphCheckpointInterval();
+  }
+
+  /**
+   * Records an added connection. Connections added before the first checkpoint are part of it.
+   *
+   * @param from the node the connection starts from
+   * @param to   the node the connection ends at
+   */
+  public void addLink(Node from, Node to) {
+    if (this.deltaFile != null) {
+      this.put('+', from.getNodeID(), to.getNodeID());
+    }
+  }
+
+  /**
+   * Records a removed connection.
+   *
+   * @param from the node the connection starts from
+   * @param to   the node the connection ends at
+   */
+  public void removeLink(Node from, Node to) {
+    if (this.deltaFile != null) {
+      this.put('-', from.getNodeID(), to.getNodeID());
+    }
+  }
+
+  /**
+   * Marks that the simulation reached the block height, and writes a checkpoint if this is the
+   * first mark or the block height is a multiple of the checkpoint interval.
+   *
+   * @param blockHeight the current block height
+   * @param nodes       the simulated nodes
+   */
+  public void mark(int blockHeight, List<Node> nodes) {
+    if (this.deltaFile == null || blockHeight % this.checkpointInterval == 0) {
+      this.writeCheckpoint(blockHeight, nodes);
+    }
+    this.context.runInTaskOrder(() -> {
+      this.deltaBatch.append("@ ").append(blockHeight).append('\n');
+      this.flush(false);
+    });
+  }
+
+  /**
+   * Flushes and closes the change log.
+   */
+  public void close() {
+    if (this.deltaFile != null) {
+      this.flush(true);
+      try {
+        this.deltaFile.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Appends a change of a link to the change log in the order of the tasks.
+   *
+   * @param change the change, + or -
+   * @param from   the id of the node the connection starts from
+   * @param to     the id of the node the connection ends at
+   */
+  private void put(char change, int from, int to) {
+    this.context.runInTaskOrder(() -> {
+      this.deltaBatch.append(change).append(' ').append(from).append(' ').append(to)
+          .append('\n');
+      this.flush(false);
+    });
+  }
+
+  /**
+   * Writes the formatted changes once the batch is full.
+   *
+   * @param force whether to write the changes regardless of the batch size
+   */
+  private void flush(boolean force) {
+    if (force || this.deltaBatch.length() >= BATCH_SIZE) {
+      try {
+        this.deltaFile.append(this.deltaBatch);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      this.deltaBatch.setLength(0);
+    }
+  }
+
+  /**
+   * Network information when block height is <em>blockHeight</em>, in format:
+   *
+   * <p><em>nodeID_1</em>, <em>nodeID_2</em>
+   *
+   * <p>meaning there is a connection from nodeID_1 to right nodeID_1.
+   *
+   * @param blockHeight the index of the graph and the current block height
+   * @param nodes       the simulated nodes
+   */
+  private void writeCheckpoint(int blockHeight, List<Node> nodes) {
+    try {
+      if (this.deltaFile == null) {
+        this.deltaFile = new FileWriter(new File(this.graphUri.resolve("./delta.txt")), false);
+      }
+      PrintWriter pw = new PrintWriter(new BufferedWriter(
+          new FileWriter(new File(this.graphUri.resolve("./" + blockHeight + ".txt")), false)));
+      for (Node node : nodes) {
+        for (Node neighbor : node.getNeighbors()) {
+          pw.println(node.getNodeID() + " " + neighbor.getNodeID());
+        }
+      }
+      pw.close();
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package simblock.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The type Topology reader rebuilds the network topology at a block height from the graph
+ * directory written by {@link TopologyLog}: the nearest checkpoint at or below the block height
+ * is read, and the changes logged between the two block heights are applied to it.
+ *
+ * <p>Usage: <em>TopologyReader graph height [output.txt]</em>. The graph is written in the format
+ * of the checkpoints, to the standard output if no output file is given. The connections of each
+ * node are sorted by node ID.
+ */
+public class TopologyReader {
+  /**
+   * The entry point of the reader.
+   *
+   * @param args the graph directory, the block height and the optional output file
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: TopologyReader graph height [output.txt]");
+      System.exit(1);
+    }
+    Map<Integer, SortedSet<Integer>> graph = rebuild(
+        Paths.get(args[0]), Integer.parseInt(args[1]));
+    try (PrintWriter pw = new PrintWriter(new BufferedWriter(args.length > 2
+        ? Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)
+        : new OutputStreamWriter(System.out, StandardCharsets.UTF_8)))) {
+      for (Map.Entry<Integer, SortedSet<Integer>> entry : graph.entrySet()) {
+        for (int neighbor : entry.getValue()) {
+          pw.println(entry.getKey() + " " + neighbor);
+        }
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the network topology at the block height.
+   *
+   * @param graphDir    the graph directory
+   * @param blockHeight the block height
+   * @return the neighbors of each node, indexed by node id
+   * @throws IOException if a file cannot be read, or the block height was not logged
+   */
+  public static Map<Integer, SortedSet<Integer>> rebuild(Path graphDir, int blockHeight)
+      throws IOException {
+    int checkpoint = -1;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(graphDir, "[0-9]*.txt")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        int height = Integer.parseInt(name.substring(0, name.length() - ".txt".length()));
+        if (height <= blockHeight && height > checkpoint) {
+          checkpoint = height;
+        }
+      }
+    }
+    if (checkpoint < 0) {
+      throw new IOException("No checkpoint at or below block height " + blockHeight);
+    }
+
+    Map<Integer, SortedSet<Integer>> graph = new TreeMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(
+        graphDir.resolve(checkpoint + ".txt"), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] ids = line.split(" ");
+        graph.computeIfAbsent(Integer.parseInt(ids[0]), k -> new TreeSet<>())
+            .add(Integer.parseInt(ids[1]));
+      }
+    }
+    if (checkpoint == blockHeight) {
+      return graph;
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(
+        graphDir.resolve("delta.txt"), StandardCharsets.UTF_8)) {
+      String checkpointMark = "@ " + checkpoint;
+      String line;
+      while ((line = reader.readLine()) != null && !line.equals(checkpointMark)) {
+        // Skip the changes before the checkpoint
+      }
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(" ");
+        if (fields[0].equals("@")) {
+          if (Integer.parseInt(fields[1]) == blockHeight) {
+            return graph;
+          }
+          continue;
+        }
+        int from = Integer.parseInt(fields[1]);
+        int to = Integer.parseInt(fields[2]);
+        if (fields[0].equals("+")) {
+          graph.computeIfAbsent(from, k -> new TreeSet<>()).add(to);
+          graph.computeIfAbsent(to, k -> new TreeSet<>()).add(from);
+        } else {
+          graph.get(from).remove(to);
+          graph.get(to).remove(from);
+        }
+      }
+    }
+    throw new IOException("Block height " + blockHeight + " was not logged");
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.simulator.TraceWriter.ADD_BLOCK;
+import static simblock.simulator.TraceWriter.ADD_NODE;
+import static simblock.simulator.TraceWriter.FLOW_BLOCK;
+import static simblock.simulator.TraceWriter.RECORD_SIZE;
+import static simblock.simulator.TraceWriter.SIMULATION_END;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The type Trace converter converts a binary trace to the JSON layout of output.json, streaming
+ * the records so that traces larger than the memory can be converted. The records can be
+ * filtered by block id, node id and time window, where a flow-block is timed by its reception.
+ * The end of the simulation is always kept, so the output stays valid JSON.
+ *
+ * <p>Usage: <em>TraceConverter input.bin [output.json] [--block id] [--node id] [--from ms]
+ * [--to ms]</em>. Without an output file the JSON is written to the standard output. If the input
+ * is the directory of a segmented trace, only the segments whose {@link TraceSegment} index
+ * matches the block id and time window are read.
+ */
+public class TraceConverter {
+  /**
+   * The block id to keep, -1 to keep all.
+   */
+  private long blockID = -1;
+
+  /**
+   * The node id to keep, -1 to keep all.
+   */
+  private long nodeID = -1;
+
+  /**
+   * The beginning of the time window in milliseconds.
+   */
+  private long fromTime = Long.MIN_VALUE;
+
+  /**
+   * The end of the time window in milliseconds.
+   */
+  private long toTime = Long.MAX_VALUE;
+
+  /**
+   * The entry point of the converter.
+   *
+   * @param args the input file, the optional output file and the filters
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    TraceConverter converter = new TraceConverter();
+    String input = null;
+    String output = null;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--block":
+          converter.blockID = Long.parseLong(args[++i]);
+          break;
+        case "--node":
+          converter.nodeID = Long.parseLong(args[++i]);
+          break;
+        case "--from":
+          converter.fromTime = Long.parseLong(args[++i]);
+          break;
+        case "--to":
+          converter.toTime = Long.parseLong(args[++i]);
+          break;
+        default:
+          if (input == null) {
+            input = args[i];
+          } else {
+            output = args[i];
+          }
+      }
+    }
+    if (input == null) {
+      System.err.println("Usage: TraceConverter input.bin [output.json] [--block id] "
+          + "[--node id] [--from ms] [--to ms]");
+      System.exit(1);
+    }
+
+    Writer out = new BufferedWriter(output == null
+        ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8) : new FileWriter(output));
+    TraceSink sink = new JsonTraceSink(out);
+    Path path = Paths.get(input);
+    if (Files.isDirectory(path)) {
+      List<TraceSegment> segments = TraceSegment.list(path);
+      for (int i = 0; i < segments.size(); i++) {
+        TraceSegment segment = segments.get(i);
+        // The last segment holds the end of the simulation
+        if (i == segments.size() - 1 || converter.mayAccept(segment)) {
+          try (BinaryTraceReader reader = segment.open()) {
+            converter.convert(reader, sink);
+          }
+        }
+      }
+    } else {
+      try (BinaryTraceReader reader = new BinaryTraceReader(path)) {
+        converter.convert(reader, sink);
+      }
+    }
+    sink.close();
+  }
+
+  /**
+   * Writes the records of the reader that pass the filters to the sink.
+   *
+   * @param reader the reader of the binary trace
+   * @param sink   the sink writing the records
+   * @throws IOException if a file cannot be read or written
+   */
+  void convert(BinaryTraceReader reader, TraceSink sink) throws IOException {
+    long[] record = new long[RECORD_SIZE];
+    while (reader.next(record)) {
+      if (this.accepts(record)) {
+        sink.write(record, 0);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the segment may have records passing the filters.
+   *
+   * @param segment the index of the segment
+   * @return false if no record of the segment passes the filters
+   */
+  private boolean mayAccept(TraceSegment segment) {
+    return segment.overlaps(this.fromTime, this.toTime)
+        && (this.blockID < 0 || segment.mayContainBlock(this.blockID));
+  }
+
+  /**
+   * Checks whether the record passes the filters.
+   *
+   * @param record the record
+   * @return true if the record is kept
+   */
+  private boolean accepts(long[] record) {
+    int kind = (int) record[0];
+    if (kind == SIMULATION_END) {
+      return true;
+    }
+    long time = record[kind == FLOW_BLOCK ? 2 : 1];
+    if (time < this.fromTime || time > this.toTime) {
+      return false;
+    }
+    if (this.blockID >= 0 && !(kind == ADD_BLOCK && record[4] == this.blockID
+        || kind == FLOW_BLOCK && record[5] == this.blockID)) {
+      return false;
+    }
+    // All kinds but the end of the simulation have a node id first, only some have a second one
+    return this.nodeID < 0 || record[3] == this.nodeID
+        || kind != ADD_BLOCK && kind != ADD_NODE && record[4] == this.nodeID;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+/**
+ * The enum Trace level selects the simulation events written by the {@link TraceWriter}. Every
+ * level includes the events of the levels before it, the end of the simulation is always written.
+ */
+public enum TraceLevel {
+  /**
+   * No events.
+   */
+  NONE,
+
+  /**
+   * Nodes joining the network and blocks added to the chains of nodes.
+   */
+  BLOCKS,
+
+  /**
+   * Links added and removed between nodes.
+   */
+  LINKS,
+
+  /**
+   * Block transmissions between nodes, limited to the sampled nodes.
+   */
+  FULL
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The type Trace segment is the index of a segment file written by {@link MappedSegmentTraceSink}.
+ * The index is stored in a footer at the end of the file, after the records: the position where
+ * the records end, the number of records, the range of their times and the range of their block
+ * ids, as longs, followed by the magic bytes <em>SBIX</em>. The times of flow-blocks are their
+ * reception times, the same as used by the filters of {@link TraceConverter}.
+ */
+public class TraceSegment {
+  /**
+   * The magic bytes at the end of a segment file.
+   */
+  private static final byte[] FOOTER_MAGIC = {'S', 'B', 'I', 'X'};
+
+  /**
+   * The number of bytes of the footer.
+   */
+  static final int FOOTER_SIZE = 6 * Long.BYTES + 4;
+
+  /**
+   * The path of the segment file.
+   */
+  private final Path path;
+
+  /**
+   * The position in the file where the records end.
+   */
+  private long recordsEnd = 0;
+
+  /**
+   * The number of records.
+   */
+  private long recordCount = 0;
+
+  /**
+   * The earliest time of a record.
+   */
+  private long minTime = Long.MAX_VALUE;
+
+  /**
+   * The latest time of a record.
+   */
+  private long maxTime = Long.MIN_VALUE;
+
+  /**
+   * The smallest block id of a record.
+   */
+  private long minBlockID = Long.MAX_VALUE;
+
+  /**
+   * The largest block id of a record.
+   */
+  private long maxBlockID = Long.MIN_VALUE;
+
+  /**
+   * Instantiates the index of a segment being written.
+   *
+   * @param path the path of the segment file
+   */
+  TraceSegment(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Reads the index of a segment file.
+   *
+   * @param path the path of the segment file
+   * @return the index
+   * @throws IOException if the file cannot be read or has no footer
+   */
+  public static TraceSegment read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+      long position = channel.size() - FOOTER_SIZE;
+      while (footer.hasRemaining() && position >= 0) {
+        if (channel.read(footer, position + footer.position()) < 0) {
+          break;
+        }
+      }
+      if (position < 0 || footer.hasRemaining()) {
+        throw new IOException("Not a trace segment: " + path);
+      }
+      footer.flip();
+      TraceSegment segment = new TraceSegment(path);
+      segment.recordsEnd = footer.getLong();
+      segment.recordCount = footer.getLong();
+      segment.minTime = footer.getLong();
+      segment.maxTime = footer.getLong();
+      segment.minBlockID = footer.getLong();
+      segment.maxBlockID = footer.getLong();
+      byte[] magic = new byte[FOOTER_MAGIC.length];
+      footer.get(magic);
+      if (!Arrays.equals(magic, FOOTER_MAGIC) || segment.recordsEnd != position) {
+        throw new IOException("Not a trace segment: " + path);
+      }
+      return segment;
+    }
+  }
+
+  /**
+   * Reads the indexes of all segment files in a directory, in the order of the segments.
+   *
+   * @param directory the directory
+   * @return the indexes
+   * @throws IOException if a file cannot be read
+   */
+  public static List<TraceSegment> list(Path directory) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.bin")) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    paths.sort(null);
+    List<TraceSegment> segments = new ArrayList<>();
+    for (Path path : paths) {
+      segments.add(read(path));
+    }
+    return segments;
+  }
+
+  /**
+   * Opens a reader of the records of the segment.
+   *
+   * @return the reader
+   * @throws IOException if the file cannot be read
+   */
+  public BinaryTraceReader open() throws IOException {
+    return new BinaryTraceReader(this.path, this.recordsEnd);
+  }
+
+  /**
+   * Checks whether the segment has records in the time window.
+   *
+   * @param fromTime the beginning of the time window in milliseconds
+   * @param toTime   the end of the time window in milliseconds
+   * @return true if the segment has records in the window
+   */
+  public boolean overlaps(long fromTime, long toTime) {
+    return this.minTime <= toTime && this.maxTime >= fromTime;
+  }
+
+  /**
+   * Checks whether the block id is within the range of block ids of the segment.
+   *
+   * @param blockID the block id
+   * @return true if the segment may have records of the block
+   */
+  public boolean mayContainBlock(long blockID) {
+    return this.minBlockID <= blockID && blockID <= this.maxBlockID;
+  }
+
+  /**
+   * Adds a record to the index of a segment being written.
+   *
+   * @param time    the time of the record
+   * @param blockID the block id of the record, -1 if it has none
+   */
+  void add(long time, long blockID) {
+    this.recordCount++;
+    this.minTime = Math.min(this.minTime, time);
+    this.maxTime = Math.max(this.maxTime, time);
+    if (blockID >= 0) {
+      this.minBlockID = Math.min(this.minBlockID, blockID);
+      this.maxBlockID = Math.max(this.maxBlockID, blockID);
+    }
+  }
+
+  /**
+   * Writes the footer after the records of a segment being written.
+   *
+   * @param buffer the buffer of the segment, positioned after the records
+   */
+  void writeFooter(ByteBuffer buffer) {
+    this.recordsEnd = buffer.position();
+    buffer.putLong(this.recordsEnd).putLong(this.recordCount)
+        .putLong(this.minTime).putLong(this.maxTime)
+        .putLong(this.minBlockID).putLong(this.maxBlockID)
+        .put(FOOTER_MAGIC);
+  }
+
+  /**
+   * Gets the path of the segment file.
+   *
+   * @return the path
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Gets the number of records.
+   *
+   * @return the record count
+   */
+  public long getRecordCount() {
+    return this.recordCount;
+  }
+
+  /**
+   * Gets the earliest time of a record.
+   *
+   * @return the time in milliseconds, Long.MAX_VALUE if there are no records
+   */
+  public long getMinTime() {
+    return this.minTime;
+  }
+
+  /**
+   * Gets the latest time of a record.
+   *
+   * @return the time in milliseconds, Long.MIN_VALUE if there are no records
+   */
+  public long getMaxTime() {
+    return this.maxTime;
+  }
+
+  /**
+   * Gets the smallest block id of a record.
+   *
+   * @return the block id, Long.MAX_VALUE if there are no records with a block id
+   */
+  public long getMinBlockID() {
+    return this.minBlockID;
+  }
+
+  /**
+   * Gets the largest block id of a record.
+   *
+   * @return the block id, Long.MIN_VALUE if there are no records with a block id
+   */
+  public long getMaxBlockID() {
+    return this.maxBlockID;
+  }
+}
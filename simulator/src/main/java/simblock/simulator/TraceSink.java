@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+
+/**
+ * The interface Trace sink encodes the records of the {@link TraceWriter} and writes them to the
+ * trace file. A record consists of {@link TraceWriter#RECORD_SIZE} longs: the kind, two
+ * timestamps and three ids, of which only the ones used by the kind are set.
+ */
+interface TraceSink {
+  /**
+   * Encodes a record. The record may be overwritten once the method returns.
+   *
+   * @param records the records
+   * @param offset  the offset of the record
+   * @throws IOException if the record cannot be written
+   */
+  void write(long[] records, int offset) throws IOException;
+
+  /**
+   * Writes the remaining records and closes the trace file.
+   *
+   * @throws IOException if the records cannot be written
+   */
+  void close() throws IOException;
+}
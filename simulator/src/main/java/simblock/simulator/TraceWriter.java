@@ -0,0 +1,348 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import simblock.node.Node;
+
+/**
+ * The type Trace writer writes the simulation events to the trace file. The events are put as
+ * fixed size records of longs on a single producer ring buffer, and a background thread passes
+ * them to a {@link TraceSink}, which encodes them as JSON (output.json) or in the binary trace
+ * format (output.bin) and writes them in large batches. Logging an event therefore neither builds
+ * strings nor flushes the file on the simulation thread.
+ *
+ * <p>Callers check with {@link #tracesBlocks()}, {@link #tracesLinks()} and {@link
+ * #tracesFlow(Node, Node)} whether an event is traced at the {@link TraceLevel} of the writer
+ * before they log it, so that an event which is not traced costs a single test.
+ *
+ * <p>While the {@link ConservativeEngine} or the {@link TimeWarpEngine} runs logical processes in
+ * parallel, the events are deferred by the logical process of the calling thread and put on the
+ * ring buffer by the engine in the order of the tasks, so that the output is the same as the
+ * output of the sequential simulation and the engine thread stays the only producer.
+ */
+public class TraceWriter {
+  /**
+   * The number of longs of a record: the kind, two timestamps and three ids.
+   */
+  static final int RECORD_SIZE = 6;
+
+  /**
+   * The number of records of the ring buffer, a power of two.
+   */
+  private static final int CAPACITY = 1 << 14;
+
+  /**
+   * The number of records after which the writer thread releases the records it has written.
+   */
+  private static final int RELEASE_INTERVAL = 1 << 10;
+
+  /**
+   * The time in nanoseconds the writer thread waits for new records.
+   */
+  private static final long IDLE_NANOS = 100_000;
+
+  static final int ADD_NODE = 0;
+  static final int ADD_LINK = 1;
+  static final int REMOVE_LINK = 2;
+  static final int ADD_BLOCK = 3;
+  static final int FLOW_BLOCK = 4;
+  static final int SIMULATION_END = 5;
+
+  /**
+   * The records of the ring buffer.
+   */
+  private final long[] records = new long[CAPACITY * RECORD_SIZE];
+
+  /**
+   * The number of records put on the ring buffer.
+   */
+  private final AtomicLong published = new AtomicLong();
+
+  /**
+   * The number of records written by the writer thread.
+   */
+  private final AtomicLong consumed = new AtomicLong();
+
+  /**
+   * The number of written records last seen by the producer.
+   */
+  private long consumedCache = 0;
+
+  /**
+   * Whether the simulation ended and no more records are put.
+   */
+  private volatile boolean closed = false;
+
+  /**
+   * The sink encoding and writing the records.
+   */
+  private final TraceSink sink;
+
+  /**
+   * The events written.
+   */
+  private final TraceLevel level;
+
+  /**
+   * The regions whose nodes have their block transmissions traced, all regions if empty.
+   */
+  private final int[] sampledRegions;
+
+  /**
+   * The rate of nodes of the sampled regions that have their block transmissions traced.
+   */
+  private final float samplingRate;
+
+  /**
+   * The writer thread.
+   */
+  private final Thread thread;
+
+  /**
+   * Instantiates a new Trace writer and starts its writer thread.
+   *
+   * @param sink           the sink encoding and writing the records
+   * @param level          the events written
+   * @param sampledRegions the regions whose nodes have their block transmissions traced, all
+   *                       regions if empty
+   * @param samplingRate   the rate of nodes of the sampled regions that have their block
+   *                       transmissions traced
+   */
+  TraceWriter(TraceSink sink, TraceLevel level, int[] sampledRegions, float samplingRate) {
+    this.sink = sink;
+    this.level = level;
+    this.sampledRegions = sampledRegions;
+    this.samplingRate = samplingRate;
+    this.thread = new Thread(this::drain, "simblock-trace");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Checks whether nodes joining the network and blocks added to chains are traced.
+   *
+   * @return true if the events are traced
+   */
+  public boolean tracesBlocks() {
+    return this.level.compareTo(TraceLevel.BLOCKS) >= 0;
+  }
+
+  /**
+   * Checks whether links added and removed between nodes are traced.
+   *
+   * @return true if the events are traced
+   */
+  public boolean tracesLinks() {
+    return this.level.compareTo(TraceLevel.LINKS) >= 0;
+  }
+
+  /**
+   * Checks whether a block transmission between the nodes is traced, which requires one of the
+   * nodes to be sampled.
+   *
+   * @param from the sender
+   * @param to   the receiver
+   * @return true if the transmission is traced
+   */
+  public boolean tracesFlow(Node from, Node to) {
+    return this.level == TraceLevel.FULL && (from.isTraceSampled() || to.isTraceSampled());
+  }
+
+  /**
+   * Decides whether the block transmissions of a node are traced. The decision only depends on
+   * the id and the region of the node, so the same nodes are sampled in every simulation.
+   *
+   * @param nodeID the node id
+   * @param region the region of the node
+   * @return true if the node is sampled
+   */
+  public boolean isSampled(int nodeID, int region) {
+    boolean sampledRegion = this.sampledRegions.length == 0;
+    for (int sampled : this.sampledRegions) {
+      sampledRegion |= sampled == region;
+    }
+    if (!sampledRegion) {
+      return false;
+    }
+    // The finalizer of SplitMix64 maps the id to a uniformly distributed position in [0, 1)
+    long hash = nodeID * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ hash >>> 30) * 0xBF58476D1CE4E5B9L;
+    hash = (hash ^ hash >>> 27) * 0x94D049BB133111EBL;
+    hash ^= hash >>> 31;
+    return (hash >>> 11) * 0x1.0p-53 < this.samplingRate;
+  }
+
+  /**
+   * Logs that a node joined the network.
+   *
+   * @param timestamp the time in milliseconds
+   * @param nodeID    the node id
+   * @param regionID  the region id
+   */
+  public void addNode(long timestamp, int nodeID, int regionID) {
+    this.put(ADD_NODE, timestamp, 0, nodeID, regionID, 0);
+  }
+
+  /**
+   * Logs that a node added a link to another node.
+   *
+   * @param timestamp   the time in milliseconds
+   * @param beginNodeID the id of the node adding the link
+   * @param endNodeID   the id of the linked node
+   */
+  public void addLink(long timestamp, int beginNodeID, int endNodeID) {
+    this.put(ADD_LINK, timestamp, 0, beginNodeID, endNodeID, 0);
+  }
+
+  /**
+   * Logs that a node removed a link to another node.
+   *
+   * @param timestamp   the time in milliseconds
+   * @param beginNodeID the id of the node removing the link
+   * @param endNodeID   the id of the unlinked node
+   */
+  public void removeLink(long timestamp, int beginNodeID, int endNodeID) {
+    this.put(REMOVE_LINK, timestamp, 0, beginNodeID, endNodeID, 0);
+  }
+
+  /**
+   * Logs that a node added a block to its chain.
+   *
+   * @param timestamp the time in milliseconds
+   * @param nodeID    the node id
+   * @param blockID   the block id
+   */
+  public void addBlock(long timestamp, int nodeID, int blockID) {
+    this.put(ADD_BLOCK, timestamp, 0, nodeID, blockID, 0);
+  }
+
+  /**
+   * Logs that a block was transmitted from a node to another node.
+   *
+   * @param transmissionTimestamp the time the transmission started in milliseconds
+   * @param receptionTimestamp    the time the block was received in milliseconds
+   * @param beginNodeID           the id of the sender
+   * @param endNodeID             the id of the receiver
+   * @param blockID               the block id
+   */
+  public void flowBlock(
+      long transmissionTimestamp, long receptionTimestamp, int beginNodeID, int endNodeID,
+      int blockID) {
+    this.put(FLOW_BLOCK, transmissionTimestamp, receptionTimestamp, beginNodeID, endNodeID,
+             blockID);
+  }
+
+  /**
+   * Logs the end of the simulation, waits until all events are written and closes the file.
+   *
+   * @param timestamp the time in milliseconds
+   */
+  public void close(long timestamp) {
+    this.put(SIMULATION_END, timestamp, 0, 0, 0, 0);
+    this.closed = true;
+    LockSupport.unpark(this.thread);
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Puts a record on the ring buffer, or defers it if the calling thread runs a logical process
+   * in parallel.
+   *
+   * @param kind  the kind of the event
+   * @param time1 the first timestamp
+   * @param time2 the second timestamp
+   * @param id1   the first id
+   * @param id2   the second id
+   * @param id3   the third id
+   */
+  private void put(int kind, long time1, long time2, long id1, long id2, long id3) {
+    LogicalProcess process = Timer.getCurrentProcess();
+    if (process.isDeferring()) {
+      process.deferAction(() -> this.publish(kind, time1, time2, id1, id2, id3));
+    } else {
+      this.publish(kind, time1, time2, id1, id2, id3);
+    }
+  }
+
+  /**
+   * Puts a record on the ring buffer, waiting while the buffer is full.
+   *
+   * @param kind  the kind of the event
+   * @param time1 the first timestamp
+   * @param time2 the second timestamp
+   * @param id1   the first id
+   * @param id2   the second id
+   * @param id3   the third id
+   */
+  private void publish(int kind, long time1, long time2, long id1, long id2, long id3) {
+    long sequence = this.published.get();
+    if (sequence - this.consumedCache >= CAPACITY) {
+      while (sequence - (this.consumedCache = this.consumed.get()) >= CAPACITY) {
+        LockSupport.unpark(this.thread);
+        Thread.yield();
+      }
+    }
+    int offset = (int) (sequence & (CAPACITY - 1)) * RECORD_SIZE;
+    this.records[offset] = kind;
+    this.records[offset + 1] = time1;
+    this.records[offset + 2] = time2;
+    this.records[offset + 3] = id1;
+    this.records[offset + 4] = id2;
+    this.records[offset + 5] = id3;
+    // Makes the record visible to the writer thread
+    this.published.lazySet(sequence + 1);
+  }
+
+  /**
+   * Passes the records to the sink until the simulation ended, run by the writer thread.
+   */
+  private void drain() {
+    long sequence = 0;
+    try {
+      while (true) {
+        long available = this.published.get();
+        if (sequence == available) {
+          if (this.closed && sequence == this.published.get()) {
+            break;
+          }
+          LockSupport.parkNanos(this, IDLE_NANOS);
+          continue;
+        }
+        for (; sequence < available; sequence++) {
+          this.sink.write(this.records, (int) (sequence & (CAPACITY - 1)) * RECORD_SIZE);
+          if ((sequence & (RELEASE_INTERVAL - 1)) == 0) {
+            this.consumed.lazySet(sequence + 1);
+          }
+        }
+        this.consumed.lazySet(sequence);
+      }
+      this.sink.close();
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      // Keeps consuming so that the simulation does not wait for a failed writer
+      this.consumed.set(Long.MAX_VALUE / 2);
+    }
+  }
+}
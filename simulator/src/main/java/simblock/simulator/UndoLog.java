@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.util.ArrayDeque;
+
+/**
+ * The type Undo log records how to undo changes of the simulation state, so that a logical
+ * process of the {@link TimeWarpEngine} can roll back tasks it ran speculatively (incremental
+ * state saving). Positions count all entries ever recorded.
+ */
+public class UndoLog {
+  /**
+   * The entries not discarded yet, the latest last.
+   */
+  private final ArrayDeque<Runnable> entries = new ArrayDeque<>();
+
+  /**
+   * The number of entries discarded from the front.
+   */
+  private long discardedCount = 0L;
+
+  /**
+   * Records how to undo a change.
+   *
+   * @param undo the action undoing the change
+   */
+  public void record(Runnable undo) {
+    this.entries.addLast(undo);
+  }
+
+  /**
+   * Gets the position after the latest entry.
+   *
+   * @return the position
+   */
+  long getPosition() {
+    return this.discardedCount + this.entries.size();
+  }
+
+  /**
+   * Undoes the changes recorded from the position on, the latest first.
+   *
+   * @param position the position
+   */
+  void undoTo(long position) {
+    while (this.getPosition() > position) {
+      this.entries.pollLast().run();
+    }
+  }
+
+  /**
+   * Discards the entries before the position, whose changes are never undone.
+   *
+   * @param position the position
+   */
+  void discardBefore(long position) {
+    while (this.discardedCount < position && !this.entries.isEmpty()) {
+      this.entries.pollFirst();
+      this.discardedCount++;
+    }
+  }
+}
@@ -23,7 +23,7 @@ import simblock.node.Node;
 /**
  * The type Abstract message task.
  */
-public abstract class AbstractMessageTask implements Task {
+public abstract class AbstractMessageTask extends AbstractTask {
   /**
    * The sending entity.
    */
@@ -68,12 +68,22 @@ public abstract class AbstractMessageTask implements Task {
    * @return the message sending interval
    */
   public long getInterval() {
-    long latency = getLatency(this.from.getRegion(), this.to.getRegion());
+    long latency = getLatency(this.from.getRegion(), this.to.getRegion(), this.from.getRandom());
     // Add 10 milliseconds here, why?
     //TODO
     return latency + 10;
   }
 
+  /**
+   * Gets the receiving node, which handles the message.
+   *
+   * @return the <em>to</em> node
+   */
+  @Override
+  public Node getOwner() {
+    return this.to;
+  }
+
   /**
    * Receive message at the <em>to</em> side.
    */
@@ -22,7 +22,7 @@ import simblock.node.Node;
 /**
  * The type Abstract minting task represents .
  */
-public abstract class AbstractMintingTask implements Task {
+public abstract class AbstractMintingTask extends AbstractTask {
   /**
    * The node to mint the block.
    */
@@ -37,6 +37,11 @@ public abstract class AbstractMintingTask implements Task {
    */
   private final long interval;
 
+  /**
+   * Whether the task was abandoned while scheduled.
+   */
+  private boolean cancelled = false;
+
   /**
    * Instantiates a new Abstract minting task.
    *
@@ -67,8 +72,41 @@ public abstract class AbstractMintingTask implements Task {
     return parent;
   }
 
+  /**
+   * Gets the minter, which mints the block.
+   *
+   * @return the minter
+   */
+  @Override
+  public Node getOwner() {
+    return this.getMinter();
+  }
+
   @Override
   public long getInterval() {
     return this.interval;
   }
+
+  /**
+   * Marks the task as abandoned so that it is skipped instead of run.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Restores a task marked as abandoned, when the task cancelling it is rolled back.
+   */
+  public void restore() {
+    this.cancelled = false;
+  }
+
+  /**
+   * Checks whether the task was abandoned.
+   *
+   * @return true if the task was cancelled, false otherwise
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
 }
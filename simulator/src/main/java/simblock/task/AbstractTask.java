@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import simblock.node.Node;
+
+/**
+ * The type Abstract task is the common base of all simulation tasks. Besides implementing
+ * {@link Task} it carries the handle under which the task is stored in the Future Event List, so
+ * that a scheduled task can be located without a separate lookup structure.
+ */
+public abstract class AbstractTask implements Task {
+  /**
+   * Handle of the Future Event List entry holding this task, -1 if the task is not scheduled.
+   */
+  private int handle = -1;
+
+  /**
+   * Gets the Future Event List handle of the task.
+   *
+   * @return the handle, -1 if the task is not scheduled
+   */
+  public int getHandle() {
+    return this.handle;
+  }
+
+  /**
+   * Sets the Future Event List handle of the task. Only to be used by the event list.
+   *
+   * @param handle the handle, -1 if the task is no longer scheduled
+   */
+  public void setHandle(int handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * Gets the node whose state the task changes when it is run. Tasks are executed by the logical
+   * process simulating the region of their owner.
+   *
+   * @return the owner, or null if the task does not belong to a node
+   */
+  public Node getOwner() {
+    return null;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import simblock.node.Node;
+
+/**
+ * The type Block sent task marks the end of a block transmission at the sender, which then
+ * starts sending the next queued block. It is run at the same time the block arrives at the
+ * receiver, but by the sender, so that a block message only changes the state of its receiver.
+ */
+public class BlockSentTask extends AbstractTask {
+  /**
+   * The sending node.
+   */
+  private final Node sender;
+
+  /**
+   * The transmission time in milliseconds.
+   */
+  private final long interval;
+
+  /**
+   * Instantiates a new Block sent task.
+   *
+   * @param sender   the sending node
+   * @param interval the transmission time of the block message
+   */
+  public BlockSentTask(Node sender, long interval) {
+    this.sender = sender;
+    this.interval = interval;
+  }
+
+  @Override
+  public long getInterval() {
+    return this.interval;
+  }
+
+  @Override
+  public Node getOwner() {
+    return this.sender;
+  }
+
+  @Override
+  public void run() {
+    this.sender.sendNextBlockMessage();
+  }
+}
@@ -16,12 +16,11 @@
 
 package simblock.task;
 
-import static simblock.simulator.Main.OUT_JSON_FILE;
 import static simblock.simulator.Network.getLatency;
-import static simblock.simulator.Timer.getCurrentTime;
 
-import simblock.block.Block;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
+import simblock.simulator.TraceWriter;
 
 /**
  * The type Compact block message task.
@@ -29,9 +28,9 @@ import simblock.node.Node;
 // Compact block relay protocol Wiki: https://github.com/bitcoin/bips/blob/master/bip-0152.mediawiki
 public class CmpctBlockMessageTask extends AbstractMessageTask {
   /**
-   * The {@link Block} that is sent.
+   * The id of the block that is sent.
    */
-  private final Block block;
+  private final int blockID;
 
   /**
    * The block message sending delay in milliseconds.
@@ -41,15 +40,16 @@ public class CmpctBlockMessageTask extends AbstractMessageTask {
   /**
    * Instantiates a new Compact block message task.
    *
-   * @param from  the sender
-   * @param to    the receiver
-   * @param block the block instance
-   * @param delay the delay of the message transmission
+   * @param from    the sender
+   * @param to      the receiver
+   * @param blockID the id of the block
+   * @param delay   the delay of the message transmission
    */
-  public CmpctBlockMessageTask(Node from, Node to, Block block, long delay) {
+  public CmpctBlockMessageTask(Node from, Node to, int blockID, long delay) {
     super(from, to);
-    this.block = block;
-    this.interval = getLatency(this.getFrom().getRegion(), this.getTo().getRegion()) + delay;
+    this.blockID = blockID;
+    this.interval = getLatency(
+        this.getFrom().getRegion(), this.getTo().getRegion(), this.getFrom().getRandom()) + delay;
   }
 
 
@@ -63,30 +63,24 @@ public class CmpctBlockMessageTask extends AbstractMessageTask {
    */
   @Override
   public void run() {
-
-    this.getFrom().sendNextBlockMessage();
-
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"flow-block\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"transmission-timestamp\":" + (getCurrentTime() - this.interval) + ",");
-    OUT_JSON_FILE.print("\"reception-timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"begin-node-id\":" + getFrom().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"end-node-id\":" + getTo().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"block-id\":" + block.getId());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    SimulationContext context = getTo().getContext();
+    TraceWriter trace = context.getTrace();
+    if (trace.tracesFlow(getFrom(), getTo())) {
+      long currentTime = context.getCurrentTime();
+      trace.flowBlock(
+          currentTime - this.interval, currentTime, getFrom().getNodeID(),
+          getTo().getNodeID(), this.blockID);
+    }
 
     super.run();
   }
 
   /**
-   * Get block.
+   * Gets the id of the block.
    *
-   * @return the block
+   * @return the block id
    */
-  public Block getBlock() {
-    return this.block;
+  public int getBlockID() {
+    return this.blockID;
   }
 }
\ No newline at end of file
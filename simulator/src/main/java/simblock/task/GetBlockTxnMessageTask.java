@@ -16,7 +16,6 @@
 
 package simblock.task;
 
-import simblock.block.Block;
 import simblock.node.Node;
 
 /**
@@ -25,21 +24,21 @@ import simblock.node.Node;
 // Compact block relay protocol Wiki: https://github.com/bitcoin/bips/blob/master/bip-0152.mediawiki
 public class GetBlockTxnMessageTask extends AbstractMessageTask {
 	/**
-     * The {@link Block} that is sent by from as compact block.
+     * The id of the block that is sent by from as compact block.
      */
-	private Block block;
+	private int blockID;
 
-	public GetBlockTxnMessageTask(Node from, Node to, Block block) {
+	public GetBlockTxnMessageTask(Node from, Node to, int blockID) {
 		super(from, to);
-		this.block = block;
+		this.blockID = blockID;
 	}
     
     /**
-     * Get block.
+     * Gets the id of the block.
      *
-     * @return the block
+     * @return the block id
      */
-	public Block getBlock(){
-		return this.block;
+	public int getBlockID(){
+		return this.blockID;
 	}	
 }
\ No newline at end of file
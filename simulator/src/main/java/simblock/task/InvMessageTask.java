@@ -16,7 +16,6 @@
 
 package simblock.task;
 
-import simblock.block.Block;
 import simblock.node.Node;
 
 /**
@@ -26,29 +25,29 @@ import simblock.node.Node;
 public class InvMessageTask extends AbstractMessageTask {
 
   /**
-   * Block to be advertised.
+   * The id of the block to be advertised.
    */
-  private final Block block;
+  private final int blockID;
 
   /**
    * Instantiates a new Inv message task.
    *
-   * @param from  the sender
-   * @param to    the receiver
-   * @param block the block to be advertised
+   * @param from    the sender
+   * @param to      the receiver
+   * @param blockID the id of the block to be advertised
    */
-  public InvMessageTask(Node from, Node to, Block block) {
+  public InvMessageTask(Node from, Node to, int blockID) {
     super(from, to);
-    this.block = block;
+    this.blockID = blockID;
   }
 
   /**
-   * Gets block.
+   * Gets the id of the block.
    *
-   * @return the block
+   * @return the block id
    */
-  public Block getBlock() {
-    return this.block;
+  public int getBlockID() {
+    return this.blockID;
   }
 
 }
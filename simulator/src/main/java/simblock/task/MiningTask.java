@@ -16,9 +16,6 @@
 
 package simblock.task;
 
-import static simblock.simulator.Timer.getCurrentTime;
-
-import java.math.BigInteger;
 import simblock.block.ProofOfWorkBlock;
 import simblock.node.Node;
 
@@ -26,7 +23,7 @@ import simblock.node.Node;
  * The type Mining task.
  */
 public class MiningTask extends AbstractMintingTask {
-  private final BigInteger difficulty;
+  private final long difficulty;
 
   /**
    * Instantiates a new Mining task.
@@ -36,7 +33,7 @@ public class MiningTask extends AbstractMintingTask {
    * @param difficulty the difficulty
    */
   //TODO how is the difficulty expressed and used here?
-  public MiningTask(Node minter, long interval, BigInteger difficulty) {
+  public MiningTask(Node minter, long interval, long difficulty) {
     super(minter, interval);
     this.difficulty = difficulty;
   }
@@ -44,7 +41,8 @@ public class MiningTask extends AbstractMintingTask {
   @Override
   public void run() {
     ProofOfWorkBlock createdBlock = new ProofOfWorkBlock(
-        (ProofOfWorkBlock) this.getParent(), this.getMinter(), getCurrentTime(),
+        (ProofOfWorkBlock) this.getParent(), this.getMinter(),
+        this.getMinter().getContext().getCurrentTime(),
         this.difficulty
     );
     this.getMinter().receiveBlock(createdBlock);
@@ -16,7 +16,6 @@
 
 package simblock.task;
 
-import simblock.block.Block;
 import simblock.node.Node;
 
 /**
@@ -26,29 +25,29 @@ import simblock.node.Node;
 public class RecMessageTask extends AbstractMessageTask {
 
   /**
-   * The block to  be received.
+   * The id of the block to be received.
    */
-  private final Block block;
+  private final int blockID;
 
   /**
    * Instantiates a new Rec message task.
    *
-   * @param from  the sending node
-   * @param to    the receiving node
-   * @param block the block to be received
+   * @param from    the sending node
+   * @param to      the receiving node
+   * @param blockID the id of the block to be received
    */
-  public RecMessageTask(Node from, Node to, Block block) {
+  public RecMessageTask(Node from, Node to, int blockID) {
     super(from, to);
-    this.block = block;
+    this.blockID = blockID;
   }
 
   /**
-   * Gets the block to be received.
+   * Gets the id of the block to be received.
    *
-   * @return the block
+   * @return the block id
    */
-  public Block getBlock() {
-    return this.block;
+  public int getBlockID() {
+    return this.blockID;
   }
 
 }
@@ -16,8 +16,6 @@
 
 package simblock.task;
 
-import static simblock.simulator.Timer.getCurrentTime;
-
 import java.math.BigInteger;
 import simblock.block.SamplePoSBlock;
 import simblock.node.Node;
@@ -33,7 +31,8 @@ public class SampleStakingTask extends AbstractMintingTask {
   @Override
   public void run() {
     SamplePoSBlock createdBlock = new SamplePoSBlock(
-        (SamplePoSBlock) this.getParent(), this.getMinter(), getCurrentTime(),
+        (SamplePoSBlock) this.getParent(), this.getMinter(),
+        this.getMinter().getContext().getCurrentTime(),
         this.difficulty
     );
     this.getMinter().receiveBlock(createdBlock);
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import simblock.block.Block;
+import simblock.block.ProofOfWorkBlock;
+import simblock.node.Node;
+import simblock.node.consensus.BlockWinnerSampler;
+
+/**
+ * The type Sampled mining task is the single pending mining event of the network drawn by the
+ * {@link BlockWinnerSampler}. The minter mines on the block it holds when the task is run, which
+ * is not necessarily the block it held when the task was scheduled.
+ */
+public class SampledMiningTask extends AbstractMintingTask {
+  /**
+   * The event is kept if this value is below the success rate of the mined block.
+   */
+  private final double acceptanceThreshold;
+
+  /**
+   * The sampler which drew the event.
+   */
+  private final BlockWinnerSampler sampler;
+
+  /**
+   * Instantiates a new Sampled mining task.
+   *
+   * @param sampler             the sampler which drew the event
+   * @param minter              the minter
+   * @param interval            the interval in milliseconds
+   * @param acceptanceThreshold the success rate the mined block needs to exceed for the event to
+   *                            produce a block
+   */
+  public SampledMiningTask(BlockWinnerSampler sampler, Node minter, long interval,
+                           double acceptanceThreshold) {
+    super(minter, interval);
+    this.sampler = sampler;
+    this.acceptanceThreshold = acceptanceThreshold;
+  }
+
+  /**
+   * Gets the block the minter currently mines on.
+   *
+   * @return the parent of the block to be minted, or null if the event does not produce a block
+   */
+  @Override
+  public Block getParent() {
+    ProofOfWorkBlock parent = (ProofOfWorkBlock) this.getMinter().getBlock();
+    if (parent == null || this.acceptanceThreshold >= BlockWinnerSampler.getSuccessRate(
+        parent.getNextDifficulty())) {
+      return null;
+    }
+    return parent;
+  }
+
+  @Override
+  public void run() {
+    ProofOfWorkBlock parent = (ProofOfWorkBlock) this.getParent();
+    if (parent != null) {
+      ProofOfWorkBlock createdBlock = new ProofOfWorkBlock(
+          parent, this.getMinter(), this.getMinter().getContext().getCurrentTime(),
+          parent.getNextDifficulty());
+      this.getMinter().receiveBlock(createdBlock);
+    }
+    this.sampler.mined(this);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import simblock.block.Block;
+import simblock.block.SamplePoSBlock;
+import simblock.node.Node;
+import simblock.node.consensus.StakeWinnerSampler;
+
+/**
+ * The type Sampled staking task is the single pending staking event of the network proposed by
+ * the {@link StakeWinnerSampler}. Its minter is resolved from the staking rates of the nodes when
+ * the task is run, and mints on the block it holds at that time.
+ */
+public class SampledStakingTask extends AbstractMintingTask {
+  /**
+   * The position of the event below the rate bound of the sampler.
+   */
+  private final double position;
+
+  /**
+   * The sampler which proposed the event.
+   */
+  private final StakeWinnerSampler sampler;
+
+  /**
+   * Instantiates a new Sampled staking task.
+   *
+   * @param sampler  the sampler which proposed the event
+   * @param staker   the node that started staking last, the nominal minter until the task is run
+   * @param interval the interval in milliseconds
+   * @param position the position of the event below the rate bound of the sampler
+   */
+  public SampledStakingTask(StakeWinnerSampler sampler, Node staker, long interval,
+                            double position) {
+    super(staker, interval);
+    this.sampler = sampler;
+    this.position = position;
+  }
+
+  /**
+   * Gets the node the event is mapped to.
+   *
+   * @return the minter, or null if the event does not produce a block
+   */
+  @Override
+  public Node getMinter() {
+    return this.sampler.getWinner(this.position);
+  }
+
+  /**
+   * Gets the block the minter currently stakes on.
+   *
+   * @return the parent of the block to be minted, or null if the event does not produce a block
+   */
+  @Override
+  public Block getParent() {
+    Node minter = this.getMinter();
+    return minter == null ? null : minter.getBlock();
+  }
+
+  @Override
+  public void run() {
+    Node minter = this.getMinter();
+    if (minter != null) {
+      SamplePoSBlock parent = (SamplePoSBlock) minter.getBlock();
+      SamplePoSBlock createdBlock = new SamplePoSBlock(
+          parent, minter, minter.getContext().getCurrentTime(), parent.getNextDifficulty());
+      minter.receiveBlock(createdBlock);
+    }
+    this.sampler.staked(this);
+  }
+}